@@ -0,0 +1,65 @@
+package com.NLP2SparkSQL.project.config;
+
+import com.NLP2SparkSQL.project.utils.EmbeddingUtils;
+import com.NLP2SparkSQL.project.utils.EmbeddingVersion;
+import com.NLP2SparkSQL.project.utils.VectorKernels;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Slf4j
+@Configuration
+public class EmbeddingConfiguration {
+
+    public EmbeddingConfiguration(
+        @Value("${embedding.token-cache.max-entries:16384}") int tokenCacheMaxEntries,
+        @Value("${EMBEDDING_VERSION:${embedding.version:v1}}") String version,
+        @Value("${embedding.batch.parallelism:0}") int batchParallelism
+    ) {
+        EmbeddingUtils.setDefaultVersion(EmbeddingVersion.fromProperty(version));
+        EmbeddingUtils.configureBatchParallelism(batchParallelism);
+        EmbeddingUtils.configureTokenCache(tokenCacheMaxEntries);
+        int keywords = EmbeddingUtils.warmUp();
+        log.info("Embedding keyword table warmed with {} token vectors, vector kernels: {}",
+                keywords, VectorKernels.implementation());
+    }
+
+    @Bean
+    public MeterBinder embeddingTokenCacheMetrics() {
+        return registry -> {
+            FunctionCounter.builder("embedding.token.cache.requests", EmbeddingUtils.class, c -> EmbeddingUtils.getTokenCacheHits())
+                    .tag("result", "hit")
+                    .description("Token vector lookups served from the keyword table or cache")
+                    .register(registry);
+            FunctionCounter.builder("embedding.token.cache.requests", EmbeddingUtils.class, c -> EmbeddingUtils.getTokenCacheMisses())
+                    .tag("result", "miss")
+                    .description("Token vector lookups that had to generate the vector")
+                    .register(registry);
+            FunctionCounter.builder("embedding.token.cache.evictions", EmbeddingUtils.class, c -> EmbeddingUtils.getTokenCacheEvictions())
+                    .register(registry);
+            Gauge.builder("embedding.token.cache.size", EmbeddingUtils.class, c -> EmbeddingUtils.getTokenCacheSize())
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder embeddingBatchMetrics() {
+        return registry -> {
+            FunctionCounter.builder("embedding.batch.texts", EmbeddingUtils.class, c -> EmbeddingUtils.getBatchTextsEmbedded())
+                    .description("Texts embedded through batchEmbed")
+                    .register(registry);
+            FunctionCounter.builder("embedding.batch.seconds", EmbeddingUtils.class, c -> EmbeddingUtils.getBatchSecondsSpent())
+                    .description("Wall-clock time spent in batchEmbed")
+                    .baseUnit("seconds")
+                    .register(registry);
+            Gauge.builder("embedding.batch.throughput", EmbeddingUtils.class, c -> EmbeddingUtils.getLastBatchThroughput())
+                    .description("Texts per second of the last batch")
+                    .baseUnit("texts/s")
+                    .register(registry);
+        };
+    }
+}
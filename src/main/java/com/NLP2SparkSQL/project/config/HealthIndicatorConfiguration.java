@@ -0,0 +1,24 @@
+package com.NLP2SparkSQL.project.config;
+
+import com.NLP2SparkSQL.project.service.HealthProber;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Actuator health contributors "ollama" and "qdrant", answered from the background prober's last
+ * result so /actuator/health never waits on either backend
+ */
+@Configuration
+public class HealthIndicatorConfiguration {
+
+    @Bean
+    public HealthIndicator ollamaHealthIndicator(HealthProber prober) {
+        return prober::ollamaHealth;
+    }
+
+    @Bean
+    public HealthIndicator qdrantHealthIndicator(HealthProber prober) {
+        return prober::qdrantHealth;
+    }
+}
@@ -0,0 +1,49 @@
+package com.NLP2SparkSQL.project.controller;
+
+import com.NLP2SparkSQL.project.dto.IngestionReport;
+import com.NLP2SparkSQL.project.service.ExampleIngestionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/examples")
+@RequiredArgsConstructor
+@Tag(name = "Examples", description = "Load question/SQL examples into Qdrant")
+public class IngestionController {
+
+    private final ExampleIngestionService ingestionService;
+
+    @Operation(summary = "Stream question/SQL pairs as NDJSON or CSV (header row with question, sql and optional schema); "
+            + "repeat with the same jobId to resume after a failure")
+    @PostMapping(value = "/ingest", consumes = {"application/x-ndjson", "text/csv"})
+    public ResponseEntity<?> ingest(
+            @RequestParam(required = false) String jobId,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream body) throws IOException {
+
+        ExampleIngestionService.Format format = contentType.isCompatibleWith(MediaType.parseMediaType("text/csv"))
+                ? ExampleIngestionService.Format.CSV
+                : ExampleIngestionService.Format.NDJSON;
+        try {
+            IngestionReport report = ingestionService.ingest(body, format, jobId);
+            HttpStatus status = switch (report.getStatus()) {
+                case "COMPLETED" -> HttpStatus.OK;
+                case "INVALID_INPUT" -> HttpStatus.BAD_REQUEST;
+                default -> HttpStatus.BAD_GATEWAY;
+            };
+            return ResponseEntity.status(status).body(report);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -7,7 +7,11 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @RestController
 @RequestMapping("/api")
@@ -36,4 +40,29 @@ public class QueryController {
 
         return response;
     }
+
+    @Operation(summary = "Generate Spark SQL without holding a request thread while Qdrant and Ollama answer")
+    @PostMapping("/generate-sql-with-context/reactive")
+    public Mono<QueryResponse> generateSQLWithContextReactive(
+            @Valid @RequestBody SQLContextualRequest request) {
+
+        long startTime = System.currentTimeMillis();
+
+        return ragService.processQuestionWithContextReactive(
+            request.getSparkContext(),
+            request.getQuestion()
+        ).doOnNext(response -> response.setTime(System.currentTimeMillis() - startTime));
+    }
+
+    @Operation(summary = "Stream the generated text as server-sent events, then the final SQL as an \"sql\" event; "
+            + "generation stops at the end of the first statement")
+    @PostMapping(value = "/generate-sql-with-context/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> generateSQLWithContextStream(
+            @Valid @RequestBody SQLContextualRequest request) {
+
+        return ragService.streamQuestionWithContext(
+            request.getSparkContext(),
+            request.getQuestion()
+        ).map(event -> ServerSentEvent.builder(event.getData()).event(event.getEvent()).build());
+    }
 }
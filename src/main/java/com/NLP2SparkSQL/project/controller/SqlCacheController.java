@@ -0,0 +1,39 @@
+package com.NLP2SparkSQL.project.controller;
+
+import com.NLP2SparkSQL.project.dto.SqlCacheEntry;
+import com.NLP2SparkSQL.project.service.SemanticSqlCache;
+import com.NLP2SparkSQL.project.service.SqlResultCache;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/sql-cache")
+@RequiredArgsConstructor
+@Tag(name = "SQL Cache", description = "Inspect and evict cached generated SQL")
+public class SqlCacheController {
+
+    private final SqlResultCache sqlResultCache;
+    private final SemanticSqlCache semanticSqlCache;
+
+    @Operation(summary = "List cached entries, most hits first")
+    @GetMapping
+    public Map<String, Object> entries(@RequestParam(defaultValue = "100") int limit) {
+        List<SqlCacheEntry> entries = sqlResultCache.entries(limit);
+        return Map.of("size", sqlResultCache.size(), "semanticSize", semanticSqlCache.size(), "entries", entries);
+    }
+
+    @Operation(summary = "Evict exact and semantic entries by schema fingerprint and/or question; without either, evict everything")
+    @DeleteMapping
+    public Map<String, Object> evict(
+            @RequestParam(required = false) String schemaFingerprint,
+            @RequestParam(required = false) String question) {
+        return Map.of(
+            "evicted", sqlResultCache.evict(schemaFingerprint, question),
+            "semanticEvicted", semanticSqlCache.evict(schemaFingerprint, question));
+    }
+}
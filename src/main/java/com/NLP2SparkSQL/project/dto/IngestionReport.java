@@ -0,0 +1,29 @@
+package com.NLP2SparkSQL.project.dto;
+
+import lombok.Data;
+
+/**
+ * Outcome and throughput of one bulk ingestion request.
+ *
+ * status is COMPLETED, FAILED when Qdrant did not accept a batch, or INVALID_INPUT when the input
+ * could not be read (e.g. an unterminated quoted CSV field or a header without question and sql).
+ *
+ * Positions count input records, valid or not. checkpoint is the position up to which every record
+ * has been upserted or rejected; posting the same input again with the same jobId resumes there.
+ */
+@Data
+public class IngestionReport {
+    private String jobId;
+    private String status;
+    private long resumedFrom;
+    private long received;
+    private long rejected;
+    private long upserted;
+    private long batches;
+    private long checkpoint;
+    private long elapsedMs;
+    private long embedMs;
+    private long upsertMs;
+    private double recordsPerSecond;
+    private String error;
+}
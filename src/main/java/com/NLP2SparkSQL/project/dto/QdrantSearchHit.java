@@ -0,0 +1,62 @@
+package com.NLP2SparkSQL.project.dto;
+
+import java.util.Map;
+
+/**
+ * One point of a Qdrant search result, reduced to the score, the payload fields we use and, when
+ * the search asked for it, the stored vector
+ */
+public class QdrantSearchHit {
+    private final double score;
+    private final String question;
+    private final String sql;
+    private final float[] vector;
+
+    public QdrantSearchHit(double score, String question, String sql) {
+        this(score, question, sql, null);
+    }
+
+    public QdrantSearchHit(double score, String question, String sql, float[] vector) {
+        this.score = score;
+        this.question = question;
+        this.sql = sql;
+        this.vector = vector;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public String getQuestion() {
+        return question;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * The point's dense vector, or null when it was not requested
+     */
+    public float[] getVector() {
+        return vector;
+    }
+
+    /**
+     * Both the question and the SQL are present
+     */
+    public boolean isValid() {
+        return !question.isEmpty() && !sql.isEmpty();
+    }
+
+    /**
+     * The question/sql/confidence map returned by the retrievers
+     */
+    public Map<String, String> toResult() {
+        return Map.of(
+                "question", question,
+                "sql", sql,
+                "confidence", String.valueOf(score)
+        );
+    }
+}
@@ -0,0 +1,21 @@
+package com.NLP2SparkSQL.project.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One entry of the generated SQL cache, as listed by the admin endpoint
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SqlCacheEntry {
+    private String schemaFingerprint;
+    private String question;
+    private String sql;
+    private boolean negative;
+    private long hits;
+    private String createdAt;
+    private String expiresAt;
+}
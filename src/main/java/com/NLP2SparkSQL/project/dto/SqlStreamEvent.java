@@ -0,0 +1,28 @@
+package com.NLP2SparkSQL.project.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * One server-sent event of a streamed generation: "token" events carry {"text": ...} with the
+ * generated text as it arrives, and a final "sql" event carries the post-processed QueryResponse.
+ */
+@Data
+@AllArgsConstructor
+public class SqlStreamEvent {
+    public static final String TOKEN = "token";
+    public static final String RESULT = "sql";
+
+    private String event;
+    private Object data;
+
+    public static SqlStreamEvent token(String text) {
+        return new SqlStreamEvent(TOKEN, Map.of("text", text));
+    }
+
+    public static SqlStreamEvent result(QueryResponse response) {
+        return new SqlStreamEvent(RESULT, response);
+    }
+}
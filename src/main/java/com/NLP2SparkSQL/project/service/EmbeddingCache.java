@@ -0,0 +1,76 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.NLP2SparkSQL.project.utils.EmbeddingUtils;
+import com.NLP2SparkSQL.project.utils.EmbeddingVersion;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Cache of text embeddings in front of {@link EmbeddingUtils}.
+ *
+ * Entries are keyed by the embedding version and the tokens the embedding is computed from, so texts
+ * that differ only in case, punctuation or stop words share one entry, and switching versions never
+ * returns a stale vector. The cache is bounded by the estimated bytes of its entries and entries
+ * expire a fixed time after being computed. Statistics are published as cache.* metrics tagged cache=embedding.
+ */
+@Slf4j
+@Service
+public class EmbeddingCache {
+
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final Cache<Key, float[]> cache;
+
+    public EmbeddingCache(
+        MeterRegistry meterRegistry,
+        @Value("${embedding.cache.max-weight-bytes:67108864}") long maxWeightBytes,
+        @Value("${embedding.cache.ttl:PT1H}") Duration ttl
+    ) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((Key key, float[] embedding) -> key.weight() + embedding.length * Float.BYTES)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "embedding");
+        log.info("Embedding cache bounded to {} bytes, entries expire after {}", maxWeightBytes, ttl);
+    }
+
+    /**
+     * Embedding of a text with the current default version; the returned array is the caller's own copy
+     */
+    public float[] embed(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return EmbeddingUtils.embed(text);
+        }
+        EmbeddingVersion version = EmbeddingUtils.getDefaultVersion();
+        Key key = new Key(version, String.join(" ", EmbeddingUtils.tokenize(text)));
+        float[] embedding = cache.get(key, k -> {
+            log.debug("Embedding cache miss for '{}'", k.tokens());
+            return EmbeddingUtils.embedInto(text, new float[EmbeddingUtils.getEmbeddingDimension()], version);
+        });
+        return embedding.clone();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private record Key(EmbeddingVersion version, String tokens) {
+        int weight() {
+            return ENTRY_OVERHEAD_BYTES + tokens.length() * 2;
+        }
+    }
+}
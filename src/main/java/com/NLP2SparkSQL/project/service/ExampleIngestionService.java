@@ -0,0 +1,400 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.NLP2SparkSQL.project.dto.IngestionReport;
+import com.NLP2SparkSQL.project.utils.CsvReader;
+import com.NLP2SparkSQL.project.utils.EmbeddingUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * Loads question/SQL example pairs into the Qdrant collection from NDJSON or CSV.
+ *
+ * The input is read as a stream and cut into batches. Each batch is embedded and upserted on a
+ * worker thread, and at most ingest.max-in-flight batches are queued or running; past that the
+ * reader waits, which slows the upload to what Qdrant accepts. Point ids are derived from the
+ * question and SQL, so loading a pair again overwrites it instead of duplicating it.
+ *
+ * With a jobId, the position up to which every record is done is written to a checkpoint file after
+ * each batch; sending the same input with the same jobId skips that many records.
+ *
+ * Upserted examples are also added to the in-process HNSW index when that is the retrieval backend,
+ * and the local mirror, if enabled, is synced once the ingestion ends.
+ */
+@Slf4j
+@Service
+public class ExampleIngestionService {
+
+    public enum Format { NDJSON, CSV }
+
+    private static final Pattern JOB_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final int UPSERT_ATTEMPTS = 3;
+
+    private final QdrantService qdrantService;
+    private final Optional<HnswExampleRetriever> hnswRetriever;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final int threads;
+    private final boolean sparseVectors;
+    private final Path checkpointDir;
+
+    public ExampleIngestionService(
+        QdrantService qdrantService,
+        Optional<HnswExampleRetriever> hnswRetriever,
+        ObjectMapper objectMapper,
+        @Value("${ingest.batch-size:256}") int batchSize,
+        @Value("${ingest.max-in-flight:8}") int maxInFlight,
+        @Value("${ingest.threads:0}") int threads,
+        @Value("${ingest.sparse-vectors:false}") boolean sparseVectors,
+        @Value("${INGEST_CHECKPOINT_DIR:${ingest.checkpoint-dir:data/ingest-checkpoints}}") String checkpointDir
+    ) {
+        this.qdrantService = qdrantService;
+        this.hnswRetriever = hnswRetriever;
+        this.objectMapper = objectMapper;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.sparseVectors = sparseVectors;
+        this.checkpointDir = Paths.get(checkpointDir);
+    }
+
+    /**
+     * Ingest every record of the input; blocks until all batches are upserted or one has failed
+     *
+     * @param jobId names the checkpoint to resume from and update; null for a one-off load
+     */
+    public IngestionReport ingest(InputStream input, Format format, String jobId) throws IOException {
+        if (jobId != null && !JOB_ID.matcher(jobId).matches()) {
+            throw new IllegalArgumentException("jobId must be 1-64 letters, digits, '-' or '_'");
+        }
+        long start = System.nanoTime();
+        Job job = new Job(jobId, readCheckpoint(jobId));
+        log.info("Ingesting {} examples{}, batches of {}, {} in flight, {} threads", format,
+                jobId != null ? " for job " + jobId + " from record " + job.committed : "", batchSize, maxInFlight, threads);
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "example-ingest");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        try {
+            RecordSource source = format == Format.CSV ? csvSource(input) : ndjsonSource(input);
+            long position = 0;
+            long batchStart = job.committed;
+            List<ExampleRecord> batch = new ArrayList<>(batchSize);
+            ExampleRecord record;
+            while (job.failure.get() == null && (record = source.next()) != null) {
+                position++;
+                if (position <= job.committed) {
+                    continue;
+                }
+                job.received.incrementAndGet();
+                if (record.isValid()) {
+                    batch.add(record);
+                } else {
+                    job.rejected.incrementAndGet();
+                }
+                if (batch.size() == batchSize) {
+                    submit(workers, inFlight, job, batch, batchStart, position);
+                    batch = new ArrayList<>(batchSize);
+                    batchStart = position;
+                }
+            }
+            if (job.failure.get() == null && position > batchStart) {
+                if (batch.isEmpty()) {
+                    // Only rejected records since the last batch: nothing to upsert, but they are done with
+                    job.complete(batchStart, position);
+                } else {
+                    submit(workers, inFlight, job, batch, batchStart, position);
+                }
+            }
+            // Wait for the batches still running
+            inFlight.acquire(maxInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.failure.compareAndSet(null, e);
+        } catch (IOException | RuntimeException e) {
+            // Thrown while reading the input, not by the batches sent to Qdrant
+            if (job.failure.compareAndSet(null, e)) {
+                job.invalidInput = true;
+            }
+            inFlight.acquireUninterruptibly(maxInFlight);
+        } finally {
+            workers.shutdownNow();
+        }
+        if (job.upserted.get() > 0 && qdrantService.isMirrorEnabled()) {
+            try {
+                qdrantService.syncMirror();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Qdrant mirror sync after ingestion failed: {}", e.getMessage());
+            }
+        }
+
+        IngestionReport report = job.report(System.nanoTime() - start);
+        log.info("Ingestion {}: {} upserted, {} rejected in {}ms ({} records/s), checkpoint at {}",
+                report.getStatus(), report.getUpserted(), report.getRejected(), report.getElapsedMs(),
+                Math.round(report.getRecordsPerSecond()), report.getCheckpoint());
+        return report;
+    }
+
+    private void submit(ExecutorService workers, Semaphore inFlight, Job job,
+                        List<ExampleRecord> batch, long from, long to) throws InterruptedException {
+        inFlight.acquire();
+        try {
+            workers.execute(() -> {
+                try {
+                    if (job.failure.get() == null) {
+                        upsert(job, batch);
+                        job.complete(from, to);
+                    }
+                } catch (Exception e) {
+                    log.error("Ingestion batch of records {}-{} failed: {}", from + 1, to, e.getMessage());
+                    job.failure.compareAndSet(null, e);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private void upsert(Job job, List<ExampleRecord> batch) throws InterruptedException {
+        long embedStart = System.nanoTime();
+        List<Map<String, Object>> points = new ArrayList<>(batch.size());
+        float[][] embeddings = new float[batch.size()][];
+        for (int i = 0; i < batch.size(); i++) {
+            embeddings[i] = EmbeddingUtils.embed(batch.get(i).question());
+            points.add(toPoint(batch.get(i), embeddings[i]));
+        }
+        job.embedNanos.addAndGet(System.nanoTime() - embedStart);
+
+        long upsertStart = System.nanoTime();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                qdrantService.upsertPoints(points);
+                break;
+            } catch (RuntimeException e) {
+                if (attempt == UPSERT_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("Upsert of {} points failed (attempt {} of {}): {}", points.size(), attempt, UPSERT_ATTEMPTS, e.getMessage());
+                Thread.sleep(200L << attempt);
+            }
+        }
+        job.upsertNanos.addAndGet(System.nanoTime() - upsertStart);
+        job.upserted.addAndGet(points.size());
+        job.batches.incrementAndGet();
+
+        // An empty index still answers from Qdrant and is built by its next resync
+        hnswRetriever.filter(retriever -> retriever.size() > 0).ifPresent(retriever -> {
+            for (int i = 0; i < batch.size(); i++) {
+                retriever.addExample(batch.get(i).question(), batch.get(i).sql(), embeddings[i]);
+            }
+        });
+    }
+
+    private Map<String, Object> toPoint(ExampleRecord record, float[] dense) {
+        Object vector = sparseVectors
+                ? Map.of("", dense, qdrantService.getSparseVectorName(), EmbeddingUtils.embedSparse(record.question()).toQdrant())
+                : dense;
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("question", record.question());
+        payload.put("sql", record.sql());
+        payload.put(QdrantMirror.VECTOR_CHECKSUM_FIELD, QdrantMirror.vectorChecksum(dense));
+        if (!record.schema().isEmpty()) {
+            payload.put("schema", record.schema());
+        }
+        String id = UUID.nameUUIDFromBytes((record.question() + '\u0000' + record.sql()).getBytes(StandardCharsets.UTF_8)).toString();
+        return Map.of("id", id, "vector", vector, "payload", payload);
+    }
+
+    private RecordSource ndjsonSource(InputStream input) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        return () -> {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+            try {
+                JsonNode node = objectMapper.readTree(line);
+                return new ExampleRecord(node.path("question").asText(""), node.path("sql").asText(""),
+                        node.path("schema").asText(""));
+            } catch (IOException e) {
+                log.debug("Rejecting malformed NDJSON line: {}", e.getMessage());
+                return ExampleRecord.INVALID;
+            }
+        };
+    }
+
+    /**
+     * The first row names the columns; question and sql are required, schema is optional
+     */
+    private RecordSource csvSource(InputStream input) throws IOException {
+        CsvReader reader = new CsvReader(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)));
+        List<String> header = reader.next();
+        if (header == null) {
+            return () -> null;
+        }
+        List<String> columns = header.stream().map(name -> name.trim().toLowerCase()).toList();
+        int question = columns.indexOf("question");
+        int sql = columns.indexOf("sql");
+        int schema = columns.indexOf("schema");
+        if (question < 0 || sql < 0) {
+            throw new IllegalArgumentException("CSV header must have question and sql columns, got " + header);
+        }
+        return () -> {
+            List<String> fields;
+            do {
+                fields = reader.next();
+                if (fields == null) {
+                    return null;
+                }
+            } while (fields.size() == 1 && fields.get(0).isBlank());
+            return new ExampleRecord(field(fields, question), field(fields, sql), field(fields, schema));
+        };
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index >= 0 && index < fields.size() ? fields.get(index) : "";
+    }
+
+    private long readCheckpoint(String jobId) throws IOException {
+        if (jobId == null) {
+            return 0;
+        }
+        Path file = checkpointDir.resolve(jobId + ".checkpoint");
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        return Long.parseLong(Files.readString(file).trim());
+    }
+
+    private void writeCheckpoint(String jobId, long position) {
+        try {
+            Files.createDirectories(checkpointDir);
+            Path temp = checkpointDir.resolve(jobId + ".checkpoint.tmp");
+            Files.writeString(temp, Long.toString(position));
+            Files.move(temp, checkpointDir.resolve(jobId + ".checkpoint"),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write ingestion checkpoint for job {}: {}", jobId, e.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordSource {
+        ExampleRecord next() throws IOException;
+    }
+
+    private record ExampleRecord(String question, String sql, String schema) {
+        static final ExampleRecord INVALID = new ExampleRecord("", "", "");
+
+        ExampleRecord {
+            question = question.trim();
+            sql = sql.trim();
+            schema = schema.trim();
+        }
+
+        boolean isValid() {
+            return !question.isEmpty() && !sql.isEmpty();
+        }
+    }
+
+    /**
+     * Counters of one ingestion, and the contiguous prefix of records whose batches are done
+     */
+    private final class Job {
+        final String jobId;
+        final long resumedFrom;
+        final AtomicLong received = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong upserted = new AtomicLong();
+        final AtomicLong batches = new AtomicLong();
+        final AtomicLong embedNanos = new AtomicLong();
+        final AtomicLong upsertNanos = new AtomicLong();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        // The failure came from reading the input rather than from Qdrant
+        volatile boolean invalidInput;
+        // Batches finished ahead of an earlier one still running, by first position
+        private final TreeMap<Long, Long> finished = new TreeMap<>();
+        volatile long committed;
+
+        Job(String jobId, long committed) {
+            this.jobId = jobId;
+            this.resumedFrom = committed;
+            this.committed = committed;
+        }
+
+        /**
+         * Mark positions (from, to] done and move the checkpoint over every batch now contiguous
+         */
+        synchronized void complete(long from, long to) {
+            finished.put(from, to);
+            long position = committed;
+            Long end;
+            while ((end = finished.remove(position)) != null) {
+                position = end;
+            }
+            if (position != committed) {
+                committed = position;
+                if (jobId != null) {
+                    writeCheckpoint(jobId, position);
+                }
+            }
+        }
+
+        IngestionReport report(long elapsedNanos) {
+            IngestionReport report = new IngestionReport();
+            report.setJobId(jobId);
+            report.setStatus(failure.get() == null ? "COMPLETED" : invalidInput ? "INVALID_INPUT" : "FAILED");
+            report.setResumedFrom(resumedFrom);
+            report.setReceived(received.get());
+            report.setRejected(rejected.get());
+            report.setUpserted(upserted.get());
+            report.setBatches(batches.get());
+            report.setCheckpoint(committed);
+            report.setElapsedMs(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+            report.setEmbedMs(TimeUnit.NANOSECONDS.toMillis(embedNanos.get()));
+            report.setUpsertMs(TimeUnit.NANOSECONDS.toMillis(upsertNanos.get()));
+            report.setRecordsPerSecond(elapsedNanos > 0 ? upserted.get() * 1e9 / elapsedNanos : 0);
+            if (failure.get() != null) {
+                report.setError(failure.get().getMessage());
+            }
+            return report;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.NLP2SparkSQL.project.dto.QdrantSearchHit;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Looks up the stored question/SQL example closest to an embedding.
+ *
+ * Results are maps with the keys "question", "sql" and "confidence" (the similarity score as a string);
+ * when nothing is found the question and sql are empty and the confidence is "0".
+ */
+public interface ExampleRetriever {
+
+    Map<String, String> searchRelevantContextStructured(float[] embedding);
+
+    /**
+     * Same lookup without holding the calling thread; blocking implementations run on the
+     * bounded-elastic scheduler
+     */
+    default Mono<Map<String, String>> searchRelevantContextReactive(float[] embedding) {
+        return Mono.fromCallable(() -> searchRelevantContextStructured(embedding))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Up to limit valid examples closest to the embedding, best first; candidates for picking
+     * several examples, with their stored vectors where the implementation has them.
+     * Implementations that only find one return at most that one.
+     */
+    default Mono<List<QdrantSearchHit>> searchRelevantExamplesReactive(float[] embedding, int limit) {
+        return searchRelevantContextReactive(embedding)
+                .map(result -> hasValidResult(result)
+                        ? List.of(new QdrantSearchHit(parseConfidence(result.get("confidence")),
+                                result.get("question"), result.get("sql")))
+                        : List.<QdrantSearchHit>of());
+    }
+
+    default boolean hasValidResult(Map<String, String> result) {
+        return result != null
+                && !result.getOrDefault("question", "").isEmpty()
+                && !result.getOrDefault("sql", "").isEmpty();
+    }
+
+    boolean isHealthy();
+
+    private static double parseConfidence(String confidence) {
+        try {
+            return Double.parseDouble(confidence);
+        } catch (NumberFormatException | NullPointerException e) {
+            return 0;
+        }
+    }
+
+    static Map<String, String> emptyResult() {
+        return Map.of(
+                "question", "",
+                "sql", "",
+                "confidence", "0"
+        );
+    }
+}
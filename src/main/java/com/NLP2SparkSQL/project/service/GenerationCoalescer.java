@@ -0,0 +1,80 @@
+package com.NLP2SparkSQL.project.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight for SQL generation: concurrent requests with the same schema fingerprint and
+ * question share one in-flight generation instead of each calling the LLM.
+ *
+ * The first caller starts the generation; callers arriving before it finishes subscribe to the same
+ * result. Each caller has its own sql.coalesce.caller-timeout, and a caller that cancels or times out
+ * only stops waiting; the generation is cancelled once no caller is waiting for it. Joined callers
+ * are counted in sql.generation.coalesced, the number of LLM calls saved.
+ */
+@Slf4j
+@Service
+public class GenerationCoalescer {
+
+    private final boolean enabled;
+    private final Duration callerTimeout;
+    private final Map<SqlResultCache.Key, Mono<String>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    public GenerationCoalescer(
+        MeterRegistry meterRegistry,
+        @Value("${SQL_COALESCE_ENABLED:${sql.coalesce.enabled:true}}") boolean enabled,
+        @Value("${sql.coalesce.caller-timeout:600s}") Duration callerTimeout
+    ) {
+        this.enabled = enabled;
+        this.callerTimeout = callerTimeout;
+        this.coalesced = Counter.builder("sql.generation.coalesced")
+                .description("Requests that joined an identical in-flight generation, i.e. LLM calls saved")
+                .register(meterRegistry);
+        Gauge.builder("sql.generation.in-flight", inFlight, Map::size)
+                .description("Distinct generations currently in flight")
+                .register(meterRegistry);
+        log.info("Generation coalescing {}, caller timeout {}", enabled ? "enabled" : "disabled", callerTimeout);
+    }
+
+    /**
+     * The result of the generation in flight for the key, or of a new one from the supplier
+     *
+     * @param generation subscribed at most once per flight, when the first caller subscribes
+     */
+    public Mono<String> generate(SqlResultCache.Key key, Supplier<Mono<String>> generation, String requestId) {
+        if (!enabled) {
+            return Mono.defer(generation).timeout(callerTimeout);
+        }
+        return Mono.defer(() -> {
+            AtomicReference<Mono<String>> started = new AtomicReference<>();
+            Mono<String> flight = inFlight.computeIfAbsent(key, k -> {
+                Mono<String> shared = Mono.defer(generation)
+                        .doFinally(signal -> inFlight.remove(k, started.get()))
+                        .share();
+                started.set(shared);
+                return shared;
+            });
+            if (flight != started.get()) {
+                coalesced.increment();
+                log.info("[{}] Joining the generation already in flight for this question", requestId);
+            }
+            return flight;
+        }).timeout(callerTimeout);
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+}
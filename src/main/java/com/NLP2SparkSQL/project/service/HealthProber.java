@@ -0,0 +1,201 @@
+package com.NLP2SparkSQL.project.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Probes Ollama and Qdrant in the background and keeps the last result, so health endpoints and
+ * isHealthy() answer from memory instead of calling the backends on every poll.
+ *
+ * The probes are cheap reads: Ollama's /api/tags (is the model pulled) and /api/ps (is it loaded
+ * in memory), and Qdrant's collection info. A result older than health.probe.max-staleness is
+ * reported as UNKNOWN rather than trusted.
+ */
+@Slf4j
+@Service
+public class HealthProber {
+
+    /**
+     * Last probe of one backend
+     */
+    public record Snapshot(Health health, Instant checkedAt) {
+    }
+
+    private final QdrantService qdrantService;
+    private final WebClient webClient;
+    private final String ollamaUrl;
+    private final String modelName;
+    private final Duration interval;
+    private final Duration maxStaleness;
+    private final Duration timeout;
+
+    private volatile Snapshot ollama;
+    private volatile Snapshot qdrant;
+    private ScheduledExecutorService scheduler;
+
+    public HealthProber(
+        QdrantService qdrantService,
+        @Value("${OLLAMA_URL:${ollama.url:http://localhost:11434}}") String ollamaUrl,
+        @Value("${OLLAMA_MODEL:${ollama.model:qwen3:1.7b}}") String modelName,
+        @Value("${health.probe.interval:15s}") Duration interval,
+        @Value("${health.probe.max-staleness:60s}") Duration maxStaleness,
+        @Value("${health.probe.timeout:5s}") Duration timeout
+    ) {
+        this.qdrantService = qdrantService;
+        this.webClient = WebClient.create();
+        this.ollamaUrl = ollamaUrl;
+        this.modelName = modelName;
+        this.interval = interval;
+        this.maxStaleness = maxStaleness;
+        this.timeout = timeout;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "health-prober");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::probe, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Probing Ollama and Qdrant health every {}, results trusted for {}", interval, maxStaleness);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Probe both backends now; the scheduler calls this every health.probe.interval
+     */
+    public void probe() {
+        Mono<Health> ollamaProbe = probeOllama();
+        Mono<Health> qdrantProbe = probeQdrant();
+        // Subscribe to both before waiting, so the probes overlap
+        Mono.zip(ollamaProbe, qdrantProbe)
+                .doOnNext(results -> {
+                    Instant now = Instant.now();
+                    ollama = new Snapshot(results.getT1(), now);
+                    qdrant = new Snapshot(results.getT2(), now);
+                    log.debug("Health probe: ollama {}, qdrant {}", results.getT1().getStatus(), results.getT2().getStatus());
+                })
+                .block();
+    }
+
+    public Health ollamaHealth() {
+        return reported(ollama);
+    }
+
+    public Health qdrantHealth() {
+        return reported(qdrant);
+    }
+
+    public boolean isOllamaUp() {
+        return Status.UP.equals(ollamaHealth().getStatus());
+    }
+
+    public boolean isQdrantUp() {
+        return Status.UP.equals(qdrantHealth().getStatus());
+    }
+
+    private Health reported(Snapshot snapshot) {
+        if (snapshot == null) {
+            return Health.unknown().withDetail("reason", "Not probed yet").build();
+        }
+        Duration age = Duration.between(snapshot.checkedAt(), Instant.now());
+        Health.Builder builder = age.compareTo(maxStaleness) > 0
+                ? Health.unknown().withDetail("reason", "Last probe is " + age.toSeconds() + "s old")
+                        .withDetail("lastStatus", snapshot.health().getStatus().getCode())
+                : Health.status(snapshot.health().getStatus());
+        return builder.withDetails(snapshot.health().getDetails())
+                .withDetail("checkedAt", snapshot.checkedAt().toString())
+                .build();
+    }
+
+    /**
+     * UP when Ollama answers and has the configured model; modelLoaded says whether a request
+     * would skip the model load
+     */
+    private Mono<Health> probeOllama() {
+        Mono<List<Map<String, Object>>> pulled = ollamaModels("/api/tags");
+        Mono<List<Map<String, Object>>> loaded = ollamaModels("/api/ps");
+        return Mono.zip(pulled, loaded)
+                .map(models -> {
+                    Health.Builder builder = findModel(models.getT1()).isPresent()
+                            ? Health.up()
+                            : Health.down().withDetail("reason", "Model " + modelName + " is not pulled");
+                    builder.withDetail("url", ollamaUrl).withDetail("model", modelName);
+                    Optional<Map<String, Object>> running = findModel(models.getT2());
+                    builder.withDetail("modelLoaded", running.isPresent());
+                    running.ifPresent(model -> {
+                        builder.withDetail("sizeVram", model.getOrDefault("size_vram", 0));
+                        builder.withDetail("expiresAt", model.getOrDefault("expires_at", ""));
+                    });
+                    return builder.build();
+                })
+                .onErrorResume(e -> Mono.just(Health.down()
+                        .withDetail("url", ollamaUrl)
+                        .withDetail("model", modelName)
+                        .withDetail("error", String.valueOf(e.getMessage()))
+                        .build()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Mono<List<Map<String, Object>>> ollamaModels(String path) {
+        return webClient.get()
+                .uri(ollamaUrl + path)
+                .retrieve()
+                .bodyToMono(Map.class)
+                .timeout(timeout)
+                .map(response -> response.get("models") instanceof List<?> models
+                        ? (List<Map<String, Object>>) models
+                        : List.<Map<String, Object>>of());
+    }
+
+    /**
+     * Ollama lists models with their tag, ":latest" when none was given
+     */
+    private Optional<Map<String, Object>> findModel(List<Map<String, Object>> models) {
+        String tagged = modelName.contains(":") ? modelName : modelName + ":latest";
+        return models.stream()
+                .filter(model -> tagged.equals(model.get("name")) || tagged.equals(model.get("model")))
+                .findFirst();
+    }
+
+    private Mono<Health> probeQdrant() {
+        return qdrantService.collectionInfoReactive()
+                .timeout(timeout)
+                .map(result -> {
+                    Object status = result.getOrDefault("status", "unknown");
+                    // red means the collection has failed; yellow is still searchable while it optimizes
+                    Health.Builder builder = "red".equals(status) ? Health.down() : Health.up();
+                    return builder.withDetail("collection", qdrantService.getCollectionName())
+                            .withDetail("collectionStatus", status)
+                            .withDetail("pointsCount", result.getOrDefault("points_count", 0))
+                            .build();
+                })
+                .onErrorResume(e -> Mono.just(Health.down()
+                        .withDetail("collection", qdrantService.getCollectionName())
+                        .withDetail("error", String.valueOf(e.getMessage()))
+                        .build()));
+    }
+}
@@ -0,0 +1,321 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.NLP2SparkSQL.project.dto.QdrantSearchHit;
+import com.NLP2SparkSQL.project.utils.EmbeddingUtils;
+import com.NLP2SparkSQL.project.utils.HnswIndex;
+import com.NLP2SparkSQL.project.utils.SimilarityHits;
+import com.NLP2SparkSQL.project.utils.Utf8Strings;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Example retrieval from an HNSW graph held in this JVM, so the question/SQL lookup on the hot path
+ * does not make a network round trip to Qdrant.
+ *
+ * Enabled with retrieval.backend=hnsw. The index is loaded from retrieval.hnsw.path at startup. At
+ * startup and every retrieval.hnsw.resync-interval its point count is compared with the collection's,
+ * and on a difference a new index is built from the collection in the background and swapped in
+ * once complete. Until an index holds any example, searches are delegated to Qdrant.
+ */
+@Slf4j
+@Service
+@Primary
+@ConditionalOnProperty(name = "retrieval.backend", havingValue = "hnsw")
+public class HnswExampleRetriever implements ExampleRetriever {
+
+    // File layout after the graph: FORMAT, example count, then question and SQL per node
+    private static final int FORMAT = 0x484e5732; // "HNW2"
+
+    private final QdrantService qdrantService;
+    private final HealthProber healthProber;
+    private final Path indexPath;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final boolean bootstrapFromQdrant;
+    private final Duration resyncInterval;
+    private final int topResults;
+
+    // Swapped as a whole when a rebuild completes
+    private volatile State state;
+    private volatile boolean dirty;
+    private ScheduledExecutorService resyncScheduler;
+
+    public HnswExampleRetriever(
+        QdrantService qdrantService,
+        HealthProber healthProber,
+        @Value("${RETRIEVAL_HNSW_PATH:${retrieval.hnsw.path:data/hnsw-examples.bin}}") String indexPath,
+        @Value("${retrieval.hnsw.m:16}") int m,
+        @Value("${retrieval.hnsw.ef-construction:200}") int efConstruction,
+        @Value("${retrieval.hnsw.ef-search:64}") int efSearch,
+        @Value("${retrieval.hnsw.bootstrap-from-qdrant:true}") boolean bootstrapFromQdrant,
+        @Value("${retrieval.hnsw.resync-interval:PT10M}") Duration resyncInterval,
+        @Value("${QDRANT_SEARCH_TOP:${qdrant.search.top:1}}") int topResults
+    ) {
+        this.qdrantService = qdrantService;
+        this.healthProber = healthProber;
+        this.indexPath = Paths.get(indexPath);
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.bootstrapFromQdrant = bootstrapFromQdrant;
+        this.resyncInterval = resyncInterval;
+        this.topResults = Math.max(1, topResults);
+        this.state = emptyState();
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!Files.exists(indexPath)) {
+            log.info("No HNSW index at {}, starting empty", indexPath);
+            return;
+        }
+        try (InputStream in = Files.newInputStream(indexPath)) {
+            DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+            HnswIndex loaded = HnswIndex.readFrom(data);
+            if (loaded.dimension() != EmbeddingUtils.getEmbeddingDimension()) {
+                log.warn("Ignoring HNSW index {}: dimension {} does not match embeddings of dimension {}",
+                        indexPath, loaded.dimension(), EmbeddingUtils.getEmbeddingDimension());
+                return;
+            }
+            if (data.readInt() != FORMAT) {
+                log.warn("Ignoring HNSW index {} written in an older format; it is rebuilt from Qdrant", indexPath);
+                return;
+            }
+            loaded.setEfSearch(efSearch);
+            int count = data.readInt();
+            Map<Integer, Example> examples = new ConcurrentHashMap<>();
+            for (int id = 0; id < count; id++) {
+                examples.put(id, new Example(Utf8Strings.read(data), Utf8Strings.read(data)));
+            }
+            state = new State(loaded, examples, new AtomicLong(count));
+            log.info("Loaded HNSW index with {} examples from {}", count, indexPath);
+        } catch (IOException e) {
+            log.error("Failed to load HNSW index from {}: {}", indexPath, e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrap() {
+        if (!bootstrapFromQdrant) {
+            return;
+        }
+        resyncScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hnsw-resync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (resyncInterval.isZero() || resyncInterval.isNegative()) {
+            resyncScheduler.execute(this::resyncIfStale);
+        } else {
+            resyncScheduler.scheduleWithFixedDelay(this::resyncIfStale, 0, resyncInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Rebuild the index when the collection holds a different number of points than were indexed
+     */
+    void resyncIfStale() {
+        try {
+            Object pointsCount = qdrantService.collectionInfoReactive()
+                    .map(info -> info.getOrDefault("points_count", -1))
+                    .block(Duration.ofSeconds(10));
+            long indexed = state.sourcePoints().get();
+            if (pointsCount instanceof Number count && count.longValue() == indexed) {
+                log.debug("HNSW index is up to date with {} Qdrant points", indexed);
+                return;
+            }
+            log.info("HNSW index holds {} points, Qdrant collection {}; rebuilding", indexed, pointsCount);
+            rebuild();
+        } catch (Exception e) {
+            log.error("Failed to resync HNSW index with Qdrant: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Build a new index from every point of the collection, then replace the current one with it.
+     * Searches use the current index, or Qdrant while it is empty, until the build completes.
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        State next = emptyState();
+        int count = qdrantService.scrollPoints(256, (vector, payload) -> {
+            if (vector.length == next.index().dimension()) {
+                next.add(String.valueOf(payload.getOrDefault("question", "")),
+                        String.valueOf(payload.getOrDefault("sql", "")), vector);
+            }
+        });
+        next.sourcePoints().set(count);
+        state = next;
+        dirty = true;
+        log.info("HNSW index built from {} Qdrant points in {}ms", count, System.currentTimeMillis() - start);
+        save();
+    }
+
+    /**
+     * Index one example that was also stored in Qdrant; safe to call from several threads
+     */
+    public void addExample(String question, String sql, float[] embedding) {
+        State current = state;
+        current.add(question, sql, embedding);
+        current.sourcePoints().incrementAndGet();
+        dirty = true;
+    }
+
+    @Override
+    public Map<String, String> searchRelevantContextStructured(float[] embedding) {
+        State current = state;
+        if (current.index().size() == 0) {
+            log.debug("HNSW index is empty, searching Qdrant");
+            return qdrantService.searchRelevantContextStructured(embedding);
+        }
+
+        SimilarityHits hits = current.index().search(embedding, topResults);
+        for (int i = 0; i < hits.size(); i++) {
+            Example example = current.examples().get(hits.row(i));
+            if (example != null && !example.question().isEmpty() && !example.sql().isEmpty()) {
+                log.debug("HNSW match with score {}: {}", hits.score(i), example.question());
+                return Map.of(
+                        "question", example.question(),
+                        "sql", example.sql(),
+                        "confidence", String.valueOf((double) hits.score(i))
+                );
+            }
+        }
+        return ExampleRetriever.emptyResult();
+    }
+
+    /**
+     * In-memory searches complete on the calling thread; only the Qdrant fallback is asynchronous
+     */
+    @Override
+    public Mono<Map<String, String>> searchRelevantContextReactive(float[] embedding) {
+        if (state.index().size() == 0) {
+            return qdrantService.searchRelevantContextReactive(embedding);
+        }
+        return Mono.fromSupplier(() -> searchRelevantContextStructured(embedding));
+    }
+
+    @Override
+    public Mono<List<QdrantSearchHit>> searchRelevantExamplesReactive(float[] embedding, int limit) {
+        State current = state;
+        if (current.index().size() == 0) {
+            return qdrantService.searchRelevantExamplesReactive(embedding, limit);
+        }
+        return Mono.fromSupplier(() -> {
+            SimilarityHits hits = current.index().search(embedding, Math.max(1, limit));
+            List<QdrantSearchHit> results = new ArrayList<>(hits.size());
+            for (int i = 0; i < hits.size(); i++) {
+                Example example = current.examples().get(hits.row(i));
+                if (example != null && !example.question().isEmpty() && !example.sql().isEmpty()) {
+                    results.add(new QdrantSearchHit(hits.score(i), example.question(), example.sql(),
+                            current.index().vector(hits.row(i))));
+                }
+            }
+            return results;
+        });
+    }
+
+    /**
+     * A built index answers without Qdrant; an empty one falls back to it, as last probed
+     */
+    @Override
+    public boolean isHealthy() {
+        return state.index().size() > 0 || healthProber.isQdrantUp();
+    }
+
+    public int size() {
+        return state.index().size();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (resyncScheduler != null) {
+            resyncScheduler.shutdownNow();
+        }
+        if (dirty) {
+            save();
+        }
+    }
+
+    /**
+     * Write the graph followed by the question/SQL of every node, through a temporary file
+     */
+    public synchronized void save() {
+        try {
+            Path parent = indexPath.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path temp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+            dirty = false;
+            State current = state;
+            int count;
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+                count = current.index().writeTo(data);
+                data.writeInt(FORMAT);
+                data.writeInt(count);
+                for (int id = 0; id < count; id++) {
+                    Example example = current.examples().getOrDefault(id, Example.EMPTY);
+                    Utf8Strings.write(data, example.question());
+                    Utf8Strings.write(data, example.sql());
+                }
+                data.flush();
+            }
+            Files.move(temp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Saved HNSW index with {} examples to {}", count, indexPath);
+        } catch (IOException e) {
+            dirty = true;
+            log.error("Failed to save HNSW index to {}: {}", indexPath, e.getMessage());
+        }
+    }
+
+    private State emptyState() {
+        return new State(new HnswIndex(EmbeddingUtils.getEmbeddingDimension(), m, efConstruction, efSearch),
+                new ConcurrentHashMap<>(), new AtomicLong());
+    }
+
+    private record Example(String question, String sql) {
+        static final Example EMPTY = new Example("", "");
+    }
+
+    /**
+     * An index with the question/SQL of each node and the number of Qdrant points it was built from
+     */
+    private record State(HnswIndex index, Map<Integer, Example> examples, AtomicLong sourcePoints) {
+        void add(String question, String sql, float[] embedding) {
+            int id = index.add(embedding);
+            examples.put(id, new Example(question.trim(), sql.trim()));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.NLP2SparkSQL.project.service;
 
+import com.NLP2SparkSQL.project.utils.SqlStatementBoundary;
 import dev.langchain4j.model.ollama.OllamaLanguageModel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -7,8 +8,12 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
+import java.util.Map;
 import java.util.regex.Pattern;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
@@ -22,17 +27,27 @@ public class LangChainSQLService {
 
     private final OllamaLanguageModel model;
     private final long timeoutSeconds;
+    // Streams always go through it: the langchain4j 0.24 streaming model cannot be cancelled
+    private final OllamaNativeClient nativeClient;
+    // ollama.client=native sends the fixed instructions as a cached system prompt
+    private final boolean useNativeClient;
 
     private static final Pattern FORBIDDEN_PATTERN = Pattern.compile(
             "(?i)(SCRIPT|DECLARE|\\bEXEC\\b|\\bSP_\\b|\\bXP_\\b|--|;\\s*--)", Pattern.CASE_INSENSITIVE
     );
 
+    private static final String VALIDATION_FAILED = "Generated SQL failed validation checks";
+
     public LangChainSQLService(
         @Value("${OLLAMA_URL:${ollama.url:http://localhost:11434}}") String ollamaUrl,
         @Value("${OLLAMA_MODEL:${ollama.model:qwen3:1.7b}}") String modelName,
-        @Value("${ollama.timeout:600}") long timeoutSeconds
+        @Value("${ollama.timeout:600}") long timeoutSeconds,
+        @Value("${OLLAMA_CLIENT:${ollama.client:native}}") String client,
+        OllamaNativeClient nativeClient
     ) {
         this.timeoutSeconds = timeoutSeconds;
+        this.nativeClient = nativeClient;
+        this.useNativeClient = "native".equalsIgnoreCase(client);
         log.info("Initializing Ollama model with URL: {}, model: {}, timeout: {}s", 
                 ollamaUrl, modelName, timeoutSeconds);
 
@@ -68,7 +83,12 @@ public class LangChainSQLService {
     public void onApplicationReady() {
         log.info("Application ready, testing Ollama connection...");
         try {
-            testConnection();
+            if (useNativeClient) {
+                // Also leaves the system prompt in Ollama's cache for the first request
+                nativeClient.prime(SYSTEM_PROMPT).block(Duration.ofSeconds(timeoutSeconds));
+            } else {
+                testConnection();
+            }
             log.info("Ollama connection test successful");
         } catch (Exception e) {
             log.error("Ollama connection test failed: {}", e.getMessage());
@@ -100,6 +120,15 @@ public class LangChainSQLService {
         }
     }
 
+    /**
+     * The langchain4j Ollama client blocks, so the call runs on the bounded-elastic scheduler
+     * instead of the subscriber's thread
+     */
+    public Mono<String> generateSQLReactive(String context, String question) {
+        return Mono.fromCallable(() -> generateSQL(context, question))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
     public String generateSQL(String context, String question) {
         String requestId = java.util.UUID.randomUUID().toString().substring(0, 8);
         log.info("[{}] Generating SQL for question: {}", requestId, question);
@@ -113,17 +142,8 @@ public class LangChainSQLService {
                 return generateErrorSQL("No question provided");
             }
 
-            String prompt = buildEnhancedPrompt(context, question);
-            String generatedSQL = generateWithTimeoutControl(prompt, requestId);
-            String cleanedSQL = cleanSQL(generatedSQL);
-
-            if (!isValidSparkSQL(cleanedSQL)) {
-                log.warn("[{}] Generated SQL failed validation: {}", requestId, cleanedSQL);
-                return generateErrorSQL("Generated SQL failed validation checks");
-            }
-
-            log.info("[{}] Successfully generated SQL: {}", requestId, cleanedSQL);
-            return cleanedSQL;
+            String generatedSQL = generateWithTimeoutControl(requestPrompt(context, question), requestId);
+            return finishSQL(generatedSQL, requestId);
 
         } catch (Exception e) {
             log.error("[{}] Error generating SQL: {}", requestId, e.getMessage(), e);
@@ -131,6 +151,71 @@ public class LangChainSQLService {
         }
     }
 
+    /**
+     * Clean and validate generated text, as the blocking generation does
+     *
+     * @return the SQL, or an error statement when it fails validation
+     */
+    public String finishSQL(String generatedSQL, String requestId) {
+        String cleanedSQL = cleanSQL(generatedSQL);
+
+        if (!isValidSparkSQL(cleanedSQL)) {
+            log.warn("[{}] Generated SQL failed validation: {}", requestId, cleanedSQL);
+            return generateErrorSQL(VALIDATION_FAILED);
+        }
+
+        log.info("[{}] Successfully generated SQL: {}", requestId, cleanedSQL);
+        return cleanedSQL;
+    }
+
+    /**
+     * Stream the generated text from Ollama's /api/generate as it is produced, ending right after
+     * the first complete statement. Ending early cancels the HTTP exchange, which closes the
+     * connection and makes Ollama stop generating the explanation that often follows the SQL.
+     */
+    public Flux<String> streamSQL(String context, String question, String requestId) {
+        if (context == null || context.trim().isEmpty()) {
+            return Flux.error(new IllegalArgumentException("No database context provided"));
+        }
+        if (question == null || question.trim().isEmpty()) {
+            return Flux.error(new IllegalArgumentException("No question provided"));
+        }
+        String prompt = requestPrompt(context, question);
+
+        return Flux.defer(() -> {
+            SqlStatementBoundary boundary = new SqlStatementBoundary();
+            long startTime = System.nanoTime();
+            long[] firstTokenNanos = {0};
+            return nativeClient.stream(SYSTEM_PROMPT, prompt, Map.of("temperature", 0.1))
+                    .map(chunk -> String.valueOf(chunk.getOrDefault("response", "")))
+                    .filter(token -> !token.isEmpty())
+                    .doOnNext(token -> {
+                        if (firstTokenNanos[0] == 0) {
+                            firstTokenNanos[0] = System.nanoTime() - startTime;
+                        }
+                    })
+                    .<String>handle((token, sink) -> {
+                        int used = boundary.append(token);
+                        if (used < 0) {
+                            sink.next(token);
+                            return;
+                        }
+                        if (used > 0) {
+                            sink.next(token.substring(0, used));
+                        }
+                        sink.complete();
+                    })
+                    .doFinally(signal -> log.info("[{}] Streamed generation {} after {} ms (first token after {} ms){}",
+                            requestId, signal, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime),
+                            TimeUnit.NANOSECONDS.toMillis(firstTokenNanos[0]),
+                            boundary.isComplete() ? ", stopped at the end of the statement" : ""));
+        });
+    }
+
+    /**
+     * @param prompt the per-request part; the fixed instructions are sent as the system prompt, or
+     *               in front of it when ollama.client is langchain4j
+     */
     private String generateWithTimeoutControl(String prompt, String requestId) {
         int maxRetries = 3;
         Exception lastException = null;
@@ -147,7 +232,11 @@ public class LangChainSQLService {
                 CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> {
                     try {
                         long startTime = System.currentTimeMillis();
-                        String response = model.generate(prompt).content();
+                        String response = useNativeClient
+                                ? nativeClient.generate(SYSTEM_PROMPT, prompt, Map.of("temperature", 0.1))
+                                        .map(OllamaNativeClient.Generation::response)
+                                        .block()
+                                : model.generate(SYSTEM_PROMPT + prompt).content();
                         long endTime = System.currentTimeMillis();
                         
                         log.debug("[{}] Generation took {} ms", requestId, endTime - startTime);
@@ -204,8 +293,10 @@ public class LangChainSQLService {
         throw new RuntimeException(errorMessage, lastException);
     }
 
-    private String buildEnhancedPrompt(String context, String question) {
-    return """
+    /**
+     * Fixed rules and examples, identical for every request so Ollama can reuse their evaluation
+     */
+    private static final String SYSTEM_PROMPT = """
         You are an expert Spark SQL generator. Generate ONLY valid Spark SQL queries based on the provided schema.
 
         CRITICAL RULES:
@@ -267,6 +358,10 @@ public class LangChainSQLService {
             LEFT JOIN OrderStats o ON p.product_id = o.product_id
             ORDER BY r.avg_rating DESC, total_orders DESC;
 
+        """;
+
+    private String requestPrompt(String context, String question) {
+    return """
         DATABASE SCHEMA:
         """ + context + """
 
@@ -374,10 +469,21 @@ private String cleanSQL(String sql) {
         return count == 0;
     }
 
+    /**
+     * Whether generateSQL returned an error without the model having produced SQL that failed
+     * validation, e.g. because Ollama could not be reached; such errors say nothing about the question
+     */
+    public boolean isGenerationFailure(String sql) {
+        return sql != null && sql.startsWith("/* Error:") && !sql.contains(VALIDATION_FAILED);
+    }
+
     private String generateErrorSQL(String error) {
         return String.format("/* Error: %s */\nSELECT 'ERROR: %s' AS error_message;", error, error);
     }
 
+    /**
+     * End-to-end check that runs a real generation; too heavy for polling, which HealthProber serves
+     */
     public boolean isHealthy() {
         try {
             log.debug("Performing health check...");
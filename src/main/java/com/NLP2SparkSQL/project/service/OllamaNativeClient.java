@@ -0,0 +1,170 @@
+package com.NLP2SparkSQL.project.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls Ollama's /api/generate directly, with the fixed instructions in the "system" field and a
+ * keep_alive, so every request starts with the same tokens and the model stays loaded. Ollama then
+ * keeps the key/value cache of that prefix between requests and only evaluates the per-request
+ * part of the prompt.
+ *
+ * {@link #prime(String)} evaluates the system prompt once and measures it: how many tokens it is
+ * and what they cost. Every generation after that reports the prompt tokens Ollama did not have to
+ * evaluate and the prompt-eval time that saved, from prompt_eval_count and prompt_eval_duration.
+ */
+@Slf4j
+@Service
+public class OllamaNativeClient {
+
+    /**
+     * One non-streamed generation with Ollama's timings
+     */
+    public record Generation(String response, long promptEvalCount, long promptEvalNanos,
+                             long evalCount, long evalNanos, long loadNanos) {
+    }
+
+    private final WebClient webClient;
+    private final String ollamaUrl;
+    private final String modelName;
+    private final String keepAlive;
+    private final Duration timeout;
+    private final Timer promptEval;
+    private final Timer promptEvalSaved;
+
+    // Measured by prime(): the system prompt's tokens, and prompt-eval cost per token and per char
+    private volatile long prefixTokens;
+    private volatile String primedSystem;
+    private volatile double nanosPerToken;
+    private volatile double charsPerToken;
+
+    public OllamaNativeClient(
+        MeterRegistry meterRegistry,
+        @Value("${OLLAMA_URL:${ollama.url:http://localhost:11434}}") String ollamaUrl,
+        @Value("${OLLAMA_MODEL:${ollama.model:qwen3:1.7b}}") String modelName,
+        @Value("${OLLAMA_KEEP_ALIVE:${ollama.keep-alive:30m}}") String keepAlive,
+        @Value("${ollama.timeout:600}") long timeoutSeconds
+    ) {
+        this.webClient = WebClient.create();
+        this.ollamaUrl = ollamaUrl;
+        this.modelName = modelName;
+        this.keepAlive = keepAlive;
+        this.timeout = Duration.ofSeconds(timeoutSeconds);
+        this.promptEval = Timer.builder("ollama.prompt.eval")
+                .description("Time Ollama spent evaluating prompt tokens")
+                .register(meterRegistry);
+        this.promptEvalSaved = Timer.builder("ollama.prompt.eval.saved")
+                .description("Estimated prompt-eval time saved by reusing the cached system prompt")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Load the model and evaluate the system prompt, so the first request finds it cached; the
+     * result calibrates the saved-time estimate
+     */
+    public Mono<Generation> prime(String system) {
+        return generate(system, ".", Map.of("num_predict", 1))
+                .doOnNext(generation -> {
+                    if (generation.promptEvalCount() > 0) {
+                        prefixTokens = generation.promptEvalCount();
+                        primedSystem = system;
+                        nanosPerToken = (double) generation.promptEvalNanos() / generation.promptEvalCount();
+                        charsPerToken = (double) system.length() / generation.promptEvalCount();
+                    }
+                    log.info("Primed Ollama model {} (keep_alive {}): {} prompt tokens in {} ms, load {} ms",
+                            modelName, keepAlive, generation.promptEvalCount(),
+                            TimeUnit.NANOSECONDS.toMillis(generation.promptEvalNanos()),
+                            TimeUnit.NANOSECONDS.toMillis(generation.loadNanos()));
+                });
+    }
+
+    public Mono<Generation> generate(String system, String prompt, Map<String, Object> options) {
+        return webClient.post()
+                .uri(ollamaUrl + "/api/generate")
+                .bodyValue(request(system, prompt, false, options))
+                .retrieve()
+                .bodyToMono(Map.class)
+                .timeout(timeout)
+                .map(response -> {
+                    Generation generation = new Generation(
+                            String.valueOf(response.getOrDefault("response", "")),
+                            number(response, "prompt_eval_count"),
+                            number(response, "prompt_eval_duration"),
+                            number(response, "eval_count"),
+                            number(response, "eval_duration"),
+                            number(response, "load_duration"));
+                    recordPromptEval(system, prompt, generation);
+                    return generation;
+                });
+    }
+
+    /**
+     * The raw NDJSON chunks of a streamed generation; cancelling closes the connection, which
+     * stops Ollama generating
+     */
+    @SuppressWarnings("unchecked")
+    public Flux<Map<String, Object>> stream(String system, String prompt, Map<String, Object> options) {
+        return webClient.post()
+                .uri(ollamaUrl + "/api/generate")
+                .bodyValue(request(system, prompt, true, options))
+                .retrieve()
+                .bodyToFlux(Map.class)
+                .timeout(timeout)
+                .map(chunk -> (Map<String, Object>) chunk)
+                .takeUntil(chunk -> Boolean.TRUE.equals(chunk.get("done")))
+                .doOnNext(chunk -> {
+                    if (Boolean.TRUE.equals(chunk.get("done"))) {
+                        recordPromptEval(system, prompt, new Generation("", number(chunk, "prompt_eval_count"),
+                                number(chunk, "prompt_eval_duration"), 0, 0, 0));
+                    }
+                });
+    }
+
+    public String getModelName() {
+        return modelName;
+    }
+
+    private Map<String, Object> request(String system, String prompt, boolean stream, Map<String, Object> options) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("model", modelName);
+        request.put("system", system);
+        request.put("prompt", prompt);
+        request.put("stream", stream);
+        request.put("keep_alive", keepAlive);
+        request.put("options", options);
+        return request;
+    }
+
+    /**
+     * Without a cached prefix Ollama would evaluate the system prompt (measured by prime) plus the
+     * request prompt (estimated from its length); whatever it did not evaluate came from the cache
+     */
+    private void recordPromptEval(String system, String prompt, Generation generation) {
+        promptEval.record(generation.promptEvalNanos(), TimeUnit.NANOSECONDS);
+        if (prefixTokens == 0 || !system.equals(primedSystem)) {
+            return;
+        }
+        long expectedTokens = prefixTokens + Math.round(prompt.length() / charsPerToken);
+        long skippedTokens = Math.max(0, Math.min(prefixTokens, expectedTokens - generation.promptEvalCount()));
+        long savedNanos = Math.round(skippedTokens * nanosPerToken);
+        promptEvalSaved.record(savedNanos, TimeUnit.NANOSECONDS);
+        log.info("Ollama prompt eval: {} tokens in {} ms, ~{} cached prefix tokens reused (~{} ms saved)",
+                generation.promptEvalCount(), TimeUnit.NANOSECONDS.toMillis(generation.promptEvalNanos()),
+                skippedTokens, TimeUnit.NANOSECONDS.toMillis(savedNanos));
+    }
+
+    private static long number(Map<?, ?> response, String key) {
+        return response.get(key) instanceof Number value ? value.longValue() : 0;
+    }
+}
@@ -0,0 +1,161 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.NLP2SparkSQL.project.dto.QdrantSearchHit;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.qdrant.client.QdrantGrpcClient;
+import io.qdrant.client.grpc.JsonWithInt;
+import io.qdrant.client.grpc.Points;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Qdrant searches over gRPC (port 6334) instead of REST/JSON.
+ *
+ * One channel is opened for the lifetime of the service; HTTP/2 multiplexes concurrent searches over
+ * its connection and requests and responses are protobuf, so there is no JSON encoding of the query
+ * vector or decoding of the response.
+ */
+@Slf4j
+public class QdrantGrpcTransport implements AutoCloseable {
+
+    private static final Points.WithPayloadSelector QUESTION_AND_SQL = Points.WithPayloadSelector.newBuilder()
+            .setInclude(Points.PayloadIncludeSelector.newBuilder().addFields("question").addFields("sql"))
+            .build();
+
+    private final QdrantGrpcClient client;
+    private final String collectionName;
+    private final int limit;
+    private final Duration timeout;
+
+    public QdrantGrpcTransport(ManagedChannel channel, String collectionName, int limit, Duration timeout) {
+        this.client = QdrantGrpcClient.newBuilder(channel, true).withTimeout(timeout).build();
+        this.collectionName = collectionName;
+        this.limit = limit;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Plaintext channel to host:port with keep-alive pings so idle connections survive between bursts
+     */
+    public static QdrantGrpcTransport connect(String host, int port, String collectionName, int limit, Duration timeout) {
+        ManagedChannel channel = ManagedChannelBuilder.forAddress(host, port)
+                .usePlaintext()
+                .keepAliveTime(30, TimeUnit.SECONDS)
+                .keepAliveWithoutCalls(true)
+                .build();
+        log.info("Qdrant gRPC channel opened to {}:{}", host, port);
+        return new QdrantGrpcTransport(channel, collectionName, limit, timeout);
+    }
+
+    public CompletableFuture<Optional<QdrantSearchHit>> searchAsync(float[] vector) {
+        Points.SearchPoints.Builder request = newRequest();
+        for (float value : vector) {
+            request.addVector(value);
+        }
+        return call(request.build(), QdrantGrpcTransport::firstValidHit);
+    }
+
+    /**
+     * Every valid hit among the best limit points, best first, with its stored vector
+     */
+    public CompletableFuture<List<QdrantSearchHit>> searchHitsAsync(float[] vector, int limit) {
+        Points.SearchPoints.Builder request = newRequest().setLimit(limit)
+                .setWithVectors(Points.WithVectorsSelector.newBuilder().setEnable(true));
+        for (float value : vector) {
+            request.addVector(value);
+        }
+        return call(request.build(), QdrantGrpcTransport::validHits);
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    private Points.SearchPoints.Builder newRequest() {
+        return Points.SearchPoints.newBuilder()
+                .setCollectionName(collectionName)
+                .setLimit(limit)
+                .setWithPayload(QUESTION_AND_SQL);
+    }
+
+    /**
+     * Completes on a gRPC thread once the response arrives, or with the call's error; cancelling the
+     * returned future cancels the call
+     */
+    private <T> CompletableFuture<T> call(Points.SearchPoints request, Function<Points.SearchResponse, T> decode) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ListenableFuture<Points.SearchResponse> call = client.points()
+                .withDeadlineAfter(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .search(request);
+        Futures.addCallback(call, new FutureCallback<>() {
+            @Override
+            public void onSuccess(Points.SearchResponse response) {
+                result.complete(decode.apply(response));
+            }
+
+            @Override
+            public void onFailure(Throwable error) {
+                result.completeExceptionally(error);
+            }
+        }, MoreExecutors.directExecutor());
+        result.whenComplete((hit, error) -> {
+            if (result.isCancelled()) {
+                call.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private static Optional<QdrantSearchHit> firstValidHit(Points.SearchResponse response) {
+        for (Points.ScoredPoint point : response.getResultList()) {
+            QdrantSearchHit hit = toHit(point);
+            if (hit.isValid()) {
+                return Optional.of(hit);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static List<QdrantSearchHit> validHits(Points.SearchResponse response) {
+        List<QdrantSearchHit> hits = new ArrayList<>(response.getResultCount());
+        for (Points.ScoredPoint point : response.getResultList()) {
+            QdrantSearchHit hit = toHit(point);
+            if (hit.isValid()) {
+                hits.add(hit);
+            }
+        }
+        return hits;
+    }
+
+    private static QdrantSearchHit toHit(Points.ScoredPoint point) {
+        Map<String, JsonWithInt.Value> payload = point.getPayloadMap();
+        float[] vector = null;
+        if (point.hasVectors() && point.getVectors().hasVector()) {
+            List<Float> data = point.getVectors().getVector().getDataList();
+            vector = new float[data.size()];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = data.get(i);
+            }
+        }
+        return new QdrantSearchHit(point.getScore(),
+                stringValue(payload.get("question")), stringValue(payload.get("sql")), vector);
+    }
+
+    private static String stringValue(JsonWithInt.Value value) {
+        return value != null && value.hasStringValue() ? value.getStringValue().trim() : "";
+    }
+}
@@ -0,0 +1,367 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.NLP2SparkSQL.project.dto.QdrantSearchHit;
+import com.NLP2SparkSQL.project.utils.MappedVectorFile;
+import com.NLP2SparkSQL.project.utils.SimilarityHits;
+import com.NLP2SparkSQL.project.utils.Utf8Strings;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Local copy of the Qdrant collection's question, SQL and dense vector per point, searched by a
+ * brute-force cosine scan when Qdrant cannot be used.
+ *
+ * Vectors live in a memory-mapped file ({@code <path>.vec}), question/SQL/point id per row in a
+ * sidecar ({@code <path>.meta}) rewritten through a temporary file. A sync scrolls only ids and
+ * payloads, fetches vectors for the ids the mirror does not have and for points whose question or
+ * {@value #VECTOR_CHECKSUM_FIELD} payload changed (their old row is marked deleted), updates other
+ * changed payloads and marks deleted points; the vector file is compacted once deleted rows outnumber
+ * live ones. Points written without a checksum whose vector changed under the same question stay
+ * stale until the mirror files are removed.
+ */
+@Slf4j
+public class QdrantMirror implements AutoCloseable {
+
+    private static final int MAGIC = 0x514d4952; // "QMIR"
+    private static final int FORMAT_VERSION = 2;
+    private static final int PAGE_SIZE = 256;
+
+    /**
+     * Payload field holding {@link #vectorChecksum} of the dense vector a point was upserted with
+     */
+    static final String VECTOR_CHECKSUM_FIELD = "vector_checksum";
+
+    private final QdrantService qdrant;
+    private final Path vectorPath;
+    private final Path metaPath;
+    private final int dimension;
+
+    // Swapped as a whole, so a search never sees rows of one file with entries of another
+    private volatile Snapshot snapshot;
+
+    public QdrantMirror(QdrantService qdrant, Path path, int dimension) {
+        this.qdrant = qdrant;
+        this.vectorPath = path.resolveSibling(path.getFileName() + ".vec");
+        this.metaPath = path.resolveSibling(path.getFileName() + ".meta");
+        this.dimension = dimension;
+    }
+
+    /**
+     * Open the mirror files, starting empty when they are missing or unreadable
+     */
+    public synchronized void load() throws IOException {
+        Path parent = vectorPath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Entry[] entries = new Entry[0];
+        MappedVectorFile vectors;
+        try {
+            vectors = MappedVectorFile.open(vectorPath, dimension);
+            if (Files.exists(metaPath)) {
+                entries = readEntries(vectors.size());
+            }
+        } catch (IOException e) {
+            log.warn("Discarding unreadable Qdrant mirror at {}: {}", vectorPath, e.getMessage());
+            Files.deleteIfExists(vectorPath);
+            Files.deleteIfExists(metaPath);
+            vectors = MappedVectorFile.open(vectorPath, dimension);
+        }
+        if (entries.length < vectors.size()) {
+            // Rows appended after the last metadata write have no question/SQL; drop them
+            log.warn("Qdrant mirror has {} vectors but {} entries, rebuilding", vectors.size(), entries.length);
+            vectors.close();
+            Files.deleteIfExists(vectorPath);
+            vectors = MappedVectorFile.open(vectorPath, dimension);
+            entries = new Entry[0];
+        }
+        snapshot = new Snapshot(vectors, entries);
+        log.info("Qdrant mirror loaded with {} points from {}", size(), vectorPath);
+    }
+
+    /**
+     * Bring the mirror up to date with the collection
+     */
+    public synchronized SyncReport sync() throws IOException {
+        long start = System.currentTimeMillis();
+        Snapshot current = snapshot;
+
+        Map<String, Object> remoteIds = new LinkedHashMap<>();
+        Map<String, Entry> remote = new HashMap<>();
+        qdrant.scrollPayloads(PAGE_SIZE, (id, payload) -> {
+            String key = String.valueOf(id);
+            remoteIds.put(key, id);
+            remote.put(key, new Entry(key, text(payload.get("question")), text(payload.get("sql")),
+                    checksum(payload.get(VECTOR_CHECKSUM_FIELD))));
+        });
+
+        Map<String, Integer> rowById = new HashMap<>();
+        Entry[] entries = current.entries.clone();
+        for (int row = 0; row < entries.length; row++) {
+            if (entries[row] != null) {
+                rowById.put(entries[row].id, row);
+            }
+        }
+
+        int updated = 0;
+        int removed = 0;
+        List<Object> missing = new ArrayList<>();
+        for (Map.Entry<String, Integer> local : rowById.entrySet()) {
+            Entry latest = remote.get(local.getKey());
+            int row = local.getValue();
+            if (latest == null) {
+                entries[row] = null;
+                removed++;
+            } else if (latest.vectorChanged(entries[row])) {
+                // Re-upserted with another vector: refetched below, the old row is dropped once replaced
+                missing.add(remoteIds.get(local.getKey()));
+            } else if (!latest.equals(entries[row])) {
+                entries[row] = latest;
+                updated++;
+            }
+        }
+
+        for (Map.Entry<String, Object> id : remoteIds.entrySet()) {
+            if (!rowById.containsKey(id.getKey())) {
+                missing.add(id.getValue());
+            }
+        }
+        List<Entry> appended = new ArrayList<>();
+        int replaced = 0;
+        for (int from = 0; from < missing.size(); from += PAGE_SIZE) {
+            List<Object> page = missing.subList(from, Math.min(missing.size(), from + PAGE_SIZE));
+            for (Map.Entry<Object, float[]> point : qdrant.retrieveVectors(page).entrySet()) {
+                if (point.getValue().length != dimension) {
+                    continue;
+                }
+                String key = String.valueOf(point.getKey());
+                Integer oldRow = rowById.get(key);
+                if (oldRow != null) {
+                    entries[oldRow] = null;
+                    replaced++;
+                }
+                current.vectors.append(point.getValue());
+                appended.add(remote.get(key));
+            }
+        }
+        updated += replaced;
+        if (!appended.isEmpty()) {
+            current.vectors.force();
+            entries = Arrays.copyOf(entries, entries.length + appended.size());
+            for (int i = 0; i < appended.size(); i++) {
+                entries[entries.length - appended.size() + i] = appended.get(i);
+            }
+        }
+
+        Snapshot next = new Snapshot(current.vectors, entries);
+        if (next.deletedCount() > next.liveCount()) {
+            next = compact(next);
+        }
+        if (!appended.isEmpty() || updated > 0 || removed > 0 || next.vectors != current.vectors) {
+            writeEntries(next.entries);
+        }
+        snapshot = next;
+
+        SyncReport report = new SyncReport(appended.size() - replaced, updated, removed, next.liveCount(),
+                System.currentTimeMillis() - start);
+        log.info("Qdrant mirror synced in {}ms: {} added, {} updated, {} removed, {} points",
+                report.millis(), report.added(), report.updated(), report.removed(), report.size());
+        return report;
+    }
+
+    /**
+     * Nearest mirrored example with both a question and SQL, in the result shape of
+     * {@link ExampleRetriever#searchRelevantContextStructured}
+     */
+    public Map<String, String> search(float[] embedding) {
+        List<Map<String, String>> results = search(embedding, 1);
+        return results.isEmpty() ? ExampleRetriever.emptyResult() : results.get(0);
+    }
+
+    /**
+     * Up to k nearest mirrored examples with both a question and SQL, best first
+     */
+    public List<Map<String, String>> search(float[] embedding, int k) {
+        List<QdrantSearchHit> hits = searchHits(embedding, k);
+        List<Map<String, String>> results = new ArrayList<>(hits.size());
+        for (QdrantSearchHit hit : hits) {
+            results.add(hit.toResult());
+        }
+        return results;
+    }
+
+    /**
+     * Same search with the mirrored vector of every hit
+     */
+    public List<QdrantSearchHit> searchHits(float[] embedding, int k) {
+        Snapshot current = snapshot;
+        if (current == null || embedding.length != dimension) {
+            return List.of();
+        }
+        Entry[] entries = current.entries;
+        SimilarityHits hits = current.vectors.search(embedding, k,
+                row -> row < entries.length && entries[row] != null && entries[row].isValid());
+        List<QdrantSearchHit> results = new ArrayList<>(hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            Entry entry = entries[hits.row(i)];
+            float[] vector = new float[dimension];
+            current.vectors.read(hits.row(i), vector);
+            results.add(new QdrantSearchHit(hits.score(i), entry.question, entry.sql, vector));
+        }
+        if (!results.isEmpty()) {
+            log.debug("Qdrant mirror match with score {}: {}", hits.score(0), results.get(0).getQuestion());
+        }
+        return results;
+    }
+
+    public int size() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.liveCount();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (snapshot != null) {
+            snapshot.vectors.close();
+        }
+    }
+
+    /**
+     * Rewrite the vector file with live rows only
+     */
+    private Snapshot compact(Snapshot current) throws IOException {
+        Path temp = vectorPath.resolveSibling(vectorPath.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        List<Entry> kept = new ArrayList<>(current.liveCount());
+        float[] row = new float[dimension];
+        try (MappedVectorFile compacted = MappedVectorFile.open(temp, dimension)) {
+            for (int i = 0; i < current.entries.length; i++) {
+                if (current.entries[i] != null) {
+                    current.vectors.read(i, row);
+                    compacted.append(row);
+                    kept.add(current.entries[i]);
+                }
+            }
+        }
+        current.vectors.close();
+        Files.move(temp, vectorPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Qdrant mirror compacted from {} to {} rows", current.entries.length, kept.size());
+        return new Snapshot(MappedVectorFile.open(vectorPath, dimension), kept.toArray(new Entry[0]));
+    }
+
+    private Entry[] readEntries(int vectorCount) throws IOException {
+        try (InputStream in = Files.newInputStream(metaPath)) {
+            DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+            if (data.readInt() != MAGIC || data.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a Qdrant mirror file: " + metaPath);
+            }
+            int count = data.readInt();
+            if (count > vectorCount) {
+                throw new IOException("Mirror metadata lists " + count + " rows for " + vectorCount + " vectors");
+            }
+            Entry[] entries = new Entry[count];
+            for (int row = 0; row < count; row++) {
+                boolean live = data.readBoolean();
+                Entry entry = new Entry(Utf8Strings.read(data), Utf8Strings.read(data), Utf8Strings.read(data),
+                        data.readLong());
+                entries[row] = live ? entry : null;
+            }
+            return entries;
+        }
+    }
+
+    private void writeEntries(Entry[] entries) throws IOException {
+        Path temp = metaPath.resolveSibling(metaPath.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+            data.writeInt(MAGIC);
+            data.writeInt(FORMAT_VERSION);
+            data.writeInt(entries.length);
+            for (Entry entry : entries) {
+                Entry written = entry != null ? entry : Entry.DELETED;
+                data.writeBoolean(entry != null);
+                Utf8Strings.write(data, written.id);
+                Utf8Strings.write(data, written.question);
+                Utf8Strings.write(data, written.sql);
+                data.writeLong(written.vectorChecksum);
+            }
+            data.flush();
+        }
+        Files.move(temp, metaPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String text(Object value) {
+        return value == null ? "" : String.valueOf(value).trim();
+    }
+
+    private static long checksum(Object value) {
+        return value instanceof Number number ? number.longValue() : NO_CHECKSUM;
+    }
+
+    /**
+     * CRC32 of the vector's float bits, stored by writers in the {@value #VECTOR_CHECKSUM_FIELD} payload
+     * field so a sync can tell a re-upserted vector from an unchanged one without fetching it
+     */
+    static long vectorChecksum(float[] vector) {
+        ByteBuffer bytes = ByteBuffer.allocate(vector.length * Float.BYTES);
+        bytes.asFloatBuffer().put(vector);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    public record SyncReport(int added, int updated, int removed, int size, long millis) {
+    }
+
+    private static final long NO_CHECKSUM = -1;
+
+    private record Entry(String id, String question, String sql, long vectorChecksum) {
+        static final Entry DELETED = new Entry("", "", "", NO_CHECKSUM);
+
+        /**
+         * Whether the point was upserted with another vector than the mirrored one: a changed question
+         * is embedded again, and a changed checksum is a new vector under the same question
+         */
+        boolean vectorChanged(Entry mirrored) {
+            return !question.equals(mirrored.question) || vectorChecksum != mirrored.vectorChecksum;
+        }
+
+        boolean isValid() {
+            return !question.isEmpty() && !sql.isEmpty();
+        }
+    }
+
+    private record Snapshot(MappedVectorFile vectors, Entry[] entries) {
+        int liveCount() {
+            int live = 0;
+            for (Entry entry : entries) {
+                if (entry != null) {
+                    live++;
+                }
+            }
+            return live;
+        }
+
+        int deletedCount() {
+            return entries.length - liveCount();
+        }
+    }
+}
@@ -1,19 +1,48 @@
 package com.NLP2SparkSQL.project.service;
 
+import com.NLP2SparkSQL.project.dto.QdrantSearchHit;
+import com.NLP2SparkSQL.project.utils.EmbeddingUtils;
+import com.NLP2SparkSQL.project.utils.HyperplaneLsh;
+import com.NLP2SparkSQL.project.utils.LatencyWindow;
+import com.NLP2SparkSQL.project.utils.QdrantResponseDecoder;
+import com.NLP2SparkSQL.project.utils.MicroBatcher;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Paths;
 import java.time.Duration;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
-public class QdrantService {
+public class QdrantService implements ExampleRetriever {
 
     @Value("${QDRANT_URL:${qdrant.url:http://localhost:6333}}")
     private String qdrantUrl;
@@ -24,122 +53,521 @@ private String collectionName;
 @Value("${QDRANT_SEARCH_TOP:${qdrant.search.top:1}}")
 private int topResults;
 
+@Value("${QDRANT_SPARSE_VECTOR_NAME:${qdrant.sparse.vector-name:text-sparse}}")
+private String sparseVectorName;
+
+@Value("${QDRANT_TRANSPORT:${qdrant.transport:rest}}")
+private String transport;
+
+@Value("${QDRANT_GRPC_PORT:${qdrant.grpc.port:6334}}")
+private int grpcPort;
+
+@Value("${QDRANT_BATCH_ENABLED:${qdrant.batch.enabled:false}}")
+private boolean batchEnabled;
+
+@Value("${qdrant.batch.window:2ms}")
+private Duration batchWindow;
+
+@Value("${qdrant.batch.max-size:32}")
+private int batchMaxSize;
+
+@Value("${qdrant.batch.caller-timeout:30s}")
+private Duration batchCallerTimeout;
+
+@Value("${QDRANT_TIMEOUT:${qdrant.timeout:120000}}")
+private long timeoutMillis;
+
+@Value("${QDRANT_SEARCH_BUDGET:${qdrant.search.budget:1s}}")
+private Duration searchBudget;
+
+@Value("${qdrant.search.hedge.enabled:true}")
+private boolean hedgeEnabled;
+
+@Value("${qdrant.search.hedge.percentile:0.95}")
+private double hedgePercentile;
+
+@Value("${qdrant.search.hedge.min-delay:5ms}")
+private Duration hedgeMinDelay;
+
+@Value("${QDRANT_CACHE_ENABLED:${qdrant.cache.enabled:true}}")
+private boolean cacheEnabled;
+
+@Value("${qdrant.cache.max-size:10000}")
+private long cacheMaxSize;
+
+@Value("${qdrant.cache.ttl:PT10M}")
+private Duration cacheTtl;
+
+@Value("${qdrant.cache.lsh-bits:32}")
+private int cacheLshBits;
+
+@Value("${QDRANT_MIRROR_ENABLED:${qdrant.mirror.enabled:false}}")
+private boolean mirrorEnabled;
+
+@Value("${QDRANT_MIRROR_PATH:${qdrant.mirror.path:data/qdrant-mirror}}")
+private String mirrorPath;
+
+@Value("${qdrant.mirror.mode:fallback}")
+private String mirrorMode;
+
+@Value("${qdrant.mirror.sync-interval:PT5M}")
+private Duration mirrorSyncInterval;
+
+@Value("${qdrant.mirror.probe-interval:10s}")
+private Duration mirrorProbeInterval;
+
+@Autowired(required = false)
+private MeterRegistry meterRegistry;
+
+    // Hedging starts once this many searches have been timed
+    private static final int HEDGE_MIN_SAMPLES = 20;
+    private static final long LSH_SEED = 0x5eed_1a5bL;
+
 
     private final WebClient webClient;
 
+    // Set when qdrant.transport=grpc; searches then go over gRPC, everything else stays on REST
+    private QdrantGrpcTransport grpcTransport;
+
+    // Set when qdrant.batch.enabled=true; concurrent REST dense searches are then sent together
+    private MicroBatcher<BatchedSearch, List<QdrantSearchHit>> searchBatcher;
+
+    // Recent search latencies; their percentile is the delay before a hedged duplicate is sent
+    private final LatencyWindow searchLatencies = new LatencyWindow(256);
+    private Counter hedgedSearches;
+    private Counter budgetExceeded;
+
+    // Set when qdrant.cache.enabled=true; dense search results by collection and LSH of the query,
+    // the nearest example for single searches and the candidate lists for several examples
+    private Cache<ResultKey, Map<String, String>> resultCache;
+    private Cache<ResultKey, List<QdrantSearchHit>> examplesCache;
+    private HyperplaneLsh queryLsh;
+    // points_count seen by the last health check; a change invalidates the search caches
+    private volatile long knownPointsCount = -1;
+
+    // Set when qdrant.mirror.enabled=true; serves searches while Qdrant is unavailable, or always
+    private QdrantMirror mirror;
+    private ScheduledExecutorService mirrorScheduler;
+    private volatile boolean qdrantAvailable = true;
+    private volatile long lastMirrorSync;
+
     public QdrantService() {
         this.webClient = WebClient.builder()
                 .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(10 * 1024 * 1024))
                 .build();
     }
 
-    public Map<String, String> searchRelevantContextStructured(float[] embedding) {
-        log.info("=== QDRANT SEARCH DEBUG ===");
-        log.info("Qdrant URL: {}", qdrantUrl);
-        log.info("Collection: {}", collectionName);
-        log.info("Embedding dimension: {}", embedding.length);
-        log.info("Embedding norm: {}", calculateNorm(embedding));
-        log.info("First 5 embedding values: {}", Arrays.toString(Arrays.copyOf(embedding, Math.min(5, embedding.length))));
+    @PostConstruct
+    public void initTransport() {
+        MeterRegistry registry = meterRegistry != null ? meterRegistry : Metrics.globalRegistry;
+        hedgedSearches = Counter.builder("qdrant.search.hedged")
+                .description("Searches duplicated because the first call was slower than the hedge percentile")
+                .register(registry);
+        budgetExceeded = Counter.builder("qdrant.search.budget.exceeded")
+                .description("Searches abandoned at the latency budget, answered without an example")
+                .register(registry);
+
+        if (cacheEnabled) {
+            queryLsh = new HyperplaneLsh(EmbeddingUtils.getEmbeddingDimension(), cacheLshBits, LSH_SEED);
+            resultCache = Caffeine.newBuilder()
+                    .maximumSize(cacheMaxSize)
+                    .expireAfterWrite(cacheTtl)
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(registry, resultCache, "qdrant.search");
+            examplesCache = Caffeine.newBuilder()
+                    .maximumSize(cacheMaxSize)
+                    .expireAfterWrite(cacheTtl)
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(registry, examplesCache, "qdrant.search.examples");
+            log.info("Qdrant search cache: up to {} results for {}, {}-bit query hash", cacheMaxSize, cacheTtl, cacheLshBits);
+        }
 
-        try {
-            Map<String, Object> request = new HashMap<>();
-            request.put("vector", embedding);
-            request.put("limit", topResults);
-            request.put("with_payload", true);
-            request.put("with_vector", false);
+        if ("grpc".equalsIgnoreCase(transport)) {
+            String host = URI.create(qdrantUrl).getHost();
+            grpcTransport = QdrantGrpcTransport.connect(host, grpcPort, collectionName, topResults, requestTimeout());
+        }
+        log.info("Qdrant searches use {} transport", grpcTransport != null ? "gRPC" : "REST");
 
-            log.info("Sending request to Qdrant: {}", request.keySet());
+        if (batchEnabled && grpcTransport == null) {
+            searchBatcher = new MicroBatcher<>("qdrant.search.batch", batchWindow, batchMaxSize, this::searchBatch, registry);
+            log.info("Qdrant search micro-batching enabled: window {}, up to {} searches per batch", batchWindow, batchMaxSize);
+        }
 
-            Map<String, Object> response = webClient.post()
-                    .uri(qdrantUrl + "/collections/{collection}/points/search", collectionName)
-                    .bodyValue(request)
-                    .retrieve()
-                    .bodyToMono(Map.class)
-                    .timeout(Duration.ofSeconds(30))
-                    .block();
+        if (mirrorEnabled) {
+            startMirror();
+        }
+    }
 
-            log.info("Qdrant response received: {}", response != null ? "SUCCESS" : "NULL");
-            if (response != null) {
-                log.info("Response keys: {}", response.keySet());
-                if (response.containsKey("result")) {
-                    List<Map<String, Object>> results = (List<Map<String, Object>>) response.get("result");
-                    log.info("Number of results: {}", results.size());
-
-                    for (int i = 0; i < Math.min(results.size(), 3); i++) {
-                        Map<String, Object> result = results.get(i);
-                        log.info("Result {}: score={}, payload keys={}",
-                                i, result.get("score"),
-                                result.containsKey("payload") ? ((Map<String, Object>) result.get("payload")).keySet() : "null");
-                    }
-                }
+    @PreDestroy
+    public void closeTransport() {
+        if (grpcTransport != null) {
+            grpcTransport.close();
+        }
+        if (searchBatcher != null) {
+            searchBatcher.close();
+        }
+        if (mirrorScheduler != null) {
+            mirrorScheduler.shutdownNow();
+        }
+        if (mirror != null) {
+            try {
+                mirror.close();
+            } catch (IOException e) {
+                log.warn("Failed to close Qdrant mirror: {}", e.getMessage());
             }
+        }
+    }
 
-            return extractQuestionAndSqlFromResponse(response);
+    public boolean isMirrorEnabled() {
+        return mirror != null;
+    }
 
-        } catch (Exception e) {
-            log.error("Error searching Qdrant: {}", e.getMessage(), e);
-            return createEmptyResult();
+    /**
+     * Synchronize the mirror now; the background task calls this every qdrant.mirror.sync-interval
+     */
+    public QdrantMirror.SyncReport syncMirror() throws IOException {
+        if (mirror == null) {
+            throw new IllegalStateException("Qdrant mirror is not enabled");
         }
+        QdrantMirror.SyncReport report = mirror.sync();
+        lastMirrorSync = System.nanoTime();
+        return report;
     }
 
-    
-    private Map<String, String> extractQuestionAndSqlFromResponse(Map<String, Object> response) {
-        if (response == null) {
-            log.warn("Qdrant response is null");
-            return createEmptyResult();
+    private void startMirror() {
+        mirror = new QdrantMirror(this, Paths.get(mirrorPath), EmbeddingUtils.getEmbeddingDimension());
+        try {
+            mirror.load();
+        } catch (IOException e) {
+            log.error("Failed to open Qdrant mirror at {}: {}", mirrorPath, e.getMessage());
+            mirror = null;
+            return;
         }
+        mirrorScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "qdrant-mirror-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        mirrorScheduler.scheduleWithFixedDelay(this::maintainMirror, 0, mirrorProbeInterval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Qdrant mirror enabled ({} mode), synced every {}", mirrorMode, mirrorSyncInterval);
+    }
 
-        if (!response.containsKey("result")) {
-            log.warn("Qdrant response missing 'result' key. Available keys: {}", response.keySet());
-            return createEmptyResult();
+    /**
+     * While Qdrant is marked unavailable, probe it every qdrant.mirror.probe-interval; while it is
+     * available, sync once the sync interval has passed
+     */
+    private void maintainMirror() {
+        try {
+            boolean syncDue = lastMirrorSync == 0
+                    || System.nanoTime() - lastMirrorSync >= mirrorSyncInterval.toNanos();
+            if (qdrantAvailable && !syncDue) {
+                return;
+            }
+            if (!Boolean.TRUE.equals(isHealthyReactive().block())) {
+                return;
+            }
+            if (syncDue) {
+                syncMirror();
+            }
+        } catch (Exception e) {
+            log.error("Qdrant mirror sync failed: {}", e.getMessage());
         }
+    }
 
-        List<Map<String, Object>> results = (List<Map<String, Object>>) response.get("result");
-        if (results == null || results.isEmpty()) {
-            log.warn("Results list is empty - no vectors found in collection or collection is empty");
-            return createEmptyResult();
-        }
+    private boolean readFromMirror() {
+        return mirror != null && mirror.size() > 0 && ("always".equalsIgnoreCase(mirrorMode) || !qdrantAvailable);
+    }
+
+    /**
+     * Result for a dense search that failed or ran out of budget: the mirror's nearest example when
+     * there is one, which also routes further searches to the mirror until Qdrant is healthy again
+     */
+    private Map<String, String> fallbackResult(float[] embedding) {
+        List<QdrantSearchHit> results = fallbackResults(embedding, 1);
+        return results.isEmpty() ? createEmptyResult() : results.get(0).toResult();
+    }
 
-        log.info("Processing {} search results", results.size());
+    private List<QdrantSearchHit> fallbackResults(float[] embedding, int limit) {
+        if (mirror == null || mirror.size() == 0) {
+            return List.of();
+        }
+        if (qdrantAvailable) {
+            qdrantAvailable = false;
+            log.warn("Serving Qdrant searches from the local mirror ({} points) until Qdrant is healthy again", mirror.size());
+        }
+        return mirror.searchHits(embedding, limit);
+    }
 
-        
-        for (Map<String, Object> match : results) {
-            double confidence = match.containsKey("score")
-                    ? ((Number) match.get("score")).doubleValue()
-                    : 0.0;
+    @Override
+    public Map<String, String> searchRelevantContextStructured(float[] embedding) {
+        return searchRelevantContextReactive(embedding).block();
+    }
 
-            if (!match.containsKey("payload")) {
-                log.warn("Match missing payload field");
-                continue;
+    /**
+     * Non-blocking dense search over whichever transport is configured; never errors, failures
+     * and searches over the latency budget resolve to the empty result.
+     *
+     * With the result cache enabled, a query whose LSH matches an earlier one reuses that query's
+     * example. Only found examples are cached, so a miss or failure is retried on the next question.
+     */
+    @Override
+    public Mono<Map<String, String>> searchRelevantContextReactive(float[] embedding) {
+        if (resultCache == null || embedding.length != queryLsh.dimension()) {
+            return searchUncached(embedding);
+        }
+        ResultKey key = new ResultKey(collectionName, queryLsh.hash(embedding), 1);
+        Map<String, String> cached = resultCache.getIfPresent(key);
+        if (cached != null) {
+            log.debug("Qdrant search cache hit for '{}'", abbreviate(cached.get("question")));
+            return Mono.just(cached);
+        }
+        return searchUncached(embedding).doOnNext(result -> {
+            if (!result.get("question").isEmpty() && !result.get("sql").isEmpty()) {
+                resultCache.put(key, result);
             }
+        });
+    }
 
-            Map<String, Object> payload = (Map<String, Object>) match.get("payload");
-            if (payload == null) {
-                log.warn("Payload is null, skipping...");
-                continue;
+    private Mono<Map<String, String>> searchUncached(float[] embedding) {
+        if (readFromMirror()) {
+            return Mono.fromSupplier(() -> mirror.search(embedding));
+        }
+        log.debug("Qdrant search in '{}' at {}: dimension {}, norm {}",
+                collectionName, qdrantUrl, embedding.length, calculateNorm(embedding));
+        if (grpcTransport != null) {
+            return toResult(hedged(() -> Mono.fromFuture(() -> grpcTransport.searchAsync(embedding)), "dense"),
+                    "dense", "gRPC", () -> fallbackResult(embedding));
+        }
+        if (searchBatcher != null) {
+            return Mono.fromFuture(() -> searchBatcher.submit(new BatchedSearch(embedding, topResults, false), batchCallerTimeout))
+                    .map(hits -> hits.isEmpty() ? createEmptyResult() : hits.get(0).toResult())
+                    .timeout(searchBudget, Mono.fromSupplier(() -> {
+                        budgetExceeded.increment();
+                        log.warn("Batched Qdrant search exceeded its {} budget", searchBudget);
+                        return fallbackResult(embedding);
+                    }))
+                    .onErrorResume(e -> {
+                        log.error("Error in batched Qdrant search: {}", e.getMessage());
+                        return Mono.fromSupplier(() -> fallbackResult(embedding));
+                    });
+        }
+        return toResult(hedged(() -> search(embedding), "dense"), "dense", "REST", () -> fallbackResult(embedding));
+    }
+
+    /**
+     * Every valid example among the limit nearest points in one search, with their stored vectors,
+     * for picking several examples. Cached, batched and falling back to the mirror like single
+     * searches; only non-empty candidate lists are cached.
+     */
+    @Override
+    public Mono<List<QdrantSearchHit>> searchRelevantExamplesReactive(float[] embedding, int limit) {
+        if (limit <= 1) {
+            return ExampleRetriever.super.searchRelevantExamplesReactive(embedding, limit);
+        }
+        if (examplesCache == null || embedding.length != queryLsh.dimension()) {
+            return searchExamplesUncached(embedding, limit);
+        }
+        ResultKey key = new ResultKey(collectionName, queryLsh.hash(embedding), limit);
+        List<QdrantSearchHit> cached = examplesCache.getIfPresent(key);
+        if (cached != null) {
+            log.debug("Qdrant search cache hit for {} examples", cached.size());
+            return Mono.just(cached);
+        }
+        return searchExamplesUncached(embedding, limit).doOnNext(found -> {
+            if (!found.isEmpty()) {
+                examplesCache.put(key, found);
             }
+        });
+    }
 
-            log.info("Payload keys: {}", payload.keySet());
+    private Mono<List<QdrantSearchHit>> searchExamplesUncached(float[] embedding, int limit) {
+        if (readFromMirror()) {
+            return Mono.fromSupplier(() -> mirror.searchHits(embedding, limit));
+        }
+        Mono<List<QdrantSearchHit>> hits;
+        if (grpcTransport != null) {
+            hits = hedged(() -> Mono.fromFuture(() -> grpcTransport.searchHitsAsync(embedding, limit)), "dense");
+        } else if (searchBatcher != null) {
+            hits = Mono.fromFuture(() -> searchBatcher.submit(new BatchedSearch(embedding, limit, true), batchCallerTimeout))
+                    .timeout(searchBudget, Mono.error(() -> {
+                        budgetExceeded.increment();
+                        log.warn("Batched Qdrant search exceeded its {} budget", searchBudget);
+                        return new BudgetExceededException();
+                    }));
+        } else {
+            hits = hedged(() -> searchHits(embedding, limit), "dense");
+        }
+        return hits
+                .doOnNext(found -> log.info("Qdrant returned {} valid examples of {} requested", found.size(), limit))
+                .onErrorResume(e -> {
+                    if (!(e instanceof BudgetExceededException)) {
+                        log.error("Error searching Qdrant for {} examples: {}", limit, e.getMessage());
+                    }
+                    return Mono.fromSupplier(() -> fallbackResults(embedding, limit));
+                });
+    }
 
-            String question = payload.getOrDefault("question", "").toString().trim();
-            String sql = payload.getOrDefault("sql", "").toString().trim();
+    /**
+     * Name of the sparse vector that ingestion writes next to the dense one when
+     * ingest.sparse-vectors=true
+     */
+    public String getSparseVectorName() {
+        return sparseVectorName;
+    }
 
-            if (!question.isEmpty() && !sql.isEmpty()) {
-                log.info("✅ Found valid result -> Question: '{}', SQL: '{}', Score: {}",
-                        question.length() > 50 ? question.substring(0, 50) + "..." : question,
-                        sql.length() > 50 ? sql.substring(0, 50) + "..." : sql,
-                        confidence);
+    public String getCollectionName() {
+        return collectionName;
+    }
 
-                return Map.of(
-                        "question", question,
-                        "sql", sql,
-                        "confidence", String.valueOf(confidence)
-                );
+    /**
+     * Run a search within the latency budget. Once enough searches have been timed, a duplicate is
+     * sent when the first call is still running at the hedge percentile of recent latencies, and
+     * whichever answers first wins. At the budget the search fails with a BudgetExceededException.
+     */
+    private <T> Mono<T> hedged(Supplier<Mono<T>> search, String kind) {
+        Mono<T> attempt = timed(search);
+        long hedgeNanos = hedgeEnabled ? searchLatencies.percentileNanos(hedgePercentile, HEDGE_MIN_SAMPLES) : -1;
+        if (hedgeNanos >= 0) {
+            Duration hedgeDelay = Duration.ofNanos(Math.max(hedgeNanos, hedgeMinDelay.toNanos()));
+            if (hedgeDelay.compareTo(searchBudget) < 0) {
+                Mono<T> hedge = Mono.delay(hedgeDelay).then(Mono.defer(() -> {
+                    hedgedSearches.increment();
+                    log.debug("Qdrant {} search still running after {}ms, sending a hedged duplicate", kind, hedgeDelay.toMillis());
+                    return timed(search);
+                }));
+                attempt = Mono.firstWithValue(attempt, hedge);
             }
         }
+        return attempt.timeout(searchBudget, Mono.error(() -> {
+            budgetExceeded.increment();
+            log.warn("Qdrant {} search exceeded its {} budget", kind, searchBudget);
+            return new BudgetExceededException();
+        }));
+    }
+
+    private <T> Mono<T> timed(Supplier<Mono<T>> search) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return search.get().doOnNext(hit -> searchLatencies.record(System.nanoTime() - start));
+        });
+    }
 
-        log.warn("No valid payload found with both question & sql");
-        return createEmptyResult();
+    private Duration requestTimeout() {
+        return Duration.ofMillis(timeoutMillis);
+    }
+
+    /**
+     * POST /points/search and stream-decode the first hit with both a question and SQL
+     */
+    private Mono<Optional<QdrantSearchHit>> search(float[] vector) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("vector", vector);
+        request.put("limit", topResults);
+        request.put("with_payload", List.of("question", "sql"));
+        request.put("with_vector", false);
+
+        return webClient.post()
+                .uri(qdrantUrl + "/collections/{collection}/points/search", collectionName)
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(byte[].class)
+                .timeout(requestTimeout())
+                .map(body -> {
+                    try {
+                        return QdrantResponseDecoder.firstValidHit(body);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .defaultIfEmpty(Optional.empty());
+    }
+
+    /**
+     * POST /points/search for the limit nearest points and decode every valid hit with its vector
+     */
+    private Mono<List<QdrantSearchHit>> searchHits(float[] vector, int limit) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("vector", vector);
+        request.put("limit", limit);
+        request.put("with_payload", List.of("question", "sql"));
+        request.put("with_vector", true);
+
+        return webClient.post()
+                .uri(qdrantUrl + "/collections/{collection}/points/search", collectionName)
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(byte[].class)
+                .timeout(requestTimeout())
+                .map(body -> {
+                    try {
+                        return QdrantResponseDecoder.validHits(body);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .defaultIfEmpty(List.of());
+    }
+
+    /**
+     * @param fallback result when the search fails or exceeds its budget
+     */
+    private Mono<Map<String, String>> toResult(Mono<Optional<QdrantSearchHit>> search, String kind, String transportName,
+                                               Supplier<Map<String, String>> fallback) {
+        return search
+                .map(hit -> {
+                    if (hit.isEmpty()) {
+                        log.warn("No Qdrant {} hit with both question & sql ({})", kind, transportName);
+                        return createEmptyResult();
+                    }
+                    log.info("Qdrant {} hit over {} (score {}): '{}'",
+                            kind, transportName, hit.get().getScore(), abbreviate(hit.get().getQuestion()));
+                    return hit.get().toResult();
+                })
+                .onErrorResume(e -> {
+                    if (!(e instanceof BudgetExceededException)) {
+                        log.error("Error searching Qdrant over {} ({}): {}", transportName, kind, e.getMessage(), e);
+                    }
+                    return Mono.fromSupplier(fallback);
+                });
+    }
+
+    /**
+     * One POST /points/search/batch for several dense searches; the valid hits of each are in
+     * request order
+     */
+    private CompletableFuture<List<List<QdrantSearchHit>>> searchBatch(List<BatchedSearch> batch) {
+        List<Map<String, Object>> searches = new ArrayList<>(batch.size());
+        for (BatchedSearch request : batch) {
+            Map<String, Object> search = new HashMap<>();
+            search.put("vector", request.embedding());
+            search.put("limit", request.limit());
+            search.put("with_payload", List.of("question", "sql"));
+            search.put("with_vector", request.withVector());
+            searches.add(search);
+        }
+
+        return webClient.post()
+                .uri(qdrantUrl + "/collections/{collection}/points/search/batch", collectionName)
+                .bodyValue(Map.of("searches", searches))
+                .retrieve()
+                .bodyToMono(byte[].class)
+                .timeout(requestTimeout())
+                .map(body -> {
+                    try {
+                        List<List<QdrantSearchHit>> results = QdrantResponseDecoder.validHitsPerSearch(body);
+                        log.debug("Qdrant batch of {} searches answered", batch.size());
+                        return results;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .toFuture();
+    }
+
+    private static String abbreviate(String text) {
+        return text.length() > 50 ? text.substring(0, 50) + "..." : text;
     }
 
     private Map<String, String> createEmptyResult() {
@@ -151,6 +579,7 @@ private int topResults;
         );
     }
 
+    @Override
     public boolean hasValidResult(Map<String, String> result) {
         boolean isValid = result != null &&
                 !result.get("question").isEmpty() &&
@@ -165,31 +594,230 @@ private int topResults;
         return isValid;
     }
 
+    @Override
     public boolean isHealthy() {
-        try {
-            log.info("Checking Qdrant health at: {}/collections/{}", qdrantUrl, collectionName);
+        return isHealthyReactive().block();
+    }
+
+    /**
+     * Non-blocking check that the collection exists; never errors
+     */
+    public Mono<Boolean> isHealthyReactive() {
+        log.info("Checking Qdrant health at: {}/collections/{}", qdrantUrl, collectionName);
+        return collectionInfoReactive()
+                .timeout(Duration.ofSeconds(5))
+                .map(result -> {
+                    log.info("Collection '{}' contains {} points", collectionName, result.get("points_count"));
+                    log.info("Qdrant health check result: true");
+                    return true;
+                })
+                .defaultIfEmpty(false)
+                .onErrorResume(e -> {
+                    log.error("Qdrant health check failed: {}", e.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    /**
+     * The "result" of GET /collections/{collection}: status, points_count and the collection config.
+     * Errors when Qdrant cannot be reached or has no such collection. A reply also counts as Qdrant
+     * being available again, and a changed points_count clears the search cache. Callers apply their own
+     * timeout.
+     */
+    @SuppressWarnings("unchecked")
+    public Mono<Map<String, Object>> collectionInfoReactive() {
+        return webClient.get()
+                .uri(qdrantUrl + "/collections/{collection}", collectionName)
+                .retrieve()
+                .bodyToMono(Map.class)
+                .flatMap(response -> response.get("result") instanceof Map<?, ?> result
+                        ? Mono.just((Map<String, Object>) result)
+                        : Mono.<Map<String, Object>>error(new IllegalStateException("Collection info has no result")))
+                .doOnNext(result -> {
+                    if (result.get("points_count") instanceof Number count) {
+                        onPointsCount(count.longValue());
+                    }
+                    if (!qdrantAvailable) {
+                        log.info("Qdrant is healthy again, searching it instead of the local mirror");
+                        qdrantAvailable = true;
+                    }
+                });
+    }
+
+    /**
+     * Drop cached search results once the collection's point count differs from the last one seen
+     */
+    private void onPointsCount(long pointsCount) {
+        long previous = knownPointsCount;
+        knownPointsCount = pointsCount;
+        if (resultCache != null && previous >= 0 && previous != pointsCount) {
+            log.info("Collection '{}' went from {} to {} points, clearing {} cached search results",
+                    collectionName, previous, pointsCount, resultCache.estimatedSize() + examplesCache.estimatedSize());
+            clearSearchCaches();
+        }
+    }
 
-            Map<String, Object> response = webClient.get()
-                    .uri(qdrantUrl + "/collections/{collection}", collectionName)
+    private void clearSearchCaches() {
+        if (resultCache != null) {
+            resultCache.invalidateAll();
+            examplesCache.invalidateAll();
+        }
+    }
+
+    /**
+     * PUT /points with wait=true, so the points are searchable when this returns; clears the search
+     * cache, whose entries may no longer be the nearest examples
+     *
+     * @param points each with an "id", a "vector" and a "payload"
+     */
+    public void upsertPoints(List<Map<String, Object>> points) {
+        webClient.put()
+                .uri(qdrantUrl + "/collections/{collection}/points?wait=true", collectionName)
+                .bodyValue(Map.of("points", points))
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(requestTimeout())
+                .block();
+        clearSearchCaches();
+    }
+
+    /**
+     * Page through every point of the collection with its vector and payload
+     *
+     * @return number of points visited
+     */
+    public int scrollPoints(int pageSize, BiConsumer<float[], Map<String, Object>> consumer) {
+        return scroll(pageSize, true, point -> {
+            float[] vector = denseVector(point.get("vector"));
+            if (vector == null) {
+                return false;
+            }
+            consumer.accept(vector, payload(point));
+            return true;
+        });
+    }
+
+    /**
+     * Page through the id and question/SQL payload of every point, without vectors
+     *
+     * @return number of points visited
+     */
+    public int scrollPayloads(int pageSize, BiConsumer<Object, Map<String, Object>> consumer) {
+        return scroll(pageSize, false, point -> {
+            consumer.accept(point.get("id"), payload(point));
+            return true;
+        });
+    }
+
+    /**
+     * Dense vectors of the given points, by the ids Qdrant returned them under; points without a
+     * dense vector are left out
+     */
+    public Map<Object, float[]> retrieveVectors(List<Object> ids) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("ids", ids);
+        request.put("with_payload", false);
+        request.put("with_vector", true);
+
+        Map<String, Object> response = webClient.post()
+                .uri(qdrantUrl + "/collections/{collection}/points", collectionName)
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(Map.class)
+                .timeout(requestTimeout())
+                .block();
+        Map<Object, float[]> vectors = new HashMap<>();
+        if (response != null && response.get("result") instanceof List<?> points) {
+            for (Object point : points) {
+                if (point instanceof Map<?, ?> map) {
+                    float[] vector = denseVector(map.get("vector"));
+                    if (vector != null) {
+                        vectors.put(map.get("id"), vector);
+                    }
+                }
+            }
+        }
+        return vectors;
+    }
+
+    private int scroll(int pageSize, boolean withVector, Predicate<Map<String, Object>> consumer) {
+        int visited = 0;
+        Object offset = null;
+        do {
+            Map<String, Object> request = new HashMap<>();
+            request.put("limit", pageSize);
+            request.put("with_payload", withVector ? true : List.of("question", "sql"));
+            request.put("with_vector", withVector);
+            if (offset != null) {
+                request.put("offset", offset);
+            }
+
+            Map<String, Object> response = webClient.post()
+                    .uri(qdrantUrl + "/collections/{collection}/points/scroll", collectionName)
+                    .bodyValue(request)
                     .retrieve()
                     .bodyToMono(Map.class)
-                    .timeout(Duration.ofSeconds(5))
+                    .timeout(requestTimeout())
                     .block();
+            if (response == null || !(response.get("result") instanceof Map)) {
+                log.warn("Qdrant scroll returned no result after {} points", visited);
+                break;
+            }
+
+            Map<String, Object> result = (Map<String, Object>) response.get("result");
+            List<Map<String, Object>> points = (List<Map<String, Object>>) result.getOrDefault("points", List.of());
+            for (Map<String, Object> point : points) {
+                if (consumer.test(point)) {
+                    visited++;
+                }
+            }
+            offset = result.get("next_page_offset");
+        } while (offset != null);
 
-            boolean healthy = response != null && response.containsKey("result");
-            log.info("Qdrant health check result: {}", healthy);
+        log.info("Scrolled {} points from collection '{}'", visited, collectionName);
+        return visited;
+    }
 
-            if (response != null && response.containsKey("result")) {
-                Map<String, Object> result = (Map<String, Object>) response.get("result");
-                if (result.containsKey("points_count")) {
-                    log.info("Collection '{}' contains {} points", collectionName, result.get("points_count"));
+    private static Map<String, Object> payload(Map<String, Object> point) {
+        return point.get("payload") instanceof Map
+                ? (Map<String, Object>) point.get("payload")
+                : Map.of();
+    }
+
+    /**
+     * The unnamed dense vector, or the first dense one of a collection with named vectors
+     */
+    private static float[] denseVector(Object vector) {
+        if (vector instanceof Map<?, ?> named) {
+            for (Object value : named.values()) {
+                if (value instanceof List) {
+                    return denseVector(value);
                 }
             }
+            return null;
+        }
+        if (!(vector instanceof List<?> values)) {
+            return null;
+        }
+        float[] dense = new float[values.size()];
+        for (int i = 0; i < dense.length; i++) {
+            dense[i] = ((Number) values.get(i)).floatValue();
+        }
+        return dense;
+    }
 
-            return healthy;
-        } catch (Exception e) {
-            log.error("Qdrant health check failed: {}", e.getMessage());
-            return false;
+    /**
+     * @param limit number of nearest points searched; 1 for the single-example searches
+     */
+    private record ResultKey(String collection, long queryHash, int limit) {
+    }
+
+    private record BatchedSearch(float[] embedding, int limit, boolean withVector) {
+    }
+
+    private static final class BudgetExceededException extends TimeoutException {
+        BudgetExceededException() {
+            super("Qdrant search exceeded its latency budget");
         }
     }
 
@@ -21,6 +21,7 @@ public class QuestionAndSparkContextService {
 
     private final QdrantService qdrantService;
     private final LangChainSQLService langChainSQLService;
+    private final HealthProber healthProber;
 
     @Value("${app.max-query-length:10000}")
     private int maxQueryLength;
@@ -311,7 +312,7 @@ public class QuestionAndSparkContextService {
 
     public boolean isHealthy() {
         try {
-            return qdrantService.isHealthy() && langChainSQLService.isHealthy();
+            return healthProber.isQdrantUp() && healthProber.isOllamaUp();
         } catch (Exception e) {
             log.error("RAG service health check failed: {}", e.getMessage());
             return false;
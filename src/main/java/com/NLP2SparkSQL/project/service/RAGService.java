@@ -1,12 +1,18 @@
 package com.NLP2SparkSQL.project.service;
 
+import com.NLP2SparkSQL.project.dto.QdrantSearchHit;
 import com.NLP2SparkSQL.project.dto.QueryResponse;
-import com.NLP2SparkSQL.project.utils.EmbeddingUtils;
+import com.NLP2SparkSQL.project.dto.SqlStreamEvent;
+import com.NLP2SparkSQL.project.utils.MaximalMarginalRelevance;
 import com.NLP2SparkSQL.project.utils.SparkSchemaParser;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.*;
 import java.util.regex.*;
@@ -18,14 +24,36 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class RAGService {
 
-    private final QdrantService qdrantService;
+    private final ExampleRetriever exampleRetriever;
+    private final EmbeddingCache embeddingCache;
     private final LangChainSQLService langChainSQLService;
+    private final HealthProber healthProber;
+    private final SqlResultCache sqlResultCache;
+    private final SemanticSqlCache semanticSqlCache;
+    private final GenerationCoalescer generationCoalescer;
 
     @Value("${app.max-query-length:10000}")
     private int maxQueryLength;
 
+    // Nearest examples fetched per question; above 1, up to rag.examples.max are picked from them by MMR
+    @Value("${rag.examples.candidates:8}")
+    private int exampleCandidates;
+
+    @Value("${rag.examples.max:3}")
+    private int maxExamples;
+
+    @Value("${rag.examples.mmr-lambda:0.7}")
+    private double mmrLambda;
+
+    // Prompt characters the examples may take in total (roughly 4 characters per token)
+    @Value("${rag.examples.max-chars:2000}")
+    private int exampleCharBudget;
+
     // Cache for parsed schemas to avoid re-parsing identical contexts
-    private final Map<String, Map<String, List<SparkSchemaParser.Column>>> schemaCache = new LRUCache<>(100);
+    // Parsed schemas by SHA-256 of the whole context, which the SQL cache key's schema fingerprint is computed from
+    private final Cache<String, Map<String, List<SparkSchemaParser.Column>>> schemaCache = Caffeine.newBuilder()
+            .maximumSize(100)
+            .build();
     
     private static final Pattern COMPLEX_QUESTION_PATTERN = Pattern.compile(
         "(?i)(join|combine|merge|relationship|across|between|multiple|compare|analyze|trend|pattern|correlation|distribution|group|by)"
@@ -39,81 +67,190 @@ public class RAGService {
      * Main method that processes questions using dynamic SparkContext
      */
     public QueryResponse processQuestionWithContext(String sparkContext, String question) {
+        return processQuestionWithContextReactive(sparkContext, question).block();
+    }
+
+    /**
+     * Same pipeline without holding the caller's thread while Qdrant and the LLM answer
+     */
+    public Mono<QueryResponse> processQuestionWithContextReactive(String sparkContext, String question) {
         long startTime = System.currentTimeMillis();
         String requestId = UUID.randomUUID().toString().substring(0, 8);
         log.info("[{}] Processing question with dynamic context", requestId);
 
         // Basic validation
-        if (question == null || question.trim().isEmpty()) {
-            return createErrorResponse("Question cannot be empty", getDuration(startTime));
-        }
-        if (sparkContext == null || sparkContext.trim().isEmpty()) {
-            return createErrorResponse("Spark context is required and cannot be empty", getDuration(startTime));
-        }
-        if (question.length() > maxQueryLength) {
-            return createErrorResponse("Question too long (max " + maxQueryLength + " characters)", getDuration(startTime));
+        String invalid = validateRequest(sparkContext, question);
+        if (invalid != null) {
+            return Mono.just(createErrorResponse(invalid, getDuration(startTime)));
         }
 
-        try {
+        return Mono.defer(() -> {
             //  Parse the SparkContext (tables/columns)
             Map<String, List<SparkSchemaParser.Column>> tables = parseSparkContextSafely(sparkContext, requestId);
 
             if (tables.isEmpty()) {
                 log.warn("[{}] No tables could be parsed from context", requestId);
-                return createErrorResponse("Could not extract any table information from the provided Spark context",
-                        getDuration(startTime));
+                return Mono.just(createErrorResponse("Could not extract any table information from the provided Spark context",
+                        getDuration(startTime)));
+            }
+
+            //  Same schema and question as an earlier request: reuse its SQL
+            SqlResultCache.Key cacheKey = sqlResultCache.key(tables, question);
+            Optional<String> cached = sqlResultCache.get(cacheKey);
+            if (cached.isPresent()) {
+                log.info("[{}] Returning cached SQL", requestId);
+                return Mono.just(sqlResponse(cached.get(), getDuration(startTime)));
             }
 
             //  Create an embedding for the question
-            float[] embedding = EmbeddingUtils.embed(question);
+            float[] embedding = embeddingCache.embed(question);
 
-            //  Retrieve relevant example from Qdrant (similar question + SQL)
-            Map<String, String> ragExample = qdrantService.searchRelevantContextStructured(embedding);
+            //  A differently phrased question answered before on this schema
+            Optional<String> similar = similarSQL(cacheKey, embedding, requestId);
+            if (similar.isPresent()) {
+                return Mono.just(sqlResponse(similar.get(), getDuration(startTime)));
+            }
 
-            // No more confidence check - always use nearest neighbor if exists
-            if (ragExample != null && qdrantService.hasValidResult(ragExample)) {
-                log.info("[{}] RAG example found (score: {}): {}", requestId,
-                        ragExample.get("confidence"), ragExample.get("question"));
-            } else {
-                log.info("[{}] No valid RAG example found", requestId);
-                ragExample = null;
+            //  Identical requests already generating: wait for their SQL instead of calling the LLM again
+            return generationCoalescer.generate(cacheKey, () ->
+                    //  Retrieve relevant examples and build the enriched context (SparkContext + RAG examples)
+                    enhancedContext(tables, question, embedding, requestId)
+                            //  Generate SQL with LangChain (based on SparkContext + RAG example)
+                            .flatMap(enhancedContext -> langChainSQLService.generateSQLReactive(enhancedContext, question))
+                            .map(sparkSql -> {
+                                //  Post-process and validate the SQL
+                                String finalSql = postProcessSQL(sparkSql, tables, requestId);
+                                cacheResult(cacheKey, embedding, sparkSql, finalSql);
+                                return finalSql;
+                            }), requestId)
+                    .map(finalSql -> {
+                        long duration = getDuration(startTime);
+                        log.info("[{}] Successfully processed question in {}ms", requestId, duration);
+
+                        return sqlResponse(finalSql, duration);
+                    });
+        }).onErrorResume(e -> {
+            log.error("[{}] Error processing question: {}", requestId, e.getMessage(), e);
+            return Mono.just(createErrorResponse("Internal error: " + e.getMessage(), getDuration(startTime)));
+        });
+    }
+
+    /**
+     * Streaming variant: the generated text as "token" events while the LLM produces it, then the
+     * post-processed SQL as a final "sql" event. Generation stops at the end of the first statement.
+     * Invalid requests and failures produce only the final event, with the error response.
+     */
+    public Flux<SqlStreamEvent> streamQuestionWithContext(String sparkContext, String question) {
+        long startTime = System.currentTimeMillis();
+        String requestId = UUID.randomUUID().toString().substring(0, 8);
+        log.info("[{}] Streaming question with dynamic context", requestId);
+
+        String invalid = validateRequest(sparkContext, question);
+        if (invalid != null) {
+            return Flux.just(SqlStreamEvent.result(createErrorResponse(invalid, getDuration(startTime))));
+        }
+
+        return Flux.defer(() -> {
+            Map<String, List<SparkSchemaParser.Column>> tables = parseSparkContextSafely(sparkContext, requestId);
+            if (tables.isEmpty()) {
+                log.warn("[{}] No tables could be parsed from context", requestId);
+                return Flux.just(SqlStreamEvent.result(createErrorResponse(
+                        "Could not extract any table information from the provided Spark context", getDuration(startTime))));
             }
 
-            //  Build enriched context (SparkContext + RAG example)
-            String enhancedContext = buildEnhancedContext(tables, question, ragExample, requestId);
+            SqlResultCache.Key cacheKey = sqlResultCache.key(tables, question);
+            Optional<String> cached = sqlResultCache.get(cacheKey);
+            if (cached.isPresent()) {
+                log.info("[{}] Returning cached SQL", requestId);
+                return Flux.just(SqlStreamEvent.result(sqlResponse(cached.get(), getDuration(startTime))));
+            }
 
-            //  Generate SQL with LangChain (based on SparkContext + RAG example)
-            String sparkSql = langChainSQLService.generateSQL(enhancedContext, question);
+            float[] embedding = embeddingCache.embed(question);
+            Optional<String> similar = similarSQL(cacheKey, embedding, requestId);
+            if (similar.isPresent()) {
+                return Flux.just(SqlStreamEvent.result(sqlResponse(similar.get(), getDuration(startTime))));
+            }
+            StringBuilder generated = new StringBuilder();
+            return enhancedContext(tables, question, embedding, requestId)
+                    .flatMapMany(context -> langChainSQLService.streamSQL(context, question, requestId))
+                    .doOnNext(generated::append)
+                    .map(SqlStreamEvent::token)
+                    .concatWith(Mono.fromCallable(() -> {
+                        String sparkSql = langChainSQLService.finishSQL(generated.toString(), requestId);
+                        String finalSql = postProcessSQL(sparkSql, tables, requestId);
+                        cacheResult(cacheKey, embedding, sparkSql, finalSql);
+                        long duration = getDuration(startTime);
+                        log.info("[{}] Successfully streamed question in {}ms", requestId, duration);
+                        return SqlStreamEvent.result(sqlResponse(finalSql, duration));
+                    }));
+        }).onErrorResume(e -> {
+            log.error("[{}] Error streaming question: {}", requestId, e.getMessage(), e);
+            return Flux.just(SqlStreamEvent.result(createErrorResponse("Internal error: " + e.getMessage(), getDuration(startTime))));
+        });
+    }
 
-            //  Post-process and validate the SQL
-            String finalSql = postProcessSQL(sparkSql, tables, requestId);
+    private QueryResponse sqlResponse(String finalSql, long duration) {
+        return new QueryResponse(
+                finalSql,
+                finalSql.startsWith("ERROR:") ? "Error in SQL generation" : "SQL generated successfully",
+                duration
+        );
+    }
 
-            long duration = getDuration(startTime);
-            log.info("[{}] Successfully processed question in {}ms", requestId, duration);
+    private Optional<String> similarSQL(SqlResultCache.Key cacheKey, float[] embedding, String requestId) {
+        return semanticSqlCache.lookup(cacheKey, embedding).map(match -> {
+            log.info("[{}] Returning SQL of similar question '{}' (similarity {})",
+                    requestId, match.question(), match.similarity());
+            return match.sql();
+        });
+    }
 
-            return new QueryResponse(
-                    finalSql,
-                    finalSql.startsWith("ERROR:") ? "Error in SQL generation" : "SQL generated successfully",
-                    duration
-            );
+    /**
+     * SQL that passed post-processing is cached, also for similar questions; SQL the model produced
+     * but validation rejected is cached briefly, and failures to get an answer from the model are not cached
+     */
+    private void cacheResult(SqlResultCache.Key cacheKey, float[] embedding, String sparkSql, String finalSql) {
+        if (!finalSql.startsWith("ERROR:")) {
+            sqlResultCache.put(cacheKey, finalSql);
+            semanticSqlCache.store(cacheKey, embedding, finalSql);
+        } else if (!langChainSQLService.isGenerationFailure(sparkSql)) {
+            sqlResultCache.putNegative(cacheKey, finalSql);
+        }
+    }
 
-        } catch (Exception e) {
-            log.error("[{}] Error processing question: {}", requestId, e.getMessage(), e);
-            return createErrorResponse("Internal error: " + e.getMessage(), getDuration(startTime));
+    /**
+     * @return why the request cannot be processed, or null when it can
+     */
+    private String validateRequest(String sparkContext, String question) {
+        if (question == null || question.trim().isEmpty()) {
+            return "Question cannot be empty";
+        }
+        if (sparkContext == null || sparkContext.trim().isEmpty()) {
+            return "Spark context is required and cannot be empty";
         }
+        if (question.length() > maxQueryLength) {
+            return "Question too long (max " + maxQueryLength + " characters)";
+        }
+        return null;
+    }
+
+    private Mono<String> enhancedContext(Map<String, List<SparkSchemaParser.Column>> tables, String question,
+                                         float[] embedding, String requestId) {
+        return retrieveExamples(embedding, requestId)
+                .map(examples -> buildEnhancedContext(tables, question, examples, requestId));
     }
 
     /**
      * Safely parse SparkContext with caching and error handling
      */
     private Map<String, List<SparkSchemaParser.Column>> parseSparkContextSafely(String sparkContext, String requestId) {
-        // Create a hash of the context for caching
-        String contextHash = Integer.toString(sparkContext.hashCode());
-        
+        String contextHash = SqlResultCache.sha256(sparkContext);
+
         // Check cache first
-        if (schemaCache.containsKey(contextHash)) {
+        Map<String, List<SparkSchemaParser.Column>> cached = schemaCache.getIfPresent(contextHash);
+        if (cached != null) {
             log.debug("[{}] Using cached schema parse", requestId);
-            return schemaCache.get(contextHash);
+            return cached;
         }
         
         try {
@@ -134,27 +271,102 @@ public class RAGService {
         }
     }
 
+    /**
+     * Nearest example only, or with rag.examples.candidates above 1 a diverse subset of the nearest
+     * candidates that fits the prompt budget
+     */
+    private Mono<List<Map<String, String>>> retrieveExamples(float[] embedding, String requestId) {
+        if (exampleCandidates <= 1 || maxExamples <= 1) {
+            return exampleRetriever.searchRelevantContextReactive(embedding).map(ragExample -> {
+                // No more confidence check - always use nearest neighbor if exists
+                if (ragExample != null && exampleRetriever.hasValidResult(ragExample)) {
+                    log.info("[{}] RAG example found (score: {}): {}", requestId,
+                            ragExample.get("confidence"), ragExample.get("question"));
+                    return List.of(ragExample);
+                }
+                log.info("[{}] No valid RAG example found", requestId);
+                return List.of();
+            });
+        }
+        return exampleRetriever.searchRelevantExamplesReactive(embedding, exampleCandidates)
+                .map(candidates -> selectExamples(candidates, embedding, requestId));
+    }
+
+    /**
+     * Order the candidates by maximal marginal relevance, comparing them by their stored vectors (or
+     * the embeddings of their questions when the retriever has none), and keep the first
+     * rag.examples.max that fit in rag.examples.max-chars
+     */
+    private List<Map<String, String>> selectExamples(List<QdrantSearchHit> candidates, float[] query, String requestId) {
+        List<QdrantSearchHit> valid = new ArrayList<>(candidates.size());
+        for (QdrantSearchHit candidate : candidates) {
+            if (candidate.isValid()) {
+                valid.add(candidate);
+            }
+        }
+        if (valid.isEmpty()) {
+            log.info("[{}] No valid RAG example found", requestId);
+            return List.of();
+        }
+
+        float[] relevance = new float[valid.size()];
+        float[][] vectors = new float[valid.size()][];
+        for (int i = 0; i < valid.size(); i++) {
+            QdrantSearchHit candidate = valid.get(i);
+            float[] stored = candidate.getVector();
+            relevance[i] = (float) candidate.getScore();
+            vectors[i] = stored != null && stored.length == query.length
+                    ? stored
+                    : embeddingCache.embed(candidate.getQuestion());
+        }
+
+        List<Map<String, String>> selected = new ArrayList<>();
+        int usedChars = 0;
+        for (int index : MaximalMarginalRelevance.select(relevance, vectors, valid.size(), mmrLambda)) {
+            if (selected.size() == maxExamples) {
+                break;
+            }
+            Map<String, String> example = valid.get(index).toResult();
+            int chars = appendExample(new StringBuilder(), example).length();
+            if (usedChars + chars > exampleCharBudget) {
+                continue;
+            }
+            selected.add(example);
+            usedChars += chars;
+        }
+        log.info("[{}] Selected {} of {} candidate examples ({} of {} chars), best: {}", requestId,
+                selected.size(), valid.size(), usedChars, exampleCharBudget,
+                selected.isEmpty() ? "none" : selected.get(0).get("question"));
+        return selected;
+    }
+
+    private static StringBuilder appendExample(StringBuilder builder, Map<String, String> example) {
+        return builder.append("-- Similar Question: ").append(example.get("question")).append("\n")
+                .append("-- Suggested SQL: ").append(example.get("sql")).append("\n")
+                .append("-- Similarity Score: ").append(example.get("confidence")).append("\n\n");
+    }
+
     /**
      * Build enhanced context that adapts to the specific schema structure
-     * Always use the RAG example if available (no confidence check)
+     * Always use the RAG examples if available (no confidence check)
      */
     private String buildEnhancedContext(Map<String, List<SparkSchemaParser.Column>> tables,
                                         String question,
-                                        Map<String, String> ragExample,
+                                        List<Map<String, String>> ragExamples,
                                         String requestId) {
         StringBuilder contextBuilder = new StringBuilder();
         
-        //  Add Qdrant example first (no confidence check)
-        if (ragExample != null && 
-            !ragExample.get("question").isEmpty() && 
-            !ragExample.get("sql").isEmpty()) {
-            
-            contextBuilder.append("=== RELEVANT EXAMPLE FROM QDRANT ===\n");
-            contextBuilder.append("-- Similar Question: ").append(ragExample.get("question")).append("\n");
-            contextBuilder.append("-- Suggested SQL: ").append(ragExample.get("sql")).append("\n");
-            contextBuilder.append("-- Similarity Score: ").append(ragExample.get("confidence")).append("\n\n");
+        //  Add Qdrant examples first (no confidence check)
+        if (!ragExamples.isEmpty()) {
+            contextBuilder.append(ragExamples.size() == 1
+                    ? "=== RELEVANT EXAMPLE FROM QDRANT ===\n"
+                    : "=== RELEVANT EXAMPLES FROM QDRANT ===\n");
+            for (Map<String, String> ragExample : ragExamples) {
+                appendExample(contextBuilder, ragExample);
+            }
             
-            log.debug("[{}] Added RAG example to context with score: {}", requestId, ragExample.get("confidence"));
+            log.debug("[{}] Added {} RAG examples to context, best score: {}", requestId,
+                    ragExamples.size(), ragExamples.get(0).get("confidence"));
         } else {
             log.debug("[{}] No RAG example to add to context", requestId);
         }
@@ -340,29 +552,15 @@ public class RAGService {
         return System.currentTimeMillis() - startTime;
     }
 
+    /**
+     * Uses the prober's cached Qdrant and Ollama state; a generation per health poll would load the LLM
+     */
     public boolean isHealthy() {
         try {
-            return qdrantService.isHealthy() && langChainSQLService.isHealthy();
+            return healthProber.isQdrantUp() && healthProber.isOllamaUp();
         } catch (Exception e) {
             log.error("RAG service health check failed: {}", e.getMessage());
             return false;
         }
     }
-
-    /**
-     * Simple LRU Cache implementation for schema caching
-     */
-    private static class LRUCache<K, V> extends LinkedHashMap<K, V> {
-        private final int maxSize;
-
-        public LRUCache(int maxSize) {
-            super(16, 0.75f, true);
-            this.maxSize = maxSize;
-        }
-
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-            return size() > maxSize;
-        }
-    }
 }
\ No newline at end of file
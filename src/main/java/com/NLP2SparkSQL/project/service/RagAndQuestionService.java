@@ -1,7 +1,6 @@
 package com.NLP2SparkSQL.project.service;
 
 import com.NLP2SparkSQL.project.dto.RagResponse;
-import com.NLP2SparkSQL.project.utils.EmbeddingUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -13,7 +12,8 @@ import java.util.Map;
 @Slf4j
 public class RagAndQuestionService {
 
-    private final QdrantService qdrantService;
+    private final ExampleRetriever exampleRetriever;
+    private final EmbeddingCache embeddingCache;
 
     // Main method
     public RagResponse findExample(String question, String sql, String schema) {
@@ -33,13 +33,13 @@ public class RagAndQuestionService {
             combinedText.append("\nSchema: ").append(schema.trim());
         }
 
-        float[] embedding = EmbeddingUtils.embed(combinedText.toString());
+        float[] embedding = embeddingCache.embed(combinedText.toString());
 
         if (embedding == null || embedding.length == 0) {
             return new RagResponse("Failed to generate embedding", "", 0);
         }
 
-        Map<String, String> result = qdrantService.searchRelevantContextStructured(embedding);
+        Map<String, String> result = exampleRetriever.searchRelevantContextStructured(embedding);
 
         long duration = System.currentTimeMillis() - start;
 
@@ -50,7 +50,7 @@ public class RagAndQuestionService {
         }
 
         // Simplified check - just ensure data is present
-        if (!qdrantService.hasValidResult(result)) {
+        if (!exampleRetriever.hasValidResult(result)) {
             log.info("No valid data found in the result");
             return new RagResponse("", "", duration);
         }
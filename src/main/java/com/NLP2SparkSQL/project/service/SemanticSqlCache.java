@@ -0,0 +1,274 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.NLP2SparkSQL.project.utils.EmbeddingUtils;
+import com.NLP2SparkSQL.project.utils.EmbeddingVersion;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generated SQL for questions phrased differently from an earlier one on the same schema.
+ *
+ * Each schema fingerprint keeps the embeddings of its most recently answered questions. A new
+ * question reuses the SQL of an earlier one only when both have the same content tokens: numbers,
+ * quoted strings and every other word once stop-words are dropped, plurals reduced and synonyms
+ * (count/number/how many, sum/total, highest/top/max, per/each/by...) mapped to one meaning. The
+ * bag-of-words embedding alone scores one-word changes ("average salary by department" vs "by
+ * region", "top 5" vs "top 10") above any useful threshold, so cosine similarity reaching
+ * sql.semantic-cache.threshold only picks among questions that already agree on every content token.
+ *
+ * The best similarity of every lookup, among questions with the same content tokens, is published as
+ * the sql.semantic.similarity distribution with buckets around the usual thresholds, to show how many
+ * lookups another threshold would answer.
+ */
+@Slf4j
+@Service
+public class SemanticSqlCache {
+
+    private static final Pattern LITERAL = Pattern.compile("\\d+(?:\\.\\d+)?|'[^']*'|\"[^\"]*\"");
+    private static final Pattern WORD = Pattern.compile("[a-z]+");
+
+    // Words that carry no meaning of their own in a question about a table
+    private static final Set<String> STOP_WORDS = Set.of(
+        "a", "an", "the", "of", "in", "on", "for", "to", "with", "and", "all", "any", "me", "us", "please",
+        "show", "list", "display", "find", "get", "give", "return", "select", "fetch", "retrieve", "tell",
+        "what", "which", "who", "whose", "how", "is", "are", "was", "were", "be", "been", "has", "have", "had",
+        "do", "does", "did", "that", "this", "these", "those", "there", "their", "its", "it", "them", "s");
+
+    // Words that mean the same in a question, by the meaning they stand for
+    private static final Map<String, String> SYNONYMS = synonyms(Map.ofEntries(
+        Map.entry("count", List.of("count", "number", "many")),
+        Map.entry("sum", List.of("sum", "total")),
+        Map.entry("avg", List.of("avg", "average", "mean")),
+        Map.entry("by", List.of("by", "per", "each", "every", "grouped", "group")),
+        Map.entry("asc", List.of("asc", "ascending", "increasing")),
+        Map.entry("desc", List.of("desc", "descending", "decreasing")),
+        Map.entry("min", List.of("min", "minimum", "lowest", "smallest", "least", "fewest", "bottom", "cheapest")),
+        Map.entry("max", List.of("max", "maximum", "highest", "largest", "most", "greatest", "top", "biggest")),
+        Map.entry("gt", List.of("greater", "more", "above", "over", "exceeds", "exceeding", "after", "later")),
+        Map.entry("lt", List.of("less", "fewer", "below", "under", "before", "earlier")),
+        Map.entry("first", List.of("first", "earliest", "oldest")),
+        Map.entry("last", List.of("last", "latest", "newest", "youngest")),
+        Map.entry("not", List.of("not", "no", "without", "except", "excluding", "never", "none"))
+    ));
+
+    public record Match(String sql, String question, float similarity) {
+    }
+
+    private record Entry(String question, Set<String> tokens, float[] embedding, EmbeddingVersion version,
+                         String sql, long createdNanos) {
+    }
+
+    /**
+     * The answered questions of one schema, oldest first
+     */
+    private static final class Bucket {
+        final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    }
+
+    private final boolean enabled;
+    private final double threshold;
+    private final int maxPerSchema;
+    private final long ttlNanos;
+    private final Cache<String, Bucket> buckets;
+    private final DistributionSummary similarity;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter tokenMismatches;
+
+    public SemanticSqlCache(
+        MeterRegistry meterRegistry,
+        @Value("${SQL_SEMANTIC_CACHE_ENABLED:${sql.semantic-cache.enabled:false}}") boolean enabled,
+        @Value("${SQL_SEMANTIC_CACHE_THRESHOLD:${sql.semantic-cache.threshold:0.95}}") double threshold,
+        @Value("${sql.semantic-cache.max-schemas:1000}") long maxSchemas,
+        @Value("${sql.semantic-cache.max-per-schema:256}") int maxPerSchema,
+        @Value("${sql.semantic-cache.ttl:PT1H}") Duration ttl
+    ) {
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.maxPerSchema = Math.max(1, maxPerSchema);
+        this.ttlNanos = ttl.toNanos();
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxSchemas)
+                .expireAfterAccess(ttl)
+                .build();
+        this.similarity = DistributionSummary.builder("sql.semantic.similarity")
+                .description("Best cosine similarity of a question to the answered questions of its schema")
+                .serviceLevelObjectives(0.8, 0.85, 0.9, 0.92, 0.95, 0.98)
+                .register(meterRegistry);
+        this.hits = lookups(meterRegistry, "hit");
+        this.misses = lookups(meterRegistry, "miss");
+        this.tokenMismatches = lookups(meterRegistry, "token-mismatch");
+        log.info("Semantic SQL cache {}: threshold {}, up to {} questions for each of {} schemas, {}",
+                enabled ? "enabled" : "disabled", threshold, maxPerSchema, maxSchemas, ttl);
+    }
+
+    private static Counter lookups(MeterRegistry registry, String result) {
+        return Counter.builder("sql.semantic.lookups")
+                .description("Semantic cache lookups by outcome; token-mismatch was similar enough but differed in a content token")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * @param key       the exact cache key of the question: schema fingerprint and normalized question
+     * @param embedding of the question, from EmbeddingUtils
+     */
+    public Optional<Match> lookup(SqlResultCache.Key key, float[] embedding) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Bucket bucket = buckets.getIfPresent(key.schemaFingerprint());
+        if (bucket == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        EmbeddingVersion version = EmbeddingUtils.getDefaultVersion();
+        Set<String> tokens = contentTokens(key.question());
+        long now = System.nanoTime();
+        // Best among entries with the same content tokens, and best over all entries
+        Entry best = null;
+        float bestSimilarity = -1;
+        float bestAnySimilarity = -1;
+        synchronized (bucket) {
+            for (Entry entry : bucket.entries) {
+                if (entry.version() != version || now - entry.createdNanos() > ttlNanos) {
+                    continue;
+                }
+                float score = EmbeddingUtils.cosineSimilarity(embedding, entry.embedding());
+                bestAnySimilarity = Math.max(bestAnySimilarity, score);
+                if (score > bestSimilarity && entry.tokens().equals(tokens)) {
+                    bestSimilarity = score;
+                    best = entry;
+                }
+            }
+        }
+        if (best != null) {
+            similarity.record(bestSimilarity);
+        }
+        if (best != null && bestSimilarity >= threshold) {
+            hits.increment();
+            return Optional.of(new Match(best.sql(), best.question(), bestSimilarity));
+        }
+        (bestAnySimilarity >= threshold ? tokenMismatches : misses).increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Remember SQL that was returned for a question; replaces an earlier entry for the same question
+     */
+    public void store(SqlResultCache.Key key, float[] embedding, String sql) {
+        if (!enabled) {
+            return;
+        }
+        Entry entry = new Entry(key.question(), contentTokens(key.question()), embedding.clone(),
+                EmbeddingUtils.getDefaultVersion(), sql, System.nanoTime());
+        Bucket bucket = buckets.get(key.schemaFingerprint(), fingerprint -> new Bucket());
+        synchronized (bucket) {
+            bucket.entries.removeIf(existing -> existing.question().equals(entry.question()));
+            bucket.entries.addLast(entry);
+            while (bucket.entries.size() > maxPerSchema) {
+                bucket.entries.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * Evict the questions matching both filters; a null filter matches everything
+     *
+     * @return how many questions were evicted
+     */
+    public int evict(String schemaFingerprint, String question) {
+        String normalized = question != null ? SqlResultCache.normalizeQuestion(question) : null;
+        int evicted = 0;
+        for (var bucketEntry : buckets.asMap().entrySet()) {
+            if (schemaFingerprint != null && !bucketEntry.getKey().equals(schemaFingerprint)) {
+                continue;
+            }
+            Bucket bucket = bucketEntry.getValue();
+            synchronized (bucket) {
+                int before = bucket.entries.size();
+                bucket.entries.removeIf(entry -> normalized == null || entry.question().equals(normalized));
+                evicted += before - bucket.entries.size();
+            }
+        }
+        buckets.asMap().values().removeIf(bucket -> {
+            synchronized (bucket) {
+                return bucket.entries.isEmpty();
+            }
+        });
+        log.info("Evicted {} semantic SQL cache questions", evicted);
+        return evicted;
+    }
+
+    /**
+     * Number of questions held, over all schemas
+     */
+    public long size() {
+        long size = 0;
+        for (Bucket bucket : buckets.asMap().values()) {
+            synchronized (bucket) {
+                size += bucket.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The literals of a question and its other words without stop-words, in singular and each as the
+     * meaning it stands for
+     */
+    static Set<String> contentTokens(String question) {
+        Set<String> tokens = new TreeSet<>();
+        Matcher literals = LITERAL.matcher(question);
+        while (literals.find()) {
+            tokens.add(literals.group());
+        }
+        Matcher words = WORD.matcher(LITERAL.matcher(question).replaceAll(" ").toLowerCase(Locale.ROOT));
+        while (words.find()) {
+            String word = words.group();
+            if (STOP_WORDS.contains(word)) {
+                continue;
+            }
+            String meaning = SYNONYMS.get(word);
+            if (meaning == null) {
+                meaning = SYNONYMS.getOrDefault(singular(word), singular(word));
+            }
+            tokens.add(meaning);
+        }
+        return tokens;
+    }
+
+    private static String singular(String word) {
+        if (word.length() > 4 && word.endsWith("ies")) {
+            return word.substring(0, word.length() - 3) + "y";
+        }
+        if (word.length() > 3 && word.endsWith("s") && !word.endsWith("ss")) {
+            return word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+
+    private static Map<String, String> synonyms(Map<String, List<String>> wordsByMeaning) {
+        Map<String, String> meanings = new HashMap<>();
+        wordsByMeaning.forEach((meaning, words) -> words.forEach(word -> meanings.put(word, meaning)));
+        return Map.copyOf(meanings);
+    }
+}
@@ -0,0 +1,209 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.NLP2SparkSQL.project.dto.SqlCacheEntry;
+import com.NLP2SparkSQL.project.utils.SparkSchemaParser;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Generated SQL by schema and question, so a repeated request skips retrieval and the LLM.
+ *
+ * The key is a SHA-256 fingerprint of the parsed schema (table and column names and types,
+ * independent of table order, case and formatting of the context) plus the question lower-cased
+ * with whitespace collapsed and trailing punctuation removed. SQL that was generated but rejected
+ * by validation is cached too, for the shorter sql.cache.negative-ttl, so a question the model
+ * cannot answer does not cost an LLM call on every retry; failures to reach the LLM are not cached.
+ */
+@Slf4j
+@Service
+public class SqlResultCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\s?.!;]+$");
+
+    public record Key(String schemaFingerprint, String question) {
+    }
+
+    private static final class Entry {
+        final String sql;
+        final boolean negative;
+        final Instant createdAt = Instant.now();
+        final AtomicLong hits = new AtomicLong();
+
+        Entry(String sql, boolean negative) {
+            this.sql = sql;
+            this.negative = negative;
+        }
+    }
+
+    private final boolean enabled;
+    private final Duration ttl;
+    private final Duration negativeTtl;
+    private final Cache<Key, Entry> cache;
+
+    public SqlResultCache(
+        MeterRegistry meterRegistry,
+        @Value("${SQL_CACHE_ENABLED:${sql.cache.enabled:true}}") boolean enabled,
+        @Value("${sql.cache.max-size:5000}") long maxSize,
+        @Value("${sql.cache.ttl:PT1H}") Duration ttl,
+        @Value("${sql.cache.negative-ttl:PT1M}") Duration negativeTtl
+    ) {
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<Key, Entry>() {
+                    @Override
+                    public long expireAfterCreate(Key key, Entry entry, long currentTime) {
+                        return (entry.negative ? negativeTtl : ttl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Key key, Entry entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Key key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "sql.result");
+        log.info("Generated SQL cache {}: up to {} entries for {}, rejected SQL for {}",
+                enabled ? "enabled" : "disabled", maxSize, ttl, negativeTtl);
+    }
+
+    public Key key(Map<String, List<SparkSchemaParser.Column>> tables, String question) {
+        return new Key(schemaFingerprint(tables), normalizeQuestion(question));
+    }
+
+    /**
+     * The cached SQL, counting the hit; negative entries hold the error response that was returned
+     */
+    public Optional<String> get(Key key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        entry.hits.incrementAndGet();
+        return Optional.of(entry.sql);
+    }
+
+    public void put(Key key, String sql) {
+        if (enabled) {
+            cache.put(key, new Entry(sql, false));
+        }
+    }
+
+    /**
+     * Cache SQL that failed validation, for sql.cache.negative-ttl
+     */
+    public void putNegative(Key key, String errorSql) {
+        if (enabled) {
+            cache.put(key, new Entry(errorSql, true));
+        }
+    }
+
+    /**
+     * Entries with the most hits first
+     */
+    public List<SqlCacheEntry> entries(int limit) {
+        return cache.asMap().entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<Key, Entry> e) -> e.getValue().hits.get()).reversed())
+                .limit(Math.max(0, limit))
+                .map(e -> {
+                    Entry entry = e.getValue();
+                    return new SqlCacheEntry(e.getKey().schemaFingerprint(), e.getKey().question(), entry.sql,
+                            entry.negative, entry.hits.get(), entry.createdAt.toString(),
+                            entry.createdAt.plus(entry.negative ? negativeTtl : ttl).toString());
+                })
+                .toList();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Evict the entries matching both filters; a null filter matches everything
+     *
+     * @param question compared after the same normalization as the key
+     * @return how many entries were evicted
+     */
+    public int evict(String schemaFingerprint, String question) {
+        String normalized = question != null ? normalizeQuestion(question) : null;
+        int[] evicted = {0};
+        cache.asMap().keySet().removeIf(key -> {
+            boolean matches = (schemaFingerprint == null || key.schemaFingerprint().equals(schemaFingerprint))
+                    && (normalized == null || key.question().equals(normalized));
+            if (matches) {
+                evicted[0]++;
+            }
+            return matches;
+        });
+        log.info("Evicted {} generated SQL cache entries", evicted[0]);
+        return evicted[0];
+    }
+
+    static String normalizeQuestion(String question) {
+        String collapsed = WHITESPACE.matcher(question.trim().toLowerCase(Locale.ROOT)).replaceAll(" ");
+        return TRAILING_PUNCTUATION.matcher(collapsed).replaceAll("");
+    }
+
+    /**
+     * SHA-256 over the tables sorted by lower-cased name, each with its columns in declaration order
+     */
+    static String schemaFingerprint(Map<String, List<SparkSchemaParser.Column>> tables) {
+        Map<String, List<SparkSchemaParser.Column>> sorted = new TreeMap<>();
+        tables.forEach((table, columns) -> sorted.put(table.toLowerCase(Locale.ROOT), columns));
+        StringBuilder canonical = new StringBuilder();
+        sorted.forEach((table, columns) -> {
+            canonical.append(table).append('(');
+            for (SparkSchemaParser.Column column : columns) {
+                canonical.append(column.name.toLowerCase(Locale.ROOT)).append(' ')
+                        .append(String.valueOf(column.type).toLowerCase(Locale.ROOT)).append(',');
+            }
+            canonical.append(')');
+        });
+        return sha256(canonical.toString());
+    }
+
+    /**
+     * Hex SHA-256 of the UTF-8 bytes of a string
+     */
+    static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.NLP2SparkSQL.project.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming RFC 4180 CSV reader: comma separated, fields optionally in double quotes, "" for a quote
+ * inside a quoted field, and quoted fields may span lines. Reads one record at a time, so input of
+ * any size is parsed in constant memory.
+ */
+public final class CsvReader {
+
+    private final Reader in;
+    private int peeked = -2;
+
+    /**
+     * @param in read one char at a time, so pass a buffered reader
+     */
+    public CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * @return the fields of the next record, or null at the end of the input
+     */
+    public List<String> next() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean fieldStart = true;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted CSV field");
+                }
+                if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && fieldStart) {
+                quoted = true;
+                fieldStart = false;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                fieldStart = true;
+            } else if (c == '\n' || c == '\r' || c == -1) {
+                if (c == '\r' && peek() == '\n') {
+                    read();
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+                fieldStart = false;
+            }
+            c = read();
+        }
+    }
+
+    private int read() throws IOException {
+        if (peeked != -2) {
+            int c = peeked;
+            peeked = -2;
+            return c;
+        }
+        return in.read();
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = in.read();
+        }
+        return peeked;
+    }
+}
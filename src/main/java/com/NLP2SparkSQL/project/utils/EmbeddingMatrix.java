@@ -0,0 +1,243 @@
+package com.NLP2SparkSQL.project.utils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embeddings stored as one contiguous row-major float[] with the inverse L2 norm of every
+ * row precomputed, for cosine top-K search without boxing or per-row allocations.
+ *
+ * Rows are appended by a single writer; searches may run concurrently with each other
+ * but not with {@link #add} or {@link #set}.
+ */
+public final class EmbeddingMatrix {
+
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 32_768;
+    private static final int PARALLEL_CHUNK_ROWS = 4_096;
+
+    private final int dimension;
+    private float[] data;
+    private float[] inverseNorms;
+    private int rows;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    public EmbeddingMatrix(int dimension, int initialCapacity) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("Dimension must be positive");
+        }
+        this.dimension = dimension;
+        this.data = new float[Math.max(1, initialCapacity) * dimension];
+        this.inverseNorms = new float[Math.max(1, initialCapacity)];
+    }
+
+    /**
+     * Copy a list of vectors of the same dimension into a new matrix
+     */
+    public static EmbeddingMatrix of(List<float[]> vectors) {
+        int dimension = vectors.isEmpty() ? EmbeddingUtils.getEmbeddingDimension() : vectors.get(0).length;
+        EmbeddingMatrix matrix = new EmbeddingMatrix(dimension, vectors.size());
+        for (float[] vector : vectors) {
+            matrix.add(vector);
+        }
+        return matrix;
+    }
+
+    /**
+     * Append a row and return its index
+     */
+    public int add(float[] vector) {
+        ensureCapacity(rows + 1);
+        int row = rows++;
+        set(row, vector);
+        return row;
+    }
+
+    /**
+     * Overwrite an existing row
+     */
+    public void set(int row, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+        checkRow(row);
+        System.arraycopy(vector, 0, data, row * dimension, dimension);
+        updateNorm(row);
+    }
+
+    /**
+     * Reserve rowCount zeroed rows to be filled in place through {@link #data()}, then
+     * sealed with {@link #updateNorms}. Returns the index of the first reserved row.
+     */
+    public int reserve(int rowCount) {
+        ensureCapacity(rows + rowCount);
+        int first = rows;
+        rows += rowCount;
+        return first;
+    }
+
+    /**
+     * Recompute the norms of rows written directly into {@link #data()}
+     */
+    public void updateNorms(int firstRow, int rowCount) {
+        for (int row = firstRow; row < firstRow + rowCount; row++) {
+            updateNorm(row);
+        }
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Backing array; row r occupies [r * dimension, (r + 1) * dimension)
+     */
+    public float[] data() {
+        return data;
+    }
+
+    public float[] row(int row) {
+        checkRow(row);
+        return Arrays.copyOfRange(data, row * dimension, (row + 1) * dimension);
+    }
+
+    /**
+     * Matrices with at least this many rows are scanned in parallel; Integer.MAX_VALUE disables it
+     */
+    public EmbeddingMatrix parallelThreshold(int rowCount) {
+        this.parallelThreshold = rowCount;
+        return this;
+    }
+
+    public EmbeddingMatrix pool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * Cosine similarity of the query with one row
+     */
+    public float score(float[] query, int row) {
+        checkRow(row);
+        float queryNorm = VectorKernels.norm(query);
+        if (queryNorm == 0.0f) {
+            return 0.0f;
+        }
+        return VectorKernels.dot(query, 0, data, row * dimension, dimension) * inverseNorms[row] / queryNorm;
+    }
+
+    /**
+     * The k rows most similar to the query, best first
+     */
+    public SimilarityHits search(float[] query, int k) {
+        return search(query, k, Float.NEGATIVE_INFINITY, false);
+    }
+
+    /**
+     * The k rows most similar to the query among those scoring at least minScore, best first.
+     *
+     * @param stopWhenFull return as soon as k rows reach minScore instead of scanning every row;
+     *                     the hits are then good enough rather than guaranteed best
+     */
+    public SimilarityHits search(float[] query, int k, float minScore, boolean stopWhenFull) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+        float queryNorm = VectorKernels.norm(query);
+        if (k <= 0 || rows == 0 || queryNorm == 0.0f) {
+            return SimilarityHits.EMPTY;
+        }
+
+        float inverseQueryNorm = 1.0f / queryNorm;
+        int limit = Math.min(k, rows);
+        TopKHeap heap;
+        if (rows >= parallelThreshold) {
+            AtomicInteger qualifying = stopWhenFull ? new AtomicInteger() : null;
+            heap = pool.invoke(new ScanTask(query, inverseQueryNorm, 0, rows, limit, minScore, qualifying));
+        } else {
+            heap = scan(query, inverseQueryNorm, 0, rows, limit, minScore, stopWhenFull ? new AtomicInteger() : null);
+        }
+        return heap.toHits();
+    }
+
+    private TopKHeap scan(float[] query, float inverseQueryNorm, int from, int to, int k,
+                          float minScore, AtomicInteger qualifying) {
+        TopKHeap heap = new TopKHeap(k);
+        for (int row = from; row < to; row++) {
+            float score = VectorKernels.dot(query, 0, data, row * dimension, dimension)
+                    * inverseNorms[row] * inverseQueryNorm;
+            if (score < minScore) {
+                continue;
+            }
+            heap.offer(row, score);
+            if (qualifying != null && qualifying.incrementAndGet() >= k) {
+                break;
+            }
+        }
+        return heap;
+    }
+
+    private void updateNorm(int row) {
+        float norm = VectorKernels.norm(data, row * dimension, dimension);
+        inverseNorms[row] = norm == 0.0f ? 0.0f : 1.0f / norm;
+    }
+
+    private void ensureCapacity(int rowCount) {
+        if (inverseNorms.length < rowCount) {
+            int capacity = Math.max(rowCount, inverseNorms.length + (inverseNorms.length >> 1));
+            data = Arrays.copyOf(data, capacity * dimension);
+            inverseNorms = Arrays.copyOf(inverseNorms, capacity);
+        }
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + rows);
+        }
+    }
+
+    private final class ScanTask extends RecursiveTask<TopKHeap> {
+        private final float[] query;
+        private final float inverseQueryNorm;
+        private final int from;
+        private final int to;
+        private final int k;
+        private final float minScore;
+        private final AtomicInteger qualifying;
+
+        ScanTask(float[] query, float inverseQueryNorm, int from, int to, int k,
+                 float minScore, AtomicInteger qualifying) {
+            this.query = query;
+            this.inverseQueryNorm = inverseQueryNorm;
+            this.from = from;
+            this.to = to;
+            this.k = k;
+            this.minScore = minScore;
+            this.qualifying = qualifying;
+        }
+
+        @Override
+        protected TopKHeap compute() {
+            if (qualifying != null && qualifying.get() >= k) {
+                return new TopKHeap(k);
+            }
+            if (to - from <= PARALLEL_CHUNK_ROWS) {
+                return scan(query, inverseQueryNorm, from, to, k, minScore, qualifying);
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask left = new ScanTask(query, inverseQueryNorm, from, middle, k, minScore, qualifying);
+            ScanTask right = new ScanTask(query, inverseQueryNorm, middle, to, k, minScore, qualifying);
+            left.fork();
+            TopKHeap merged = right.compute();
+            merged.addAll(left.join());
+            return merged;
+        }
+    }
+}
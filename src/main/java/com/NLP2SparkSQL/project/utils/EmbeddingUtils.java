@@ -4,13 +4,16 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
 
 @Slf4j
 public class EmbeddingUtils {
 
     private static final int EMBEDDING_DIM = 384; // Common embedding dimension
-    private static final Pattern WORD_PATTERN = Pattern.compile("[a-zA-Z]+");
+    // Index space of sparse embeddings; large enough that distinct tokens rarely share an index
+    private static final int SPARSE_DIM = 1 << 20;
     
     // SQL-specific keywords that should have higher weights
     private static final Set<String> SQL_KEYWORDS = Set.of(
@@ -28,6 +31,43 @@ public class EmbeddingUtils {
         "review", "department", "salary", "manager", "hire", "position", "work", "company"
     );
 
+    // Question-specific terms
+    private static final Set<String> DOMAIN_TERMS = Set.of("jobs", "employees", "performance", "review");
+
+    private static final int FLAG_SQL = 1;
+    private static final int FLAG_BUSINESS = 2;
+    private static final int FLAG_DOMAIN = 4;
+
+    // Open-addressing table of keyword flags, looked up by character range
+    private static final String[] KEYWORD_SLOTS = new String[256];
+    private static final int[] KEYWORD_FLAGS = new int[256];
+
+    static {
+        addKeywordFlags(SQL_KEYWORDS, FLAG_SQL);
+        addKeywordFlags(BUSINESS_KEYWORDS, FLAG_BUSINESS);
+        addKeywordFlags(DOMAIN_TERMS, FLAG_DOMAIN);
+    }
+
+    private static final int DEFAULT_TOKEN_CACHE_SIZE = 16_384;
+
+    // Token vectors are a pure function of the token, so they are computed once and reused.
+    // The keyword vocabulary lives in a table that is filled eagerly and never evicted.
+    private static final TokenVectorCache KEYWORD_VECTORS = buildKeywordVectors();
+    private static volatile TokenVectorCache tokenVectorCache = new TokenVectorCache(DEFAULT_TOKEN_CACHE_SIZE);
+    private static final LongAdder TOKEN_CACHE_HITS = new LongAdder();
+    private static final LongAdder TOKEN_CACHE_MISSES = new LongAdder();
+
+    // Vectors already stored in Qdrant were produced with V1, so it stays the default
+    private static volatile EmbeddingVersion defaultVersion = EmbeddingVersion.V1;
+    private static final ThreadLocal<EmbeddingScratch> SCRATCH = ThreadLocal.withInitial(EmbeddingScratch::new);
+
+    // Batches smaller than this are embedded on the calling thread
+    private static final int PARALLEL_BATCH_THRESHOLD = 64;
+    private static volatile ForkJoinPool batchPool = ForkJoinPool.commonPool();
+    private static final LongAdder BATCH_TEXTS = new LongAdder();
+    private static final LongAdder BATCH_NANOS = new LongAdder();
+    private static volatile double lastBatchThroughput;
+
     /**
      * Generate embedding for a given text using improved algorithm
      * 
@@ -42,34 +82,23 @@ public class EmbeddingUtils {
 
         try {
             log.debug("Generating embedding for text: '{}'", text.substring(0, Math.min(text.length(), 100)));
-            
-            // Preprocess text
-            String processedText = preprocessText(text);
-            log.debug("Preprocessed text: '{}'", processedText);
-            
-            // Tokenize
-            List<String> tokens = tokenize(processedText);
-            log.debug("Extracted {} tokens: {}", tokens.size(), tokens.subList(0, Math.min(tokens.size(), 10)));
-            
-            if (tokens.isEmpty()) {
+
+            float[] embedding = embedInto(text, new float[EMBEDDING_DIM], defaultVersion);
+
+            int nonZero = countNonZero(embedding);
+            if (nonZero == 0) {
                 log.warn("No tokens extracted from text: '{}'", text);
-                return new float[EMBEDDING_DIM];
+                return embedding;
             }
-            
-            // Generate embedding
-            float[] embedding = generateEmbedding(tokens);
-            
-            // Normalize
-            float[] normalizedEmbedding = normalizeVector(embedding);
-            
+
             // Log embedding statistics
-            float norm = calculateNorm(normalizedEmbedding);
-            float mean = calculateMean(normalizedEmbedding);
-            log.debug("Generated embedding - Norm: {}, Mean: {}, Non-zero elements: {}", 
-                     norm, mean, countNonZero(normalizedEmbedding));
-            
-            return normalizedEmbedding;
-            
+            if (log.isDebugEnabled()) {
+                log.debug("Generated embedding - Norm: {}, Mean: {}, Non-zero elements: {}",
+                         calculateNorm(embedding), calculateMean(embedding), nonZero);
+            }
+
+            return embedding;
+
         } catch (Exception e) {
             log.error("Error generating embedding for text: {}", text, e);
             return new float[EMBEDDING_DIM];
@@ -77,110 +106,230 @@ public class EmbeddingUtils {
     }
 
     /**
-     * Preprocess text for better embedding generation
+     * Write the normalized embedding of a text into a caller-supplied buffer using the default version
      */
-    private static String preprocessText(String text) {
-        // Enhanced preprocessing for better SQL/business context understanding
-        String processed = text.toLowerCase()
-                              .replaceAll("\\bwhich\\b", "what") // Normalize question words
-                              .replaceAll("\\bassociated with\\b", "related to")
-                              .replaceAll("\\bhave had\\b", "have")
-                              .replaceAll("\\bat least one\\b", "one or more")
-                              .replaceAll("[^a-zA-Z0-9\\s]", " ")
-                              .replaceAll("\\s+", " ")
-                              .trim();
-        
-        return processed;
+    public static float[] embedInto(CharSequence text, float[] out) {
+        return embedInto(text, out, defaultVersion);
     }
 
     /**
-     * Tokenize text into words with improved filtering
+     * Write the normalized embedding of a text into a caller-supplied buffer.
+     *
+     * Tokens, counts and weights live in per-thread scratch buffers, so once a thread is warm
+     * a call allocates nothing. The only exception is V1 on a token whose vector is not cached
+     * yet, which needs the token as a String to generate it. For V1 the result is identical
+     * to {@link #embed(String)}, including the summation order of the token vectors.
+     *
+     * @param text input text (question or context)
+     * @param out buffer of {@link #getEmbeddingDimension()} floats, overwritten with the embedding
+     * @return the given buffer
      */
-    private static List<String> tokenize(String text) {
-        List<String> tokens = new ArrayList<>();
-        String[] words = text.split("\\s+");
-        
-        // Common stop words to filter out
-        Set<String> stopWords = Set.of("the", "is", "are", "was", "were", "be", "been", "being", 
-                                      "have", "has", "had", "do", "does", "did", "will", "would", 
-                                      "could", "should", "may", "might", "must", "can", "a", "an", "to");
-        
-        for (String word : words) {
-            if (word.length() > 1 && !stopWords.contains(word)) { // Lowered threshold and filter stop words
-                tokens.add(word);
+    public static float[] embedInto(CharSequence text, float[] out, EmbeddingVersion version) {
+        if (out.length != EMBEDDING_DIM) {
+            throw new IllegalArgumentException("Output buffer must have dimension " + EMBEDDING_DIM);
+        }
+        Arrays.fill(out, 0.0f);
+        if (text == null) {
+            return out;
+        }
+
+        EmbeddingScratch scratch = SCRATCH.get();
+        TokenScanner scanner = scratch.scanner;
+        scanner.scan(text);
+        int tokens = scanner.tokenCount();
+        if (tokens == 0) {
+            return out;
+        }
+
+        int unique = scratch.countUnique();
+        if (version == EmbeddingVersion.V1) {
+            scratch.orderLikeHashMap(unique);
+        } else {
+            scratch.orderByFirstOccurrence(unique);
+        }
+
+        char[] chars = scanner.chars();
+        for (int k = 0; k < unique; k++) {
+            int u = scratch.order[k];
+            int token = scratch.uniqueToken[u];
+            int start = scanner.tokenStart(token);
+            int length = scanner.tokenLength(token);
+            int hash = scanner.tokenHash(token);
+
+            float weight = tokenWeight(chars, start, length, hash, scratch.uniqueCount[u], tokens);
+
+            if (version == EmbeddingVersion.V1) {
+                VectorKernels.addScaled(out, tokenVector(scanner, token), weight);
+            } else {
+                long seed = hashedTokenSeed(chars, start, length);
+                for (int i = 0; i < EMBEDDING_DIM; i++) {
+                    out[i] += hashedComponent(seed, i) * weight;
+                }
             }
         }
-        
+
+        return normalizeVector(out);
+    }
+
+    /**
+     * Sparse embedding of a text over {@link #getSparseDimension()} indices: one entry per distinct
+     * token, at an index hashed from the token, weighted like the dense embedding (frequency and
+     * keyword boosts) and normalized to unit length. Costs O(tokens) instead of O(tokens * 384).
+     */
+    public static SparseVector embedSparse(CharSequence text) {
+        return embedSparse(text, SPARSE_DIM);
+    }
+
+    /**
+     * Sparse embedding with tokens hashed into [0, dimension). With a small dimension, such as
+     * {@link #getEmbeddingDimension()}, the result can be dotted with dense vectors of that size.
+     */
+    public static SparseVector embedSparse(CharSequence text, int dimension) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("Dimension must be positive");
+        }
+        if (text == null) {
+            return SparseVector.EMPTY;
+        }
+
+        EmbeddingScratch scratch = SCRATCH.get();
+        TokenScanner scanner = scratch.scanner;
+        scanner.scan(text);
+        int tokens = scanner.tokenCount();
+        if (tokens == 0) {
+            return SparseVector.EMPTY;
+        }
+
+        int unique = scratch.countUnique();
+        char[] chars = scanner.chars();
+        int[] indices = new int[unique];
+        float[] values = new float[unique];
+        for (int u = 0; u < unique; u++) {
+            int token = scratch.uniqueToken[u];
+            int start = scanner.tokenStart(token);
+            int length = scanner.tokenLength(token);
+            indices[u] = (int) Long.remainderUnsigned(hashedTokenSeed(chars, start, length), dimension);
+            values[u] = tokenWeight(chars, start, length, scanner.tokenHash(token), scratch.uniqueCount[u], tokens);
+        }
+
+        return SparseVector.of(indices, values).normalized();
+    }
+
+    public static int getSparseDimension() {
+        return SPARSE_DIM;
+    }
+
+    public static EmbeddingVersion getDefaultVersion() {
+        return defaultVersion;
+    }
+
+    public static void setDefaultVersion(EmbeddingVersion version) {
+        defaultVersion = Objects.requireNonNull(version);
+        log.info("Embedding version set to {}", version);
+    }
+
+    /**
+     * Tokenize text the way embeddings see it: lower-cased, question phrases normalized
+     * ("which" -> "what", "at least one" -> "one or more", ...), split on anything but
+     * [a-z0-9], single characters and stop words dropped
+     */
+    public static List<String> tokenize(CharSequence text) {
+        if (text == null) {
+            return List.of();
+        }
+        TokenScanner scanner = SCRATCH.get().scanner;
+        scanner.scan(text);
+        List<String> tokens = new ArrayList<>(scanner.tokenCount());
+        for (int t = 0; t < scanner.tokenCount(); t++) {
+            tokens.add(scanner.token(t));
+        }
         return tokens;
     }
 
     /**
-     * Generate embedding vector from tokens with improved weighting
+     * Return the vector of a token from the keyword table or the bounded cache,
+     * generating and caching it on a miss. The returned array is shared and must not be modified.
      */
-    private static float[] generateEmbedding(List<String> tokens) {
-        float[] embedding = new float[EMBEDDING_DIM];
-        Map<String, Float> tokenWeights = calculateTokenWeights(tokens);
-        
-        int processedTokens = 0;
-        for (Map.Entry<String, Float> entry : tokenWeights.entrySet()) {
-            String token = entry.getKey();
-            float weight = entry.getValue();
-            
-            float[] tokenVector = generateTokenVector(token);
-            
-            // Add weighted token vector to embedding
-            for (int i = 0; i < EMBEDDING_DIM; i++) {
-                embedding[i] += tokenVector[i] * weight;
-            }
-            processedTokens++;
+    private static float[] tokenVector(String token) {
+        float[] vector = KEYWORD_VECTORS.get(token);
+        if (vector == null) {
+            vector = tokenVectorCache.get(token);
         }
-        
-        log.debug("Processed {} unique tokens for embedding generation", processedTokens);
-        return embedding;
+        if (vector != null) {
+            TOKEN_CACHE_HITS.increment();
+            return vector;
+        }
+
+        TOKEN_CACHE_MISSES.increment();
+        vector = generateTokenVector(token);
+        tokenVectorCache.put(token, vector);
+        return vector;
     }
 
     /**
-     * Calculate weights for tokens based on their importance
+     * Same lookup as {@link #tokenVector(String)} for a token held by the scanner,
+     * creating the token String only on a miss
      */
-    private static Map<String, Float> calculateTokenWeights(List<String> tokens) {
-        Map<String, Integer> tokenCounts = new HashMap<>();
-        Map<String, Float> tokenWeights = new HashMap<>();
-        
-        // Count token frequencies
-        for (String token : tokens) {
-            tokenCounts.put(token, tokenCounts.getOrDefault(token, 0) + 1);
+    private static float[] tokenVector(TokenScanner scanner, int token) {
+        char[] chars = scanner.chars();
+        int start = scanner.tokenStart(token);
+        int length = scanner.tokenLength(token);
+        int hash = scanner.tokenHash(token);
+
+        float[] vector = KEYWORD_VECTORS.get(chars, start, length, hash);
+        if (vector == null) {
+            vector = tokenVectorCache.get(chars, start, length, hash);
         }
-        
-        // Calculate improved weights
-        for (Map.Entry<String, Integer> entry : tokenCounts.entrySet()) {
-            String token = entry.getKey();
-            int count = entry.getValue();
-            
-            float tf = (float) count / tokens.size();
-            float weight = tf;
-            
-            // Boost SQL keywords more aggressively
-            if (SQL_KEYWORDS.contains(token)) {
-                weight *= 3.0f;
-                log.debug("Boosted SQL keyword '{}' with weight: {}", token, weight);
-            }
-            
-            // Boost business domain keywords
-            if (BUSINESS_KEYWORDS.contains(token)) {
-                weight *= 2.0f;
-                log.debug("Boosted business keyword '{}' with weight: {}", token, weight);
-            }
-            
-            // Boost question-specific terms
-            if (token.equals("jobs") || token.equals("employees") || token.equals("performance") || token.equals("review")) {
-                weight *= 2.5f;
-                log.debug("Boosted domain-specific term '{}' with weight: {}", token, weight);
-            }
-            
-            tokenWeights.put(token, weight);
+        if (vector != null) {
+            TOKEN_CACHE_HITS.increment();
+            return vector;
         }
-        
-        return tokenWeights;
+        return tokenVector(scanner.token(token));
+    }
+
+    private static TokenVectorCache buildKeywordVectors() {
+        Set<String> vocabulary = new HashSet<>();
+        vocabulary.addAll(SQL_KEYWORDS);
+        vocabulary.addAll(BUSINESS_KEYWORDS);
+        vocabulary.addAll(TokenScanner.STOP_WORDS);
+        vocabulary.addAll(DOMAIN_TERMS);
+
+        TokenVectorCache table = new TokenVectorCache(vocabulary.size() * 4);
+        for (String token : vocabulary) {
+            table.put(token, generateTokenVector(token));
+        }
+        return table;
+    }
+
+    /**
+     * Replace the token vector cache with an empty one bounded to the given number of entries
+     */
+    public static void configureTokenCache(int maxEntries) {
+        tokenVectorCache = new TokenVectorCache(maxEntries);
+        log.info("Token vector cache configured with capacity {}", tokenVectorCache.capacity());
+    }
+
+    /**
+     * Force class initialization so the keyword vector table is built at startup
+     */
+    public static int warmUp() {
+        return KEYWORD_VECTORS.size();
+    }
+
+    public static long getTokenCacheHits() {
+        return TOKEN_CACHE_HITS.sum();
+    }
+
+    public static long getTokenCacheMisses() {
+        return TOKEN_CACHE_MISSES.sum();
+    }
+
+    public static int getTokenCacheSize() {
+        return tokenVectorCache.size();
+    }
+
+    public static long getTokenCacheEvictions() {
+        return tokenVectorCache.evictions();
     }
 
     /**
@@ -215,13 +364,101 @@ public class EmbeddingUtils {
         return vector;
     }
 
+    /**
+     * Seed of the V2 token hash: FNV-1a over the token characters
+     */
+    private static long hashedTokenSeed(char[] chars, int start, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < start + length; i++) {
+            hash ^= chars[i];
+            hash *= 0x100000001b3L;
+        }
+        return mix64(hash);
+    }
+
+    /**
+     * V2 value of one dimension, a pure function of (token seed, dimension).
+     * Sum of four 16-bit uniforms, giving a zero-mean bell-shaped value in [-2, 2).
+     */
+    private static float hashedComponent(long seed, int dimension) {
+        long x = mix64(seed + (dimension + 1) * 0x9E3779B97F4A7C15L);
+        int sum = (int) (x & 0xFFFF) + (int) ((x >>> 16) & 0xFFFF)
+                + (int) ((x >>> 32) & 0xFFFF) + (int) (x >>> 48);
+        return sum * (1.0f / 65536.0f) - 2.0f;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Relative frequency of a token, boosted for SQL, business and domain keywords
+     */
+    private static float tokenWeight(char[] chars, int start, int length, int hash, int count, int tokens) {
+        float weight = (float) count / tokens;
+        int flags = keywordFlags(chars, start, length, hash);
+        if ((flags & FLAG_SQL) != 0) {
+            weight *= 3.0f;
+        }
+        if ((flags & FLAG_BUSINESS) != 0) {
+            weight *= 2.0f;
+        }
+        if ((flags & FLAG_DOMAIN) != 0) {
+            weight *= 2.5f;
+        }
+        return weight;
+    }
+
+    private static void addKeywordFlags(Set<String> keywords, int flag) {
+        for (String keyword : keywords) {
+            int slot = spread(keyword.hashCode()) & (KEYWORD_SLOTS.length - 1);
+            while (KEYWORD_SLOTS[slot] != null && !KEYWORD_SLOTS[slot].equals(keyword)) {
+                slot = (slot + 1) & (KEYWORD_SLOTS.length - 1);
+            }
+            KEYWORD_SLOTS[slot] = keyword;
+            KEYWORD_FLAGS[slot] |= flag;
+        }
+    }
+
+    private static int keywordFlags(char[] chars, int start, int length, int hash) {
+        int slot = spread(hash) & (KEYWORD_SLOTS.length - 1);
+        String keyword;
+        while ((keyword = KEYWORD_SLOTS[slot]) != null) {
+            if (keyword.hashCode() == hash && regionEquals(keyword, chars, start, length)) {
+                return KEYWORD_FLAGS[slot];
+            }
+            slot = (slot + 1) & (KEYWORD_SLOTS.length - 1);
+        }
+        return 0;
+    }
+
+    private static boolean regionEquals(String value, char[] chars, int start, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != chars[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
     /**
      * Normalize vector to unit length with better numerical stability
      */
     private static float[] normalizeVector(float[] vector) {
         float norm = 0.0f;
         
-        // Calculate L2 norm
+        // Calculate L2 norm. Kept as a sequential sum: a vectorized reduction rounds
+        // differently, which would shift every V1 vector already stored in Qdrant.
         for (float v : vector) {
             norm += v * v;
         }
@@ -229,9 +466,7 @@ public class EmbeddingUtils {
         norm = (float) Math.sqrt(norm);
         
         if (norm > 1e-6f) { // Better numerical stability
-            for (int i = 0; i < vector.length; i++) {
-                vector[i] /= norm;
-            }
+            VectorKernels.divide(vector, norm);
         } else {
             log.warn("Vector norm too small ({}), returning zero vector", norm);
             Arrays.fill(vector, 0.0f);
@@ -242,11 +477,7 @@ public class EmbeddingUtils {
 
     // Helper methods for debugging
     private static float calculateNorm(float[] vector) {
-        float norm = 0.0f;
-        for (float v : vector) {
-            norm += v * v;
-        }
-        return (float) Math.sqrt(norm);
+        return VectorKernels.norm(vector);
     }
     
     private static float calculateMean(float[] vector) {
@@ -271,25 +502,7 @@ public class EmbeddingUtils {
      * Calculate cosine similarity between two vectors
      */
     public static float cosineSimilarity(float[] vec1, float[] vec2) {
-        if (vec1.length != vec2.length) {
-            throw new IllegalArgumentException("Vectors must have the same dimension");
-        }
-        
-        float dotProduct = 0.0f;
-        float norm1 = 0.0f;
-        float norm2 = 0.0f;
-        
-        for (int i = 0; i < vec1.length; i++) {
-            dotProduct += vec1[i] * vec2[i];
-            norm1 += vec1[i] * vec1[i];
-            norm2 += vec2[i] * vec2[i];
-        }
-        
-        if (norm1 == 0.0f || norm2 == 0.0f) {
-            return 0.0f;
-        }
-        
-        float similarity = dotProduct / (float) (Math.sqrt(norm1) * Math.sqrt(norm2));
+        float similarity = VectorKernels.cosine(vec1, vec2);
         log.debug("Calculated cosine similarity: {}", similarity);
         return similarity;
     }
@@ -354,15 +567,95 @@ public class EmbeddingUtils {
      * Batch embedding generation for multiple texts
      */
     public static List<float[]> batchEmbed(List<String> texts) {
-        List<float[]> embeddings = new ArrayList<>();
+        EmbeddingMatrix matrix = batchEmbedMatrix(texts);
+        List<float[]> embeddings = new ArrayList<>(matrix.rows());
         
-        for (String text : texts) {
-            embeddings.add(embed(text));
+        for (int row = 0; row < matrix.rows(); row++) {
+            embeddings.add(matrix.row(row));
         }
         
         return embeddings;
     }
 
+    /**
+     * Embed texts into a new matrix, row i holding the embedding of texts[i]
+     */
+    public static EmbeddingMatrix batchEmbedMatrix(List<? extends CharSequence> texts) {
+        EmbeddingMatrix matrix = new EmbeddingMatrix(EMBEDDING_DIM, texts.size());
+        batchEmbedInto(texts, matrix);
+        return matrix;
+    }
+
+    /**
+     * Append the embeddings of texts to a matrix, in order, and return the first new row.
+     *
+     * Large batches are split across the batch ForkJoin pool; every worker embeds into its
+     * thread-local buffer and copies the result straight into the matrix backing array.
+     */
+    public static int batchEmbedInto(List<? extends CharSequence> texts, EmbeddingMatrix matrix) {
+        if (matrix.dimension() != EMBEDDING_DIM) {
+            throw new IllegalArgumentException("Matrix must have dimension " + EMBEDDING_DIM);
+        }
+        int firstRow = matrix.reserve(texts.size());
+        if (texts.isEmpty()) {
+            return firstRow;
+        }
+
+        long start = System.nanoTime();
+        EmbeddingVersion version = defaultVersion;
+        ForkJoinPool pool = batchPool;
+        if (texts.size() < PARALLEL_BATCH_THRESHOLD || pool.getParallelism() <= 1) {
+            embedRange(texts, 0, texts.size(), matrix.data(), firstRow, version);
+        } else {
+            int chunk = Math.max(16, texts.size() / (pool.getParallelism() * 4));
+            pool.invoke(new BatchEmbedTask(texts, 0, texts.size(), chunk, matrix.data(), firstRow, version));
+        }
+        matrix.updateNorms(firstRow, texts.size());
+
+        long elapsed = System.nanoTime() - start;
+        BATCH_TEXTS.add(texts.size());
+        BATCH_NANOS.add(elapsed);
+        lastBatchThroughput = texts.size() * 1e9 / Math.max(1, elapsed);
+        if (texts.size() >= PARALLEL_BATCH_THRESHOLD) {
+            log.info("Embedded {} texts in {} ms ({} texts/sec, parallelism {})",
+                    texts.size(), elapsed / 1_000_000, Math.round(lastBatchThroughput), pool.getParallelism());
+        }
+        return firstRow;
+    }
+
+    private static void embedRange(List<? extends CharSequence> texts, int from, int to,
+                                   float[] data, int firstRow, EmbeddingVersion version) {
+        float[] buffer = SCRATCH.get().rowBuffer;
+        for (int i = from; i < to; i++) {
+            embedInto(texts.get(i), buffer, version);
+            System.arraycopy(buffer, 0, data, (firstRow + i) * EMBEDDING_DIM, EMBEDDING_DIM);
+        }
+    }
+
+    /**
+     * Use a dedicated pool of the given parallelism for batch embedding (0 = common pool)
+     */
+    public static void configureBatchParallelism(int parallelism) {
+        ForkJoinPool previous = batchPool;
+        batchPool = parallelism > 0 ? new ForkJoinPool(parallelism) : ForkJoinPool.commonPool();
+        if (previous != ForkJoinPool.commonPool()) {
+            previous.shutdown();
+        }
+        log.info("Batch embedding parallelism set to {}", batchPool.getParallelism());
+    }
+
+    public static long getBatchTextsEmbedded() {
+        return BATCH_TEXTS.sum();
+    }
+
+    public static double getBatchSecondsSpent() {
+        return BATCH_NANOS.sum() / 1e9;
+    }
+
+    public static double getLastBatchThroughput() {
+        return lastBatchThroughput;
+    }
+
     /**
      * Find the most similar embedding from a collection
      */
@@ -370,19 +663,16 @@ public class EmbeddingUtils {
         if (candidateEmbeddings.isEmpty()) {
             return -1;
         }
-        
-        int bestIndex = 0;
-        float bestSimilarity = cosineSimilarity(queryEmbedding, candidateEmbeddings.get(0));
-        
-        for (int i = 1; i < candidateEmbeddings.size(); i++) {
-            float similarity = cosineSimilarity(queryEmbedding, candidateEmbeddings.get(i));
-            if (similarity > bestSimilarity) {
-                bestSimilarity = similarity;
-                bestIndex = i;
-            }
-        }
-        
-        return bestIndex;
+
+        SimilarityHits hits = EmbeddingMatrix.of(candidateEmbeddings).search(queryEmbedding, 1);
+        return hits.isEmpty() ? 0 : hits.row(0);
+    }
+
+    /**
+     * Find the k embeddings of a matrix most similar to the query, best first
+     */
+    public static SimilarityHits findTopK(float[] queryEmbedding, EmbeddingMatrix candidates, int k) {
+        return candidates.search(queryEmbedding, k);
     }
 
     /**
@@ -403,4 +693,141 @@ public class EmbeddingUtils {
         log.info("Non-zero elements: {}", countNonZero(embedding));
         log.info("First 10 values: {}", Arrays.toString(Arrays.copyOf(embedding, Math.min(10, embedding.length))));
     }
-}
\ No newline at end of file
+
+    /**
+     * Per-thread buffers of {@link #embedInto}: tokenizer state and the unique-token table
+     */
+    private static final class EmbeddingScratch {
+        final TokenScanner scanner = new TokenScanner();
+        final float[] rowBuffer = new float[EMBEDDING_DIM];
+
+        // Open-addressing table of unique-token ids + 1
+        int[] table = new int[64];
+        int[] uniqueToken = new int[32];
+        int[] uniqueCount = new int[32];
+        int[] order = new int[32];
+        int[] bucketOffsets = new int[17];
+
+        /**
+         * Group the scanned tokens, recording the first occurrence and count of each distinct token
+         */
+        int countUnique() {
+            int tokens = scanner.tokenCount();
+            int size = Integer.highestOneBit(Math.max(8, tokens) - 1) << 2;
+            if (table.length < size) {
+                table = new int[size];
+            }
+            Arrays.fill(table, 0, size, 0);
+            if (uniqueToken.length < tokens) {
+                uniqueToken = new int[tokens];
+                uniqueCount = new int[tokens];
+                order = new int[tokens];
+            }
+
+            char[] chars = scanner.chars();
+            int mask = size - 1;
+            int unique = 0;
+            for (int t = 0; t < tokens; t++) {
+                int hash = scanner.tokenHash(t);
+                int slot = spread(hash) & mask;
+                while (true) {
+                    int id = table[slot];
+                    if (id == 0) {
+                        table[slot] = unique + 1;
+                        uniqueToken[unique] = t;
+                        uniqueCount[unique] = 1;
+                        unique++;
+                        break;
+                    }
+                    int first = uniqueToken[id - 1];
+                    if (scanner.tokenHash(first) == hash && sameToken(chars, first, t)) {
+                        uniqueCount[id - 1]++;
+                        break;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+            }
+            return unique;
+        }
+
+        void orderByFirstOccurrence(int unique) {
+            for (int u = 0; u < unique; u++) {
+                order[u] = u;
+            }
+        }
+
+        /**
+         * Order distinct tokens the way {@link #embed(String)} iterates its HashMap of weights:
+         * by bucket index, then by insertion (first occurrence) within a bucket. Float sums
+         * depend on the order, so this keeps V1 vectors bit-identical.
+         */
+        void orderLikeHashMap(int unique) {
+            int capacity = 16;
+            while (unique > capacity * 3 / 4) {
+                capacity <<= 1;
+            }
+            if (bucketOffsets.length < capacity + 1) {
+                bucketOffsets = new int[capacity + 1];
+            }
+            Arrays.fill(bucketOffsets, 0, capacity + 1, 0);
+
+            int mask = capacity - 1;
+            for (int u = 0; u < unique; u++) {
+                bucketOffsets[(spread(scanner.tokenHash(uniqueToken[u])) & mask) + 1]++;
+            }
+            for (int b = 0; b < capacity; b++) {
+                bucketOffsets[b + 1] += bucketOffsets[b];
+            }
+            for (int u = 0; u < unique; u++) {
+                order[bucketOffsets[spread(scanner.tokenHash(uniqueToken[u])) & mask]++] = u;
+            }
+        }
+
+        private boolean sameToken(char[] chars, int a, int b) {
+            int length = scanner.tokenLength(a);
+            if (scanner.tokenLength(b) != length) {
+                return false;
+            }
+            int startA = scanner.tokenStart(a);
+            int startB = scanner.tokenStart(b);
+            for (int i = 0; i < length; i++) {
+                if (chars[startA + i] != chars[startB + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class BatchEmbedTask extends RecursiveAction {
+        private final List<? extends CharSequence> texts;
+        private final int from;
+        private final int to;
+        private final int chunk;
+        private final float[] data;
+        private final int firstRow;
+        private final EmbeddingVersion version;
+
+        BatchEmbedTask(List<? extends CharSequence> texts, int from, int to, int chunk,
+                       float[] data, int firstRow, EmbeddingVersion version) {
+            this.texts = texts;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.data = data;
+            this.firstRow = firstRow;
+            this.version = version;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                embedRange(texts, from, to, data, firstRow, version);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchEmbedTask(texts, from, middle, chunk, data, firstRow, version),
+                      new BatchEmbedTask(texts, middle, to, chunk, data, firstRow, version));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.NLP2SparkSQL.project.utils;
+
+/**
+ * Versions of the token-vector algorithm used by {@link EmbeddingUtils}.
+ *
+ * Vectors of different versions live in different spaces, so a Qdrant collection
+ * must be queried with the version it was indexed with.
+ */
+public enum EmbeddingVersion {
+
+    /** Original algorithm: three seeded java.util.Random Gaussian streams per token */
+    V1,
+
+    /** Counter-based hash per (token, dimension), no Random instances and no per-token arrays */
+    V2;
+
+    public static EmbeddingVersion fromProperty(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return V1;
+        }
+        return valueOf(value.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,460 @@
+package com.NLP2SparkSQL.project.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-memory Hierarchical Navigable Small World graph for approximate cosine nearest-neighbour search
+ * (Malkov and Yashunin, 2016).
+ *
+ * Vectors are stored L2-normalized so the dot product is the cosine similarity. Nodes are identified
+ * by the order in which they were added, starting at 0.
+ *
+ * {@link #add} may be called from several threads at once and concurrently with {@link #search}:
+ * every node publishes its neighbour lists copy-on-write and is locked only while one of them is
+ * rewritten.
+ */
+public final class HnswIndex {
+
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+    private static final int FORMAT_VERSION = 1;
+
+    private final int dimension;
+    private final int m;
+    private final int maxConnectionsLayer0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private volatile int efSearch;
+
+    private final Object growLock = new Object();
+    private volatile Node[] nodes;
+    private volatile int size;
+    private volatile EntryPoint entryPoint;
+
+    /**
+     * @param m              links per node on the upper layers (twice as many on layer 0)
+     * @param efConstruction candidate list size while linking a new node
+     * @param efSearch       candidate list size while searching, raised to k when smaller
+     */
+    public HnswIndex(int dimension, int m, int efConstruction, int efSearch) {
+        if (dimension <= 0 || m < 2 || efConstruction <= 0 || efSearch <= 0) {
+            throw new IllegalArgumentException("Invalid HNSW parameters: dimension=" + dimension
+                    + ", m=" + m + ", efConstruction=" + efConstruction + ", efSearch=" + efSearch);
+        }
+        this.dimension = dimension;
+        this.m = m;
+        this.maxConnectionsLayer0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.nodes = new Node[64];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int m() {
+        return m;
+    }
+
+    public int efConstruction() {
+        return efConstruction;
+    }
+
+    public int efSearch() {
+        return efSearch;
+    }
+
+    public void setEfSearch(int efSearch) {
+        if (efSearch <= 0) {
+            throw new IllegalArgumentException("efSearch must be positive");
+        }
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * Insert a vector and return its node id
+     */
+    public int add(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+        int level = randomLevel();
+        Node node = new Node(normalizedCopy(vector), level);
+        int id = allocate(node);
+
+        EntryPoint entry = entryPoint;
+        if (entry == null) {
+            synchronized (growLock) {
+                entry = entryPoint;
+                if (entry == null) {
+                    entryPoint = new EntryPoint(id, level);
+                    return id;
+                }
+            }
+        }
+
+        int current = entry.id;
+        for (int layer = entry.level; layer > level; layer--) {
+            current = greedyClosest(node.vector, current, layer);
+        }
+        for (int layer = Math.min(level, entry.level); layer >= 0; layer--) {
+            int maxConnections = layer == 0 ? maxConnectionsLayer0 : m;
+            Candidate[] candidates = searchLayer(node.vector, current, efConstruction, layer);
+            int[] neighbours = closest(candidates, m, id);
+            // Concurrent inserts may already have linked back to this node on this layer
+            mergeLinks(node, layer, neighbours, maxConnections);
+            for (int neighbour : neighbours) {
+                mergeLinks(node(neighbour), layer, new int[] {id}, maxConnections);
+            }
+            current = candidates[0].id;
+        }
+
+        if (level > entry.level) {
+            synchronized (growLock) {
+                if (level > entryPoint.level) {
+                    entryPoint = new EntryPoint(id, level);
+                }
+            }
+        }
+        return id;
+    }
+
+    /**
+     * The k nodes closest to the query, best first; scores are cosine similarities
+     */
+    public SimilarityHits search(float[] query, int k) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+        EntryPoint entry = entryPoint;
+        if (k <= 0 || entry == null) {
+            return SimilarityHits.EMPTY;
+        }
+        float[] normalized = normalizedCopy(query);
+
+        int current = entry.id;
+        for (int layer = entry.level; layer > 0; layer--) {
+            current = greedyClosest(normalized, current, layer);
+        }
+        Candidate[] candidates = searchLayer(normalized, current, Math.max(efSearch, k), 0);
+
+        int count = Math.min(k, candidates.length);
+        int[] rows = new int[count];
+        float[] scores = new float[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = candidates[i].id;
+            scores[i] = candidates[i].score;
+        }
+        return new SimilarityHits(rows, scores);
+    }
+
+    /**
+     * Copy of the stored (normalized) vector of a node
+     */
+    public float[] vector(int id) {
+        return node(id).vector.clone();
+    }
+
+    // ---- persistence ----
+
+    /**
+     * Write the graph to a file, through a temporary file so a crash never leaves a truncated index
+     */
+    public void save(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+            writeTo(data);
+            data.flush();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static HnswIndex load(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return readFrom(new DataInputStream(new BufferedInputStream(in)));
+        }
+    }
+
+    /**
+     * Write the nodes added so far; links to nodes added while writing are left out
+     *
+     * @return number of nodes written
+     */
+    public int writeTo(DataOutput out) throws IOException {
+        EntryPoint entry = entryPoint;
+        int count = size;
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(dimension);
+        out.writeInt(m);
+        out.writeInt(efConstruction);
+        out.writeInt(efSearch);
+        out.writeInt(count);
+        out.writeInt(entry == null || entry.id >= count ? -1 : entry.id);
+        for (int id = 0; id < count; id++) {
+            Node node = node(id);
+            out.writeInt(node.level);
+            for (float value : node.vector) {
+                out.writeFloat(value);
+            }
+            for (int layer = 0; layer <= node.level; layer++) {
+                int[] links = node.links.get(layer);
+                int kept = 0;
+                for (int link : links) {
+                    if (link < count) {
+                        kept++;
+                    }
+                }
+                out.writeInt(kept);
+                for (int link : links) {
+                    if (link < count) {
+                        out.writeInt(link);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    public static HnswIndex readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an HNSW index file");
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported HNSW index format version " + version);
+        }
+        HnswIndex index = new HnswIndex(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+        int count = in.readInt();
+        int entryId = in.readInt();
+
+        Node[] nodes = new Node[Math.max(64, count)];
+        for (int id = 0; id < count; id++) {
+            int level = in.readInt();
+            float[] vector = new float[index.dimension];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = in.readFloat();
+            }
+            Node node = new Node(vector, level);
+            for (int layer = 0; layer <= level; layer++) {
+                int[] links = new int[in.readInt()];
+                for (int i = 0; i < links.length; i++) {
+                    links[i] = in.readInt();
+                }
+                node.links.set(layer, links);
+            }
+            nodes[id] = node;
+        }
+        index.nodes = nodes;
+        index.size = count;
+        if (entryId >= 0) {
+            index.entryPoint = new EntryPoint(entryId, nodes[entryId].level);
+        }
+        return index;
+    }
+
+    // ---- graph internals ----
+
+    private int allocate(Node node) {
+        synchronized (growLock) {
+            int id = size;
+            if (id == nodes.length) {
+                nodes = Arrays.copyOf(nodes, id + (id >> 1));
+            }
+            nodes[id] = node;
+            size = id + 1;
+            return id;
+        }
+    }
+
+    /**
+     * Ids are only reachable once their node was stored, and the array is only replaced by a copy
+     * taken under growLock, so re-reading the volatile array always finds the node
+     */
+    private Node node(int id) {
+        return nodes[id];
+    }
+
+    private int randomLevel() {
+        double uniform = 1.0 - ThreadLocalRandom.current().nextDouble();
+        return (int) (-Math.log(uniform) * levelMultiplier);
+    }
+
+    /**
+     * Add links to a node's list on one layer, keeping only its closest maxConnections links
+     */
+    private void mergeLinks(Node target, int layer, int[] additions, int maxConnections) {
+        synchronized (target) {
+            int[] links = target.links.get(layer);
+            int[] merged = Arrays.copyOf(links, links.length + additions.length);
+            int count = links.length;
+            for (int addition : additions) {
+                if (!contains(links, addition)) {
+                    merged[count++] = addition;
+                }
+            }
+            if (count <= maxConnections) {
+                target.links.set(layer, Arrays.copyOf(merged, count));
+                return;
+            }
+            Candidate[] candidates = new Candidate[count];
+            for (int i = 0; i < count; i++) {
+                candidates[i] = new Candidate(merged[i], similarity(target.vector, node(merged[i]).vector));
+            }
+            Arrays.sort(candidates);
+            target.links.set(layer, closest(candidates, maxConnections, -1));
+        }
+    }
+
+    private static boolean contains(int[] ids, int id) {
+        for (int existing : ids) {
+            if (existing == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int greedyClosest(float[] query, int start, int layer) {
+        int current = start;
+        float best = similarity(query, node(current).vector);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbour : node(current).links(layer)) {
+                float score = similarity(query, node(neighbour).vector);
+                if (score > best) {
+                    best = score;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one layer; returns up to ef candidates, best first
+     */
+    private Candidate[] searchLayer(float[] query, int start, int ef, int layer) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>();
+        PriorityQueue<Candidate> results = new PriorityQueue<>(ef + 1, (a, b) -> b.compareTo(a));
+
+        Candidate first = new Candidate(start, similarity(query, node(start).vector));
+        visited.set(start);
+        frontier.add(first);
+        results.add(first);
+
+        while (!frontier.isEmpty()) {
+            Candidate closest = frontier.poll();
+            if (results.size() >= ef && closest.score < results.peek().score) {
+                break;
+            }
+            for (int neighbour : node(closest.id).links(layer)) {
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float score = similarity(query, node(neighbour).vector);
+                if (results.size() < ef || score > results.peek().score) {
+                    Candidate candidate = new Candidate(neighbour, score);
+                    frontier.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        Candidate[] sorted = results.toArray(new Candidate[0]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static int[] closest(Candidate[] sortedCandidates, int count, int excludedId) {
+        int[] ids = new int[Math.min(count, sortedCandidates.length)];
+        int size = 0;
+        for (int i = 0; i < sortedCandidates.length && size < ids.length; i++) {
+            if (sortedCandidates[i].id != excludedId) {
+                ids[size++] = sortedCandidates[i].id;
+            }
+        }
+        return size == ids.length ? ids : Arrays.copyOf(ids, size);
+    }
+
+    private static float similarity(float[] a, float[] b) {
+        return VectorKernels.dot(a, 0, b, 0, a.length);
+    }
+
+    private static float[] normalizedCopy(float[] vector) {
+        float[] copy = vector.clone();
+        float norm = VectorKernels.norm(copy);
+        if (norm > 0.0f) {
+            VectorKernels.divide(copy, norm);
+        }
+        return copy;
+    }
+
+    private static final class Node {
+        private static final int[] NO_LINKS = new int[0];
+
+        final float[] vector;
+        final int level;
+        final AtomicReferenceArray<int[]> links;
+
+        Node(float[] vector, int level) {
+            this.vector = vector;
+            this.level = level;
+            this.links = new AtomicReferenceArray<>(level + 1);
+            for (int layer = 0; layer <= level; layer++) {
+                links.set(layer, NO_LINKS);
+            }
+        }
+
+        int[] links(int layer) {
+            return layer <= level ? links.get(layer) : NO_LINKS;
+        }
+    }
+
+    private record EntryPoint(int id, int level) {
+    }
+
+    /**
+     * Orders by descending score, then ascending id
+     */
+    private record Candidate(int id, float score) implements Comparable<Candidate> {
+        @Override
+        public int compareTo(Candidate other) {
+            int byScore = Float.compare(other.score, score);
+            return byScore != 0 ? byScore : Integer.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.NLP2SparkSQL.project.utils;
+
+import java.util.SplittableRandom;
+
+/**
+ * Locality-sensitive hash of an embedding: one bit per random hyperplane, set when the embedding
+ * lies on its positive side.
+ *
+ * Two embeddings at angle θ agree on each bit with probability 1 - θ/π, so identical embeddings
+ * always share a hash and near-identical ones usually do. Fewer bits make collisions of nearby
+ * embeddings more likely, and of unrelated ones too. The planes come from a fixed seed, so hashes
+ * are stable across restarts.
+ */
+public final class HyperplaneLsh {
+
+    private final int dimension;
+    private final int bits;
+    private final float[] planes;
+
+    public HyperplaneLsh(int dimension, int bits, long seed) {
+        if (bits < 1 || bits > Long.SIZE) {
+            throw new IllegalArgumentException("bits must be between 1 and 64");
+        }
+        this.dimension = dimension;
+        this.bits = bits;
+        this.planes = new float[bits * dimension];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < planes.length; i++) {
+            planes[i] = (float) gaussian(random);
+        }
+    }
+
+    public long hash(float[] embedding) {
+        if (embedding.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + ", got " + embedding.length);
+        }
+        long hash = 0;
+        for (int bit = 0; bit < bits; bit++) {
+            if (VectorKernels.dot(planes, bit * dimension, embedding, 0, dimension) >= 0) {
+                hash |= 1L << bit;
+            }
+        }
+        return hash;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int bits() {
+        return bits;
+    }
+
+    // Box-Muller; SplittableRandom has no nextGaussian on Java 17
+    private static double gaussian(SplittableRandom random) {
+        double u = 1.0 - random.nextDouble();
+        return Math.sqrt(-2.0 * Math.log(u)) * Math.cos(2.0 * Math.PI * random.nextDouble());
+    }
+}
@@ -0,0 +1,47 @@
+package com.NLP2SparkSQL.project.utils;
+
+import java.util.Arrays;
+
+/**
+ * Latencies of the most recent calls, for percentiles over a sliding window.
+ *
+ * Keeps a ring of the last capacity samples; a percentile is read by sorting a copy, which is cheap
+ * for the few hundred samples this is meant for.
+ */
+public final class LatencyWindow {
+
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    public LatencyWindow(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.samples = new long[capacity];
+    }
+
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+
+    /**
+     * @param percentile between 0 and 1, e.g. 0.95
+     * @return the latency in nanoseconds at that percentile, or -1 while fewer than minSamples were recorded
+     */
+    public synchronized long percentileNanos(double percentile, int minSamples) {
+        if (count == 0 || count < minSamples) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+}
@@ -0,0 +1,149 @@
+package com.NLP2SparkSQL.project.utils;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntPredicate;
+
+/**
+ * Append-only file of fixed-dimension float vectors, memory-mapped so rows are read straight from
+ * the page cache without a heap copy of the whole matrix.
+ *
+ * Layout: a 16-byte header (magic, format version, dimension, row count) followed by the rows, each
+ * dimension little-endian floats. The mapping grows by doubling as rows are appended. One thread
+ * appends at a time; reads and searches may run concurrently with it and see the rows published
+ * before they started.
+ */
+public final class MappedVectorFile implements AutoCloseable {
+
+    private static final int MAGIC = 0x51564543; // "QVEC"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final FileChannel channel;
+    private final int dimension;
+    private volatile MappedByteBuffer mapping;
+    private volatile FloatBuffer rows;
+    private volatile int size;
+    private int capacity;
+
+    private MappedVectorFile(FileChannel channel, int dimension, int size, int capacity) throws IOException {
+        this.channel = channel;
+        this.dimension = dimension;
+        this.size = size;
+        map(capacity);
+    }
+
+    /**
+     * Open the file at path, creating it when it does not exist
+     *
+     * @throws IOException also when an existing file is not a vector file of this dimension
+     */
+    public static MappedVectorFile open(Path path, int dimension) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                MappedVectorFile file = new MappedVectorFile(channel, dimension, 0, INITIAL_CAPACITY);
+                file.mapping.putInt(0, MAGIC).putInt(4, FORMAT_VERSION).putInt(8, dimension).putInt(12, 0);
+                return file;
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("Not a vector file: " + path);
+            }
+            if (header.getInt(8) != dimension) {
+                throw new IOException("Vector file " + path + " has dimension " + header.getInt(8) + ", expected " + dimension);
+            }
+            int size = header.getInt(12);
+            long rowBytes = (long) dimension * Float.BYTES;
+            int capacity = (int) Math.max(INITIAL_CAPACITY, (channel.size() - HEADER_BYTES) / rowBytes);
+            return new MappedVectorFile(channel, dimension, Math.min(size, capacity), capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the row index of the appended vector
+     */
+    public synchronized int append(float[] vector) throws IOException {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + ", got " + vector.length);
+        }
+        int row = size;
+        if (row == capacity) {
+            map(capacity * 2);
+        }
+        rows.put(row * dimension, vector);
+        mapping.putInt(12, row + 1);
+        size = row + 1;
+        return row;
+    }
+
+    public void read(int row, float[] out) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        rows.get(row * dimension, out, 0, dimension);
+    }
+
+    /**
+     * Brute-force cosine scan over the rows accepted by include
+     */
+    public SimilarityHits search(float[] query, int k, IntPredicate include) {
+        int count = size;
+        FloatBuffer snapshot = rows;
+        float queryNorm = VectorKernels.norm(query);
+        if (count == 0 || k < 1 || queryNorm == 0) {
+            return SimilarityHits.EMPTY;
+        }
+        TopKHeap heap = new TopKHeap(Math.min(k, count));
+        float[] row = new float[dimension];
+        for (int i = 0; i < count; i++) {
+            if (!include.test(i)) {
+                continue;
+            }
+            snapshot.get(i * dimension, row, 0, dimension);
+            float rowNorm = VectorKernels.norm(row);
+            if (rowNorm > 0) {
+                heap.offer(i, VectorKernels.dot(query, row) / (queryNorm * rowNorm));
+            }
+        }
+        return heap.toHits();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public synchronized void force() {
+        mapping.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mapping.force();
+        channel.close();
+    }
+
+    private void map(int newCapacity) throws IOException {
+        long bytes = HEADER_BYTES + (long) newCapacity * dimension * Float.BYTES;
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        rows = mapped.slice(HEADER_BYTES, mapped.capacity() - HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        mapping = mapped;
+        capacity = newCapacity;
+    }
+}
@@ -0,0 +1,58 @@
+package com.NLP2SparkSQL.project.utils;
+
+import java.util.Arrays;
+
+/**
+ * Maximal marginal relevance: picks candidates one at a time, each maximising
+ * {@code lambda * relevance - (1 - lambda) * (highest cosine similarity to an already picked candidate)},
+ * so near-duplicates of a picked candidate lose to slightly less relevant but different ones.
+ *
+ * lambda = 1 is plain relevance order; lower values favour diversity.
+ */
+public final class MaximalMarginalRelevance {
+
+    private MaximalMarginalRelevance() {
+    }
+
+    /**
+     * @param relevance similarity of each candidate to the query
+     * @param vectors   embedding of each candidate, compared with cosine similarity
+     * @return indices of at most k candidates, in the order they were picked
+     */
+    public static int[] select(float[] relevance, float[][] vectors, int k, double lambda) {
+        int count = relevance.length;
+        if (vectors.length != count) {
+            throw new IllegalArgumentException(count + " relevance scores for " + vectors.length + " vectors");
+        }
+        int picks = Math.max(0, Math.min(k, count));
+        int[] selected = new int[picks];
+        boolean[] taken = new boolean[count];
+        // Highest similarity of each candidate to anything picked so far
+        float[] redundancy = new float[count];
+        Arrays.fill(redundancy, Float.NEGATIVE_INFINITY);
+
+        for (int pick = 0; pick < picks; pick++) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < count; i++) {
+                if (taken[i]) {
+                    continue;
+                }
+                double penalty = pick == 0 ? 0 : redundancy[i];
+                double score = lambda * relevance[i] - (1 - lambda) * penalty;
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            selected[pick] = best;
+            taken[best] = true;
+            for (int i = 0; i < count; i++) {
+                if (!taken[i]) {
+                    redundancy[i] = Math.max(redundancy[i], VectorKernels.cosine(vectors[i], vectors[best]));
+                }
+            }
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,170 @@
+package com.NLP2SparkSQL.project.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Groups requests that arrive close together into one batch call.
+ *
+ * A dispatcher thread waits for a first request, then keeps collecting until the window has elapsed
+ * since that request or maxBatchSize requests are queued, and hands the batch to the batch function.
+ * Its results are matched back to the callers by position. Callers that gave up waiting are dropped
+ * from batches that have not been sent yet.
+ *
+ * Metrics, under the given name: .size (requests per batch), .wait (time a request spent queued),
+ * .timeouts (callers that gave up).
+ */
+@Slf4j
+public final class MicroBatcher<I, O> implements AutoCloseable {
+
+    private final Duration window;
+    private final int maxBatchSize;
+    private final Function<List<I>, CompletableFuture<List<O>>> batchFunction;
+    private final BlockingQueue<Pending<I, O>> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final DistributionSummary batchSizes;
+    private final Timer waitTimes;
+    private final Counter timeouts;
+
+    /**
+     * @param batchFunction sends a batch and completes with one result per input, in input order
+     */
+    public MicroBatcher(String name, Duration window, int maxBatchSize,
+                        Function<List<I>, CompletableFuture<List<O>>> batchFunction, MeterRegistry registry) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.batchFunction = batchFunction;
+        this.batchSizes = DistributionSummary.builder(name + ".size")
+                .description("Requests sent per batch")
+                .register(registry);
+        this.waitTimes = Timer.builder(name + ".wait")
+                .description("Time a request waited in the queue before its batch was sent")
+                .register(registry);
+        this.timeouts = Counter.builder(name + ".timeouts")
+                .description("Callers that stopped waiting for their result")
+                .register(registry);
+        this.dispatcher = new Thread(this::dispatchLoop, name + "-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Queue one request; the future completes when its batch does
+     */
+    public CompletableFuture<O> submit(I input) {
+        CompletableFuture<O> result = new CompletableFuture<>();
+        if (!running) {
+            result.completeExceptionally(new IllegalStateException("Batcher is closed"));
+            return result;
+        }
+        queue.add(new Pending<>(input, result, System.nanoTime()));
+        return result;
+    }
+
+    /**
+     * Queue one request whose future fails with a TimeoutException if no result arrives within timeout
+     */
+    public CompletableFuture<O> submit(I input, Duration timeout) {
+        CompletableFuture<O> result = submit(input);
+        CompletableFuture.delayedExecutor(timeout.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+            if (result.completeExceptionally(new TimeoutException("No batched result within " + timeout))) {
+                timeouts.increment();
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        dispatcher.interrupt();
+        Pending<I, O> pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result.completeExceptionally(new IllegalStateException("Batcher is closed"));
+        }
+    }
+
+    private void dispatchLoop() {
+        long windowNanos = window.toNanos();
+        while (running) {
+            try {
+                Pending<I, O> first = queue.take();
+                List<Pending<I, O>> batch = new ArrayList<>(maxBatchSize);
+                batch.add(first);
+                long deadline = first.enqueuedNanos + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending<I, O> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Micro-batch dispatch failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void send(List<Pending<I, O>> collected) {
+        long now = System.nanoTime();
+        List<Pending<I, O>> batch = new ArrayList<>(collected.size());
+        List<I> inputs = new ArrayList<>(collected.size());
+        for (Pending<I, O> pending : collected) {
+            if (!pending.result.isDone()) {
+                batch.add(pending);
+                inputs.add(pending.input);
+                waitTimes.record(now - pending.enqueuedNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        batchSizes.record(batch.size());
+
+        CompletableFuture<List<O>> results;
+        try {
+            results = batchFunction.apply(inputs);
+        } catch (RuntimeException e) {
+            results = CompletableFuture.failedFuture(e);
+        }
+        results.whenComplete((outputs, error) -> {
+            for (int i = 0; i < batch.size(); i++) {
+                CompletableFuture<O> result = batch.get(i).result;
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else if (outputs == null || i >= outputs.size()) {
+                    result.completeExceptionally(new IllegalStateException(
+                            "Batch returned " + (outputs == null ? 0 : outputs.size()) + " results for " + batch.size() + " inputs"));
+                } else {
+                    result.complete(outputs.get(i));
+                }
+            }
+        });
+    }
+
+    private record Pending<I, O>(I input, CompletableFuture<O> result, long enqueuedNanos) {
+    }
+}
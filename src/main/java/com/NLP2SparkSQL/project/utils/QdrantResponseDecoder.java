@@ -0,0 +1,166 @@
+package com.NLP2SparkSQL.project.utils;
+
+import com.NLP2SparkSQL.project.dto.QdrantSearchHit;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Streaming decoder of Qdrant /points/search responses.
+ *
+ * Walks the JSON tokens of {"result": [{"score": ..., "payload": {...}}, ...]} and keeps only the
+ * score, the "question"/"sql" payload fields and, for {@link #validHits} and
+ * {@link #validHitsPerSearch}, an unnamed dense "vector" when the search returned one. Ids and other
+ * payload fields are skipped without being materialized, and {@link #firstValidHit} stops at the
+ * first hit that has both a question and SQL.
+ */
+public final class QdrantResponseDecoder {
+
+    private static final JsonFactory JSON = JsonFactory.builder()
+            .enable(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS)
+            .build();
+
+    private QdrantResponseDecoder() {
+    }
+
+    /**
+     * First hit, in response order (best score first), with a non-blank question and SQL
+     */
+    public static Optional<QdrantSearchHit> firstValidHit(byte[] json) throws IOException {
+        try (JsonParser parser = JSON.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Qdrant response is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("result".equals(field) && value == JsonToken.START_ARRAY) {
+                    return firstValidHit(parser);
+                }
+                parser.skipChildren();
+            }
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Every hit with a non-blank question and SQL, in response order
+     */
+    public static List<QdrantSearchHit> validHits(byte[] json) throws IOException {
+        List<QdrantSearchHit> hits = new ArrayList<>();
+        try (JsonParser parser = JSON.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Qdrant response is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("result".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        QdrantSearchHit hit = readHit(parser, true);
+                        if (hit.isValid()) {
+                            hits.add(hit);
+                        }
+                    }
+                    return hits;
+                }
+                parser.skipChildren();
+            }
+            return hits;
+        }
+    }
+
+    /**
+     * Every valid hit of every search of a /points/search/batch response, in request order
+     */
+    public static List<List<QdrantSearchHit>> validHitsPerSearch(byte[] json) throws IOException {
+        List<List<QdrantSearchHit>> searches = new ArrayList<>();
+        try (JsonParser parser = JSON.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Qdrant response is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("result".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_ARRAY) {
+                        List<QdrantSearchHit> hits = new ArrayList<>();
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            QdrantSearchHit hit = readHit(parser, true);
+                            if (hit.isValid()) {
+                                hits.add(hit);
+                            }
+                        }
+                        searches.add(hits);
+                    }
+                    return searches;
+                }
+                parser.skipChildren();
+            }
+            return searches;
+        }
+    }
+
+    /**
+     * Reads hits until a valid one or the end of the array; the parser is left after that hit
+     */
+    private static Optional<QdrantSearchHit> firstValidHit(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            QdrantSearchHit hit = readHit(parser, false);
+            if (hit.isValid()) {
+                return Optional.of(hit);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static QdrantSearchHit readHit(JsonParser parser, boolean withVector) throws IOException {
+        double score = 0.0;
+        String question = "";
+        String sql = "";
+        float[] vector = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("score".equals(field) && value.isNumeric()) {
+                score = parser.getDoubleValue();
+            } else if ("payload".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String key = parser.currentName();
+                    JsonToken payloadValue = parser.nextToken();
+                    if ("question".equals(key) && payloadValue.isScalarValue()) {
+                        question = parser.getValueAsString("").trim();
+                    } else if ("sql".equals(key) && payloadValue.isScalarValue()) {
+                        sql = parser.getValueAsString("").trim();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else if (withVector && "vector".equals(field) && value == JsonToken.START_ARRAY) {
+                vector = readVector(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new QdrantSearchHit(score, question, sql, vector);
+    }
+
+    private static float[] readVector(JsonParser parser) throws IOException {
+        float[] vector = new float[16];
+        int size = 0;
+        while (parser.nextToken().isNumeric()) {
+            if (size == vector.length) {
+                vector = Arrays.copyOf(vector, size * 2);
+            }
+            vector[size++] = parser.getFloatValue();
+        }
+        return Arrays.copyOf(vector, size);
+    }
+}
@@ -0,0 +1,230 @@
+package com.NLP2SparkSQL.project.utils;
+
+import java.util.Arrays;
+
+/**
+ * Compact in-memory copy of embeddings for large local similarity searches.
+ *
+ * Every row is stored twice, in compressed form:
+ * - a 1-bit code (sign of each dimension, 48 bytes for 384 dimensions), compared by Hamming distance
+ * - a symmetric int8 code with one float scale (388 bytes for 384 dimensions)
+ *
+ * {@link #search} is two-stage: the binary codes pick the closest candidates by Hamming distance,
+ * which are then rescored with the exact float vectors when an {@link EmbeddingMatrix} is attached,
+ * or with the int8 codes against the float query otherwise.
+ *
+ * Rows are appended by a single writer; searches may run concurrently with each other.
+ */
+public final class QuantizedEmbeddings {
+
+    private final int dimension;
+    private final int words;
+    private long[] bits;
+    private byte[] codes;
+    private float[] scales;
+    private float[] inverseNorms;
+    private int rows;
+    private EmbeddingMatrix exact;
+
+    public QuantizedEmbeddings(int dimension, int initialCapacity) {
+        this.dimension = dimension;
+        this.words = (dimension + 63) >>> 6;
+        int capacity = Math.max(1, initialCapacity);
+        this.bits = new long[capacity * words];
+        this.codes = new byte[capacity * dimension];
+        this.scales = new float[capacity];
+        this.inverseNorms = new float[capacity];
+    }
+
+    /**
+     * Quantize every row of a matrix; when keepExact is set the matrix is kept for float rescoring,
+     * and vectors passed to {@link #add(float[])} afterwards are appended to it as well
+     */
+    public static QuantizedEmbeddings of(EmbeddingMatrix matrix, boolean keepExact) {
+        QuantizedEmbeddings quantized = new QuantizedEmbeddings(matrix.dimension(), matrix.rows());
+        float[] data = matrix.data();
+        for (int row = 0; row < matrix.rows(); row++) {
+            quantized.add(data, row * matrix.dimension());
+        }
+        if (keepExact) {
+            quantized.exact = matrix;
+        }
+        return quantized;
+    }
+
+    public int add(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+        if (exact != null) {
+            exact.add(vector);
+        }
+        return add(vector, 0);
+    }
+
+    private int add(float[] source, int offset) {
+        ensureCapacity(rows + 1);
+        int row = rows++;
+
+        float maxAbs = 0.0f;
+        for (int i = 0; i < dimension; i++) {
+            maxAbs = Math.max(maxAbs, Math.abs(source[offset + i]));
+        }
+        float scale = maxAbs == 0.0f ? 0.0f : maxAbs / 127.0f;
+        float inverseScale = scale == 0.0f ? 0.0f : 1.0f / scale;
+
+        int codeOffset = row * dimension;
+        int bitOffset = row * words;
+        float squaredNorm = 0.0f;
+        for (int i = 0; i < dimension; i++) {
+            float value = source[offset + i];
+            byte code = (byte) Math.round(value * inverseScale);
+            codes[codeOffset + i] = code;
+            squaredNorm += code * code;
+            if (value > 0.0f) {
+                bits[bitOffset + (i >>> 6)] |= 1L << (i & 63);
+            }
+        }
+        scales[row] = scale;
+        float norm = (float) Math.sqrt(squaredNorm) * scale;
+        inverseNorms[row] = norm == 0.0f ? 0.0f : 1.0f / norm;
+        return row;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Bytes held per row by the binary and int8 codes
+     */
+    public int bytesPerRow() {
+        return words * Long.BYTES + dimension + 2 * Float.BYTES;
+    }
+
+    /**
+     * Two-stage search: Hamming prefilter keeping k * oversample candidates, then rescoring
+     *
+     * @param oversample how many binary candidates to rescore per requested hit
+     */
+    public SimilarityHits search(float[] query, int k, int oversample) {
+        checkQuery(query);
+        if (k <= 0 || rows == 0) {
+            return SimilarityHits.EMPTY;
+        }
+        TopKHeap candidates = hammingCandidates(query, Math.min(rows, k * Math.max(1, oversample)));
+
+        float queryNorm = VectorKernels.norm(query);
+        if (queryNorm == 0.0f) {
+            return SimilarityHits.EMPTY;
+        }
+        TopKHeap best = new TopKHeap(Math.min(k, candidates.size()));
+        for (int c = 0; c < candidates.size(); c++) {
+            int row = candidates.row(c);
+            float score = exact != null ? exact.score(query, row) : int8Score(query, queryNorm, row);
+            best.offer(row, score);
+        }
+        return best.toHits();
+    }
+
+    /**
+     * Rows closest to the query by Hamming distance of their binary codes, best first.
+     * The score is the fraction of matching bits.
+     */
+    public SimilarityHits searchBinary(float[] query, int k) {
+        checkQuery(query);
+        if (k <= 0 || rows == 0) {
+            return SimilarityHits.EMPTY;
+        }
+        return hammingCandidates(query, Math.min(rows, k)).toHits();
+    }
+
+    /**
+     * Full scan over the int8 codes, scored against the float query
+     */
+    public SimilarityHits searchInt8(float[] query, int k) {
+        checkQuery(query);
+        float queryNorm = VectorKernels.norm(query);
+        if (k <= 0 || rows == 0 || queryNorm == 0.0f) {
+            return SimilarityHits.EMPTY;
+        }
+        TopKHeap heap = new TopKHeap(Math.min(rows, k));
+        for (int row = 0; row < rows; row++) {
+            heap.offer(row, int8Score(query, queryNorm, row));
+        }
+        return heap.toHits();
+    }
+
+    /**
+     * Hamming distance between the binary codes of the query and a row
+     */
+    public int hammingDistance(float[] query, int row) {
+        return hamming(binaryCode(query), row);
+    }
+
+    private TopKHeap hammingCandidates(float[] query, int count) {
+        long[] queryBits = binaryCode(query);
+        TopKHeap heap = new TopKHeap(count);
+        float inverseDimension = 1.0f / dimension;
+        for (int row = 0; row < rows; row++) {
+            heap.offer(row, 1.0f - hamming(queryBits, row) * inverseDimension);
+        }
+        return heap;
+    }
+
+    private int hamming(long[] queryBits, int row) {
+        int offset = row * words;
+        int distance = 0;
+        for (int w = 0; w < words; w++) {
+            distance += Long.bitCount(queryBits[w] ^ bits[offset + w]);
+        }
+        return distance;
+    }
+
+    private float int8Score(float[] query, float queryNorm, int row) {
+        int offset = row * dimension;
+        // Four independent sums so the loop is not bound by the latency of one add chain
+        float s0 = 0.0f, s1 = 0.0f, s2 = 0.0f, s3 = 0.0f;
+        int i = 0;
+        for (; i + 3 < dimension; i += 4) {
+            s0 += query[i] * codes[offset + i];
+            s1 += query[i + 1] * codes[offset + i + 1];
+            s2 += query[i + 2] * codes[offset + i + 2];
+            s3 += query[i + 3] * codes[offset + i + 3];
+        }
+        for (; i < dimension; i++) {
+            s0 += query[i] * codes[offset + i];
+        }
+        return (s0 + s1 + s2 + s3) * scales[row] * inverseNorms[row] / queryNorm;
+    }
+
+    private long[] binaryCode(float[] vector) {
+        long[] code = new long[words];
+        for (int i = 0; i < dimension; i++) {
+            if (vector[i] > 0.0f) {
+                code[i >>> 6] |= 1L << (i & 63);
+            }
+        }
+        return code;
+    }
+
+    private void checkQuery(float[] query) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+    }
+
+    private void ensureCapacity(int rowCount) {
+        if (scales.length < rowCount) {
+            int capacity = Math.max(rowCount, scales.length + (scales.length >> 1));
+            bits = Arrays.copyOf(bits, capacity * words);
+            codes = Arrays.copyOf(codes, capacity * dimension);
+            scales = Arrays.copyOf(scales, capacity);
+            inverseNorms = Arrays.copyOf(inverseNorms, capacity);
+        }
+    }
+}
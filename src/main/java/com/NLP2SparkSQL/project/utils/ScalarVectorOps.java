@@ -0,0 +1,62 @@
+package com.NLP2SparkSQL.project.utils;
+
+/**
+ * Plain loops, used when the Vector API is not available
+ */
+final class ScalarVectorOps implements VectorOps {
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0.0f;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float squaredNorm(float[] a, int offset, int length) {
+        float sum = 0.0f;
+        for (int i = offset; i < offset + length; i++) {
+            sum += a[i] * a[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void addScaled(float[] acc, float[] x, float weight) {
+        for (int i = 0; i < acc.length; i++) {
+            acc[i] += x[i] * weight;
+        }
+    }
+
+    @Override
+    public void divide(float[] vector, float divisor) {
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] /= divisor;
+        }
+    }
+
+    @Override
+    public void cosineScores(float[] query, float queryNorm, float[] rows, int dimension,
+                             int firstRow, int rowCount, float[] scores) {
+        for (int r = 0; r < rowCount; r++) {
+            int offset = (firstRow + r) * dimension;
+            float dot = 0.0f;
+            float norm = 0.0f;
+            for (int i = 0; i < dimension; i++) {
+                float v = rows[offset + i];
+                dot += query[i] * v;
+                norm += v * v;
+            }
+            scores[r] = queryNorm == 0.0f || norm == 0.0f
+                    ? 0.0f
+                    : dot / (queryNorm * (float) Math.sqrt(norm));
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,108 @@
+package com.NLP2SparkSQL.project.utils;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * jdk.incubator.vector kernels using the widest float species of the CPU.
+ * Only loaded when the module is resolved (--add-modules jdk.incubator.vector).
+ */
+final class SimdVectorOps implements VectorOps {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, bOffset + i);
+            acc = va.fma(vb, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float squaredNorm(float[] a, int offset, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, offset + i);
+            acc = va.fma(va, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float v = a[offset + i];
+            sum += v * v;
+        }
+        return sum;
+    }
+
+    @Override
+    public void addScaled(float[] acc, float[] x, float weight) {
+        int i = 0;
+        int bound = SPECIES.loopBound(acc.length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, acc, i);
+            FloatVector vx = FloatVector.fromArray(SPECIES, x, i);
+            // mul + add rather than fma, so results stay bit-identical to the scalar loop
+            va.add(vx.mul(weight)).intoArray(acc, i);
+        }
+        for (; i < acc.length; i++) {
+            acc[i] += x[i] * weight;
+        }
+    }
+
+    @Override
+    public void divide(float[] vector, float divisor) {
+        int i = 0;
+        int bound = SPECIES.loopBound(vector.length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, vector, i).div(divisor).intoArray(vector, i);
+        }
+        for (; i < vector.length; i++) {
+            vector[i] /= divisor;
+        }
+    }
+
+    @Override
+    public void cosineScores(float[] query, float queryNorm, float[] rows, int dimension,
+                             int firstRow, int rowCount, float[] scores) {
+        int bound = SPECIES.loopBound(dimension);
+        for (int r = 0; r < rowCount; r++) {
+            int offset = (firstRow + r) * dimension;
+            FloatVector dotAcc = FloatVector.zero(SPECIES);
+            FloatVector normAcc = FloatVector.zero(SPECIES);
+            int i = 0;
+            for (; i < bound; i += SPECIES.length()) {
+                FloatVector vq = FloatVector.fromArray(SPECIES, query, i);
+                FloatVector vr = FloatVector.fromArray(SPECIES, rows, offset + i);
+                dotAcc = vq.fma(vr, dotAcc);
+                normAcc = vr.fma(vr, normAcc);
+            }
+            float dot = dotAcc.reduceLanes(VectorOperators.ADD);
+            float norm = normAcc.reduceLanes(VectorOperators.ADD);
+            for (; i < dimension; i++) {
+                float v = rows[offset + i];
+                dot += query[i] * v;
+                norm += v * v;
+            }
+            scores[r] = queryNorm == 0.0f || norm == 0.0f
+                    ? 0.0f
+                    : dot / (queryNorm * (float) Math.sqrt(norm));
+        }
+    }
+
+    @Override
+    public String name() {
+        return "simd-" + SPECIES.vectorBitSize();
+    }
+}
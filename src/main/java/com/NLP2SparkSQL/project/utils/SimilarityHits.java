@@ -0,0 +1,33 @@
+package com.NLP2SparkSQL.project.utils;
+
+/**
+ * Result of a top-K similarity search: row indices and cosine scores, best first
+ */
+public final class SimilarityHits {
+
+    static final SimilarityHits EMPTY = new SimilarityHits(new int[0], new float[0]);
+
+    private final int[] rows;
+    private final float[] scores;
+
+    SimilarityHits(int[] rows, float[] scores) {
+        this.rows = rows;
+        this.scores = scores;
+    }
+
+    public int size() {
+        return rows.length;
+    }
+
+    public boolean isEmpty() {
+        return rows.length == 0;
+    }
+
+    public int row(int rank) {
+        return rows[rank];
+    }
+
+    public float score(int rank) {
+        return scores[rank];
+    }
+}
@@ -0,0 +1,175 @@
+package com.NLP2SparkSQL.project.utils;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Sparse vector as (index, value) pairs sorted by ascending index with no duplicates.
+ *
+ * Produced by {@link EmbeddingUtils#embedSparse}; a question of a dozen tokens is a dozen pairs
+ * instead of {@link EmbeddingUtils#getEmbeddingDimension()} floats. The arrays returned by
+ * {@link #indices()} and {@link #values()} are the backing arrays and must not be modified.
+ */
+public final class SparseVector {
+
+    static final SparseVector EMPTY = new SparseVector(new int[0], new float[0]);
+
+    private final int[] indices;
+    private final float[] values;
+
+    SparseVector(int[] indices, float[] values) {
+        this.indices = indices;
+        this.values = values;
+    }
+
+    /**
+     * Build from unordered pairs; values of repeated indices are summed
+     */
+    public static SparseVector of(int[] indices, float[] values) {
+        if (indices.length != values.length) {
+            throw new IllegalArgumentException("Indices and values must have the same length");
+        }
+        int[] sortedIndices = indices.clone();
+        float[] sortedValues = values.clone();
+        // Insertion sort: a few dozen entries at most for a question
+        for (int i = 1; i < sortedIndices.length; i++) {
+            int index = sortedIndices[i];
+            float value = sortedValues[i];
+            int j = i - 1;
+            while (j >= 0 && sortedIndices[j] > index) {
+                sortedIndices[j + 1] = sortedIndices[j];
+                sortedValues[j + 1] = sortedValues[j];
+                j--;
+            }
+            sortedIndices[j + 1] = index;
+            sortedValues[j + 1] = value;
+        }
+
+        int size = 0;
+        for (int i = 0; i < sortedIndices.length; i++) {
+            if (sortedIndices[i] < 0) {
+                throw new IllegalArgumentException("Negative index " + sortedIndices[i]);
+            }
+            if (size > 0 && sortedIndices[size - 1] == sortedIndices[i]) {
+                sortedValues[size - 1] += sortedValues[i];
+            } else {
+                sortedIndices[size] = sortedIndices[i];
+                sortedValues[size] = sortedValues[i];
+                size++;
+            }
+        }
+        return new SparseVector(Arrays.copyOf(sortedIndices, size), Arrays.copyOf(sortedValues, size));
+    }
+
+    /**
+     * Number of stored (non-zero) entries
+     */
+    public int size() {
+        return indices.length;
+    }
+
+    public int[] indices() {
+        return indices;
+    }
+
+    public float[] values() {
+        return values;
+    }
+
+    /**
+     * Same entries scaled to unit length; the zero vector is returned as it is
+     */
+    SparseVector normalized() {
+        float norm = norm();
+        if (norm == 0.0f) {
+            return this;
+        }
+        float[] scaled = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            scaled[i] = values[i] / norm;
+        }
+        return new SparseVector(indices, scaled);
+    }
+
+    public float norm() {
+        float sum = 0.0f;
+        for (float value : values) {
+            sum += value * value;
+        }
+        return (float) Math.sqrt(sum);
+    }
+
+    /**
+     * Dot product with a dense vector whose dimension covers every stored index
+     */
+    public float dot(float[] dense) {
+        if (indices.length > 0 && indices[indices.length - 1] >= dense.length) {
+            throw new IllegalArgumentException("Index " + indices[indices.length - 1]
+                    + " out of dense dimension " + dense.length);
+        }
+        float sum = 0.0f;
+        for (int i = 0; i < indices.length; i++) {
+            sum += values[i] * dense[indices[i]];
+        }
+        return sum;
+    }
+
+    /**
+     * Dot product with another sparse vector, merging the two sorted index lists
+     */
+    public float dot(SparseVector other) {
+        float sum = 0.0f;
+        int i = 0;
+        int j = 0;
+        while (i < indices.length && j < other.indices.length) {
+            int a = indices[i];
+            int b = other.indices[j];
+            if (a == b) {
+                sum += values[i++] * other.values[j++];
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Cosine similarity with a dense vector, 0 if either is the zero vector
+     */
+    public float cosine(float[] dense) {
+        float normA = norm();
+        float normB = VectorKernels.norm(dense);
+        return normA == 0.0f || normB == 0.0f ? 0.0f : dot(dense) / (normA * normB);
+    }
+
+    /**
+     * Cosine similarity with another sparse vector, 0 if either is the zero vector
+     */
+    public float cosine(SparseVector other) {
+        float normA = norm();
+        float normB = other.norm();
+        return normA == 0.0f || normB == 0.0f ? 0.0f : dot(other) / (normA * normB);
+    }
+
+    public float[] toDense(int dimension) {
+        float[] dense = new float[dimension];
+        for (int i = 0; i < indices.length; i++) {
+            dense[indices[i]] = values[i];
+        }
+        return dense;
+    }
+
+    /**
+     * Body of a Qdrant sparse vector: {"indices": [...], "values": [...]}
+     */
+    public Map<String, Object> toQdrant() {
+        return Map.of("indices", indices, "values", values);
+    }
+
+    @Override
+    public String toString() {
+        return "SparseVector{indices=" + Arrays.toString(indices) + ", values=" + Arrays.toString(values) + "}";
+    }
+}
@@ -0,0 +1,174 @@
+package com.NLP2SparkSQL.project.utils;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Finds the end of the first SQL statement in text that arrives in pieces, such as streamed LLM
+ * tokens. The statement ends at the first ';' after a statement keyword (SELECT, WITH, ...) that is
+ * outside string literals, quoted identifiers, comments and &lt;think&gt; blocks, with every
+ * parenthesis opened since the keyword closed again. Markdown code fences are skipped.
+ *
+ * Each character is looked at once. When a piece ends in what may be the start of a longer marker
+ * ("-" of "--", "&lt;thi" of "&lt;think&gt;"), scanning resumes there once the next piece arrives.
+ * Not thread-safe; one instance per stream.
+ */
+public final class SqlStatementBoundary {
+
+    private static final Set<String> STATEMENT_KEYWORDS = Set.of(
+            "SELECT", "WITH", "INSERT", "UPDATE", "DELETE", "CREATE", "DROP", "ALTER");
+    private static final String THINK_OPEN = "<think>";
+    private static final String THINK_CLOSE = "</think>";
+    private static final String FENCE = "```";
+
+    private enum State { CODE, THINK, SINGLE_QUOTE, DOUBLE_QUOTE, BACKTICK, LINE_COMMENT, BLOCK_COMMENT }
+
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder word = new StringBuilder();
+    private State state = State.CODE;
+    private int position;
+    private int depth;
+    private boolean started;
+    private int end = -1;
+
+    /**
+     * Add the next piece of text
+     *
+     * @return how many characters of this piece belong to the statement once its ';' has been
+     *         seen in it, otherwise -1; after that every piece returns 0
+     */
+    public int append(String piece) {
+        if (end >= 0) {
+            return 0;
+        }
+        int offset = text.length();
+        text.append(piece);
+        scan();
+        return end >= 0 ? end - offset : -1;
+    }
+
+    public boolean isComplete() {
+        return end >= 0;
+    }
+
+    /**
+     * Everything appended so far, cut after the terminating ';' once there is one
+     */
+    public String text() {
+        return end >= 0 ? text.substring(0, end) : text.toString();
+    }
+
+    private void scan() {
+        while (position < text.length()) {
+            char c = text.charAt(position);
+            int advance = switch (state) {
+                case CODE -> code(c);
+                case THINK -> closing(THINK_CLOSE, State.CODE);
+                case SINGLE_QUOTE -> quoted(c, '\'');
+                case DOUBLE_QUOTE -> quoted(c, '"');
+                case BACKTICK -> c == '`' ? enter(State.CODE) : 1;
+                case LINE_COMMENT -> c == '\n' || c == '\r' ? enter(State.CODE) : 1;
+                case BLOCK_COMMENT -> closing("*/", State.CODE);
+            };
+            if (advance == 0) {
+                // The rest may be the start of a marker; wait for more text
+                return;
+            }
+            position += advance;
+            if (end >= 0) {
+                return;
+            }
+        }
+    }
+
+    private int code(char c) {
+        if (Character.isLetter(c) || c == '_') {
+            word.append(c);
+            return 1;
+        }
+        endWord();
+        int marker;
+        if ((marker = marker(THINK_OPEN)) != 1) {
+            return marker == 0 ? 0 : enter(State.THINK, THINK_OPEN.length());
+        }
+        if ((marker = marker(FENCE)) != 1) {
+            return marker == 0 ? 0 : FENCE.length();
+        }
+        if ((marker = marker("--")) != 1) {
+            return marker == 0 ? 0 : enter(State.LINE_COMMENT, 2);
+        }
+        if ((marker = marker("/*")) != 1) {
+            return marker == 0 ? 0 : enter(State.BLOCK_COMMENT, 2);
+        }
+        if (!started) {
+            // Prose before the statement: "Here's" must not open a string literal
+            return 1;
+        }
+        switch (c) {
+            case '\'' -> state = State.SINGLE_QUOTE;
+            case '"' -> state = State.DOUBLE_QUOTE;
+            case '`' -> state = State.BACKTICK;
+            case '(' -> depth++;
+            case ')' -> depth--;
+            case ';' -> {
+                if (depth == 0) {
+                    end = position + 1;
+                }
+            }
+            default -> {
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * A statement keyword starts the statement; parentheses before it (prose) do not count
+     */
+    private void endWord() {
+        if (word.isEmpty()) {
+            return;
+        }
+        if (!started && STATEMENT_KEYWORDS.contains(word.toString().toUpperCase(Locale.ROOT))) {
+            started = true;
+            depth = 0;
+        }
+        word.setLength(0);
+    }
+
+    /**
+     * @return the marker's length if it starts at the current position, 0 if the text ends in a
+     *         prefix of it, 1 otherwise
+     */
+    private int marker(String marker) {
+        if (Character.toLowerCase(text.charAt(position)) != marker.charAt(0)) {
+            return 1;
+        }
+        int available = Math.min(marker.length(), text.length() - position);
+        if (!text.substring(position, position + available).equalsIgnoreCase(marker.substring(0, available))) {
+            return 1;
+        }
+        return available == marker.length() ? marker.length() : 0;
+    }
+
+    private int closing(String marker, State next) {
+        int found = marker(marker);
+        return found == 1 ? 1 : found == 0 ? 0 : enter(next, marker.length());
+    }
+
+    private int quoted(char c, char quote) {
+        if (c == '\\') {
+            // Spark string literals allow backslash escapes
+            return position + 1 < text.length() ? 2 : 0;
+        }
+        return c == quote ? enter(State.CODE) : 1;
+    }
+
+    private int enter(State next) {
+        return enter(next, 1);
+    }
+
+    private int enter(State next, int length) {
+        state = next;
+        return length;
+    }
+}
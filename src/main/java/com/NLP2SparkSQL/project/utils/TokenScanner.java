@@ -0,0 +1,325 @@
+package com.NLP2SparkSQL.project.utils;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Single-pass tokenizer used by {@link EmbeddingUtils}. In one scan it lower-cases the text,
+ * applies the question phrase rewrites with regex word-boundary semantics, splits on
+ * anything but [a-z0-9] and drops single characters and stop words, without building
+ * intermediate strings or compiling patterns.
+ *
+ * Tokens are written into reusable buffers owned by the scanner, so one instance must
+ * only be used by one thread at a time.
+ */
+final class TokenScanner {
+
+    // Common stop words to filter out
+    static final Set<String> STOP_WORDS = Set.of(
+        "the", "is", "are", "was", "were", "be", "been", "being",
+        "have", "has", "had", "do", "does", "did", "will", "would",
+        "could", "should", "may", "might", "must", "can", "a", "an", "to"
+    );
+
+    // Phrase rewrites, applied on whole words separated by exactly one space
+    private static final char[][][] PHRASE_FROM = {
+        words("which"),
+        words("associated", "with"),
+        words("have", "had"),
+        words("at", "least", "one")
+    };
+    private static final char[][][] PHRASE_TO = {
+        words("what"),
+        words("related", "to"),
+        words("have"),
+        words("one", "or", "more")
+    };
+
+    private static final char[][] STOP_WORD_CHARS = STOP_WORDS.stream()
+            .map(String::toCharArray)
+            .toArray(char[][]::new);
+
+    private static final int BOUNDARY_BEFORE = 1;
+    private static final int BOUNDARY_AFTER = 2;
+
+    // Lower-cased input, followed by the characters of any rewritten words
+    private char[] chars = new char[256];
+    private int textLength;
+    private int charsUsed;
+
+    // Maximal [a-z0-9] runs of the lower-cased input
+    private int[] runStart = new int[32];
+    private int[] runLength = new int[32];
+    private int[] runFlags = new int[32];
+    private int runCount;
+
+    // Tokens kept after rewrites and filtering
+    private int[] tokenStart = new int[32];
+    private int[] tokenLength = new int[32];
+    private int[] tokenHash = new int[32];
+    private int tokenCount;
+
+    /**
+     * Tokenize the given text, replacing the tokens of the previous call
+     */
+    void scan(CharSequence text) {
+        lowerCase(text);
+        findRuns();
+
+        tokenCount = 0;
+        int run = 0;
+        while (run < runCount) {
+            int rule = matchPhrase(run);
+            if (rule >= 0) {
+                for (char[] word : PHRASE_TO[rule]) {
+                    emit(append(word), word.length);
+                }
+                run += PHRASE_FROM[rule].length;
+            } else {
+                emit(runStart[run], runLength[run]);
+                run++;
+            }
+        }
+    }
+
+    int tokenCount() {
+        return tokenCount;
+    }
+
+    char[] chars() {
+        return chars;
+    }
+
+    int tokenStart(int token) {
+        return tokenStart[token];
+    }
+
+    int tokenLength(int token) {
+        return tokenLength[token];
+    }
+
+    /**
+     * Hash of a token, equal to String.hashCode() of the same characters
+     */
+    int tokenHash(int token) {
+        return tokenHash[token];
+    }
+
+    String token(int token) {
+        return new String(chars, tokenStart[token], tokenLength[token]);
+    }
+
+    boolean tokenEquals(int token, String value) {
+        int length = tokenLength[token];
+        if (value.length() != length) {
+            return false;
+        }
+        int start = tokenStart[token];
+        for (int i = 0; i < length; i++) {
+            if (chars[start + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same result as String.toLowerCase() for a non-Turkic default locale
+     */
+    private void lowerCase(CharSequence text) {
+        int length = text.length();
+        ensureChars(length * 2);
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\u0130') {
+                // LATIN CAPITAL LETTER I WITH DOT ABOVE lowers to "i" + COMBINING DOT ABOVE
+                chars[n++] = 'i';
+                chars[n++] = '\u0307';
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int lower = Character.toLowerCase(Character.toCodePoint(c, text.charAt(i + 1)));
+                chars[n++] = Character.highSurrogate(lower);
+                chars[n++] = Character.lowSurrogate(lower);
+                i++;
+            } else {
+                chars[n++] = Character.toLowerCase(c);
+            }
+        }
+        textLength = n;
+        charsUsed = n;
+    }
+
+    private void findRuns() {
+        runCount = 0;
+        int i = 0;
+        while (i < textLength) {
+            if (!isTokenChar(chars[i])) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < textLength && isTokenChar(chars[i])) {
+                i++;
+            }
+            ensureRuns(runCount + 1);
+            runStart[runCount] = start;
+            runLength[runCount] = i - start;
+            runFlags[runCount] = (isWordBoundaryBefore(start) ? BOUNDARY_BEFORE : 0)
+                    | (isWordBoundaryAfter(i) ? BOUNDARY_AFTER : 0);
+            runCount++;
+        }
+    }
+
+    private int matchPhrase(int run) {
+        for (int rule = 0; rule < PHRASE_FROM.length; rule++) {
+            char[][] phrase = PHRASE_FROM[rule];
+            int last = run + phrase.length - 1;
+            if (last >= runCount
+                    || (runFlags[run] & BOUNDARY_BEFORE) == 0
+                    || (runFlags[last] & BOUNDARY_AFTER) == 0) {
+                continue;
+            }
+            boolean matches = true;
+            for (int w = 0; w < phrase.length && matches; w++) {
+                int r = run + w;
+                matches = runEquals(r, phrase[w])
+                        && (w == 0 || isSingleSpaceGap(r - 1, r));
+            }
+            if (matches) {
+                return rule;
+            }
+        }
+        return -1;
+    }
+
+    private boolean runEquals(int run, char[] word) {
+        if (runLength[run] != word.length) {
+            return false;
+        }
+        int start = runStart[run];
+        for (int i = 0; i < word.length; i++) {
+            if (chars[start + i] != word[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isSingleSpaceGap(int left, int right) {
+        int gap = runStart[left] + runLength[left];
+        return runStart[right] == gap + 1 && chars[gap] == ' ';
+    }
+
+    private void emit(int start, int length) {
+        if (length <= 1 || isStopWord(start, length)) {
+            return;
+        }
+        ensureTokens(tokenCount + 1);
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chars[start + i];
+        }
+        tokenStart[tokenCount] = start;
+        tokenLength[tokenCount] = length;
+        tokenHash[tokenCount] = hash;
+        tokenCount++;
+    }
+
+    private int append(char[] word) {
+        ensureChars(charsUsed + word.length);
+        int start = charsUsed;
+        System.arraycopy(word, 0, chars, start, word.length);
+        charsUsed += word.length;
+        return start;
+    }
+
+    private boolean isStopWord(int start, int length) {
+        for (char[] stopWord : STOP_WORD_CHARS) {
+            if (stopWord.length != length) {
+                continue;
+            }
+            int i = 0;
+            while (i < length && chars[start + i] == stopWord[i]) {
+                i++;
+            }
+            if (i == length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isTokenChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+    }
+
+    // Mirrors java.util.regex \b: a word character, or a non-spacing mark attached to one
+    private boolean isWordBoundaryBefore(int index) {
+        if (index == 0) {
+            return true;
+        }
+        int cp = Character.codePointBefore(chars, index);
+        if (isWordCodePoint(cp)) {
+            return false;
+        }
+        return !(Character.getType(cp) == Character.NON_SPACING_MARK && hasBaseCharacter(index - 1));
+    }
+
+    private boolean isWordBoundaryAfter(int index) {
+        if (index >= textLength) {
+            return true;
+        }
+        int cp = Character.codePointAt(chars, index, textLength);
+        // A run always ends with a letter or digit, so a following mark is attached to it
+        return !isWordCodePoint(cp) && Character.getType(cp) != Character.NON_SPACING_MARK;
+    }
+
+    private boolean hasBaseCharacter(int index) {
+        for (int x = index; x >= 0; x--) {
+            int cp = Character.codePointAt(chars, x, textLength);
+            if (Character.isLetterOrDigit(cp)) {
+                return true;
+            }
+            if (Character.getType(cp) != Character.NON_SPACING_MARK) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWordCodePoint(int cp) {
+        return cp == '_' || Character.isLetterOrDigit(cp);
+    }
+
+    private void ensureChars(int size) {
+        if (chars.length < size) {
+            chars = Arrays.copyOf(chars, Math.max(size, chars.length * 2));
+        }
+    }
+
+    private void ensureRuns(int size) {
+        if (runStart.length < size) {
+            int grown = runStart.length * 2;
+            runStart = Arrays.copyOf(runStart, grown);
+            runLength = Arrays.copyOf(runLength, grown);
+            runFlags = Arrays.copyOf(runFlags, grown);
+        }
+    }
+
+    private void ensureTokens(int size) {
+        if (tokenStart.length < size) {
+            int grown = tokenStart.length * 2;
+            tokenStart = Arrays.copyOf(tokenStart, grown);
+            tokenLength = Arrays.copyOf(tokenLength, grown);
+            tokenHash = Arrays.copyOf(tokenHash, grown);
+        }
+    }
+
+    private static char[][] words(String... words) {
+        char[][] result = new char[words.length][];
+        for (int i = 0; i < words.length; i++) {
+            result[i] = words[i].toCharArray();
+        }
+        return result;
+    }
+}
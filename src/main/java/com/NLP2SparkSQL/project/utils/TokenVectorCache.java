@@ -0,0 +1,133 @@
+package com.NLP2SparkSQL.project.utils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe table of token vectors.
+ *
+ * Slots are probed linearly from the token hash for at most {@link #MAX_PROBES} positions.
+ * When every probed slot is taken by another token the first one is overwritten, so the
+ * table never grows past its capacity. Entries are immutable and published through an
+ * {@link AtomicReferenceArray}, which keeps reads lock-free.
+ */
+public final class TokenVectorCache {
+
+    private static final int MAX_PROBES = 8;
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final LongAdder evictions = new LongAdder();
+
+    public TokenVectorCache(int maxEntries) {
+        int capacity = Integer.highestOneBit(Math.max(16, maxEntries - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Look up the vector of a token, or null if it is not cached
+     */
+    public float[] get(String token) {
+        int hash = token.hashCode();
+        int index = spread(hash) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            Entry entry = slots.get((index + probe) & mask);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.hash == hash && entry.token.equals(token)) {
+                return entry.vector;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Look up the vector of the token held in chars[offset, offset + length), whose
+     * String.hashCode() is given, without creating a String
+     */
+    public float[] get(char[] chars, int offset, int length, int hash) {
+        int index = spread(hash) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            Entry entry = slots.get((index + probe) & mask);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.hash == hash && entry.matches(chars, offset, length)) {
+                return entry.vector;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Store the vector of a token, evicting a colliding entry if the probe window is full
+     */
+    public void put(String token, float[] vector) {
+        int hash = token.hashCode();
+        int index = spread(hash) & mask;
+        Entry entry = new Entry(token, hash, vector);
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (index + probe) & mask;
+            Entry current = slots.get(slot);
+            if (current == null) {
+                if (slots.compareAndSet(slot, null, entry)) {
+                    return;
+                }
+                current = slots.get(slot);
+            }
+            if (current != null && current.hash == hash && current.token.equals(token)) {
+                return;
+            }
+        }
+        slots.set(index, entry);
+        evictions.increment();
+    }
+
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Entry {
+        final String token;
+        final int hash;
+        final float[] vector;
+
+        Entry(String token, int hash, float[] vector) {
+            this.token = token;
+            this.hash = hash;
+            this.vector = vector;
+        }
+
+        boolean matches(char[] chars, int offset, int length) {
+            if (token.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (token.charAt(i) != chars[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.NLP2SparkSQL.project.utils;
+
+/**
+ * Bounded min-heap of (row, score): the root is the worst of the best k seen so far.
+ * Ties on score keep the lower row index, so sequential and parallel scans agree.
+ */
+final class TopKHeap {
+    private final int[] rows;
+    private final float[] scores;
+    private int size;
+
+    TopKHeap(int k) {
+        this.rows = new int[k];
+        this.scores = new float[k];
+    }
+
+    void offer(int row, float score) {
+        if (size < rows.length) {
+            rows[size] = row;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (isWorse(rows[0], scores[0], row, score)) {
+            rows[0] = row;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int row(int index) {
+        return rows[index];
+    }
+
+    void addAll(TopKHeap other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.rows[i], other.scores[i]);
+        }
+    }
+
+    SimilarityHits toHits() {
+        int count = size;
+        int[] sortedRows = new int[count];
+        float[] sortedScores = new float[count];
+        for (int i = count - 1; i >= 0; i--) {
+            sortedRows[i] = rows[0];
+            sortedScores[i] = scores[0];
+            size--;
+            rows[0] = rows[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return new SimilarityHits(sortedRows, sortedScores);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!isWorse(rows[i], scores[i], rows[parent], scores[parent])) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                return;
+            }
+            int worst = left;
+            int right = left + 1;
+            if (right < size && isWorse(rows[right], scores[right], rows[left], scores[left])) {
+                worst = right;
+            }
+            if (!isWorse(rows[worst], scores[worst], rows[i], scores[i])) {
+                return;
+            }
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int row = rows[a];
+        rows[a] = rows[b];
+        rows[b] = row;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+
+    private static boolean isWorse(int rowA, float scoreA, int rowB, float scoreB) {
+        return scoreA < scoreB || (scoreA == scoreB && rowA > rowB);
+    }
+}
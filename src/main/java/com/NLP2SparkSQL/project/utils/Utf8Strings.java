@@ -0,0 +1,35 @@
+package com.NLP2SparkSQL.project.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Strings in binary files as an int byte length followed by UTF-8, unlike
+ * {@link DataOutput#writeUTF} which fails on strings over 64 KB of modified UTF-8
+ */
+public final class Utf8Strings {
+
+    // Longest string accepted when reading, to fail on corrupt lengths instead of allocating them
+    private static final int MAX_BYTES = 64 * 1024 * 1024;
+
+    private Utf8Strings() {
+    }
+
+    public static void write(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String read(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_BYTES) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
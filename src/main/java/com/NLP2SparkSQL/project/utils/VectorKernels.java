@@ -0,0 +1,133 @@
+package com.NLP2SparkSQL.project.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Entry point of the float vector kernels.
+ *
+ * The implementation is picked once, when the class is initialized: the jdk.incubator.vector
+ * kernels if the JVM was started with --add-modules jdk.incubator.vector, the scalar loops
+ * otherwise. Setting the system property embedding.simd.enabled=false forces the scalar loops.
+ */
+@Slf4j
+public final class VectorKernels {
+
+    private static final String SIMD_MODULE = "jdk.incubator.vector";
+    private static final String SIMD_IMPLEMENTATION = "com.NLP2SparkSQL.project.utils.SimdVectorOps";
+
+    private static final VectorOps OPS = select();
+
+    private VectorKernels() {
+    }
+
+    public static float dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+        return OPS.dot(a, 0, b, 0, a.length);
+    }
+
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return OPS.dot(a, aOffset, b, bOffset, length);
+    }
+
+    public static float norm(float[] vector) {
+        return (float) Math.sqrt(OPS.squaredNorm(vector, 0, vector.length));
+    }
+
+    public static float norm(float[] vector, int offset, int length) {
+        return (float) Math.sqrt(OPS.squaredNorm(vector, offset, length));
+    }
+
+    /**
+     * acc[i] += x[i] * weight
+     */
+    public static void addScaled(float[] acc, float[] x, float weight) {
+        if (acc.length != x.length) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+        OPS.addScaled(acc, x, weight);
+    }
+
+    /**
+     * vector[i] /= divisor
+     */
+    public static void divide(float[] vector, float divisor) {
+        OPS.divide(vector, divisor);
+    }
+
+    /**
+     * Cosine similarity of two vectors, 0 if either is the zero vector
+     */
+    public static float cosine(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+        float normA = OPS.squaredNorm(a, 0, a.length);
+        float normB = OPS.squaredNorm(b, 0, b.length);
+        if (normA == 0.0f || normB == 0.0f) {
+            return 0.0f;
+        }
+        return OPS.dot(a, 0, b, 0, a.length) / (float) (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+
+    /**
+     * Cosine similarity of the query against every row of a row-major matrix
+     *
+     * @param rows      rowCount * dimension floats
+     * @param scores    receives one score per row
+     */
+    public static void cosineScores(float[] query, float[] rows, int rowCount, float[] scores) {
+        int dimension = query.length;
+        if (rows.length < rowCount * dimension || scores.length < rowCount) {
+            throw new IllegalArgumentException("Matrix or score buffer too small for " + rowCount + " rows");
+        }
+        OPS.cosineScores(query, norm(query), rows, dimension, 0, rowCount, scores);
+    }
+
+    /**
+     * Cosine similarity of the query against each candidate vector
+     */
+    public static void cosineScores(float[] query, float[][] candidates, float[] scores) {
+        float queryNorm = norm(query);
+        for (int c = 0; c < candidates.length; c++) {
+            float[] candidate = candidates[c];
+            if (candidate.length != query.length) {
+                throw new IllegalArgumentException("Vectors must have the same dimension");
+            }
+            float candidateNorm = norm(candidate);
+            scores[c] = queryNorm == 0.0f || candidateNorm == 0.0f
+                    ? 0.0f
+                    : OPS.dot(query, 0, candidate, 0, query.length) / (queryNorm * candidateNorm);
+        }
+    }
+
+    /**
+     * Name of the selected implementation, "scalar" or "simd-<bits>"
+     */
+    public static String implementation() {
+        return OPS.name();
+    }
+
+    private static VectorOps select() {
+        if (!Boolean.parseBoolean(System.getProperty("embedding.simd.enabled", "true"))) {
+            log.info("Vector kernels: scalar (disabled by embedding.simd.enabled)");
+            return new ScalarVectorOps();
+        }
+        if (ModuleLayer.boot().findModule(SIMD_MODULE).isEmpty()) {
+            log.info("Vector kernels: scalar ({} not resolved, start the JVM with --add-modules {})",
+                    SIMD_MODULE, SIMD_MODULE);
+            return new ScalarVectorOps();
+        }
+        try {
+            VectorOps ops = (VectorOps) Class.forName(SIMD_IMPLEMENTATION)
+                    .getDeclaredConstructor()
+                    .newInstance();
+            log.info("Vector kernels: {}", ops.name());
+            return ops;
+        } catch (Throwable e) {
+            log.warn("Vector kernels: scalar (SIMD implementation unavailable: {})", e.toString());
+            return new ScalarVectorOps();
+        }
+    }
+}
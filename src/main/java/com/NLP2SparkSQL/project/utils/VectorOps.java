@@ -0,0 +1,37 @@
+package com.NLP2SparkSQL.project.utils;
+
+/**
+ * Float vector kernels used by embedding generation and similarity scoring.
+ * Implementations are selected once by {@link VectorKernels}.
+ */
+interface VectorOps {
+
+    /**
+     * Dot product of a[aOffset, aOffset + length) and b[bOffset, bOffset + length)
+     */
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * Sum of squares of a[offset, offset + length)
+     */
+    float squaredNorm(float[] a, int offset, int length);
+
+    /**
+     * acc[i] += x[i] * weight, rounded exactly like the scalar expression (multiply, then add)
+     */
+    void addScaled(float[] acc, float[] x, float weight);
+
+    /**
+     * vector[i] /= divisor
+     */
+    void divide(float[] vector, float divisor);
+
+    /**
+     * Cosine similarity of the query against rows of a row-major matrix.
+     * scores[r] receives the similarity of row (firstRow + r), 0 when either vector is zero.
+     */
+    void cosineScores(float[] query, float queryNorm, float[] rows, int dimension,
+                      int firstRow, int rowCount, float[] scores);
+
+    String name();
+}
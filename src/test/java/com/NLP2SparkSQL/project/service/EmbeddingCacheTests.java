@@ -0,0 +1,27 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.NLP2SparkSQL.project.utils.EmbeddingUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddingCacheTests {
+
+	@Test
+	void textsWithTheSameTokensShareOneEntry() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		EmbeddingCache cache = new EmbeddingCache(registry, 1 << 20, Duration.ofMinutes(5));
+
+		float[] first = cache.embed("List the employees by department");
+		float[] second = cache.embed("  list EMPLOYEES, by department?");
+
+		assertArrayEquals(EmbeddingUtils.embed("List the employees by department"), first);
+		assertArrayEquals(first, second);
+		assertNotSame(first, second);
+		assertEquals(1, cache.size());
+		assertEquals(1.0, registry.get("cache.gets").tag("cache", "embedding").tag("result", "hit").functionCounter().count());
+	}
+}
@@ -0,0 +1,193 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.NLP2SparkSQL.project.dto.IngestionReport;
+import com.NLP2SparkSQL.project.utils.EmbeddingUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ingestion against a stand-in Qdrant REST server that stores the upserted payloads by point id
+ */
+class ExampleIngestionServiceTests {
+
+	static final ObjectMapper JSON = new ObjectMapper();
+
+	final Map<String, Map<?, ?>> stored = new ConcurrentHashMap<>();
+	final AtomicInteger upserts = new AtomicInteger();
+	volatile int failAfterUpserts = Integer.MAX_VALUE;
+	HttpServer server;
+	QdrantService qdrant;
+
+	@TempDir
+	Path dir;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/collections/docs/points", exchange -> {
+			Map<?, ?> request = JSON.readValue(exchange.getRequestBody(), Map.class);
+			if (upserts.get() >= failAfterUpserts) {
+				exchange.sendResponseHeaders(503, -1);
+				exchange.close();
+				return;
+			}
+			for (Object point : (List<?>) request.get("points")) {
+				Map<?, ?> fields = (Map<?, ?>) point;
+				stored.put((String) fields.get("id"), (Map<?, ?>) fields.get("payload"));
+			}
+			upserts.incrementAndGet();
+			byte[] bytes = "{\"result\":{\"status\":\"completed\"}}".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, bytes.length);
+			exchange.getResponseBody().write(bytes);
+			exchange.close();
+		});
+		server.start();
+
+		qdrant = new QdrantService();
+		ReflectionTestUtils.setField(qdrant, "qdrantUrl", "http://localhost:" + server.getAddress().getPort());
+		ReflectionTestUtils.setField(qdrant, "collectionName", "docs");
+		ReflectionTestUtils.setField(qdrant, "topResults", 1);
+		ReflectionTestUtils.setField(qdrant, "transport", "rest");
+		ReflectionTestUtils.setField(qdrant, "timeoutMillis", 30_000L);
+		ReflectionTestUtils.setField(qdrant, "searchBudget", Duration.ofSeconds(5));
+		qdrant.initTransport();
+	}
+
+	@AfterEach
+	void stopServer() {
+		qdrant.closeTransport();
+		server.stop(0);
+	}
+
+	@Test
+	void csvRecordsAreUpsertedOnceAndInvalidOnesRejected() throws Exception {
+		String csv = "question,sql,schema\r\n"
+			+ "List all employees,SELECT * FROM employees,hr\r\n"
+			+ "\"Count orders, per customer\",\"SELECT customer_id, COUNT(*)\nFROM orders\nGROUP BY customer_id\",\r\n"
+			+ "\r\n"
+			+ "Missing the query,,\r\n"
+			+ "List all employees,SELECT * FROM employees,hr\r\n";
+
+		IngestionReport report = service(2, 4).ingest(input(csv), ExampleIngestionService.Format.CSV, null);
+
+		assertEquals("COMPLETED", report.getStatus());
+		assertEquals(4, report.getReceived());
+		assertEquals(1, report.getRejected());
+		assertEquals(3, report.getUpserted());
+		assertEquals(2, stored.size());
+		assertTrue(stored.values().stream().anyMatch(payload ->
+			"SELECT customer_id, COUNT(*)\nFROM orders\nGROUP BY customer_id".equals(payload.get("sql"))
+				&& !payload.containsKey("schema")));
+	}
+
+	@Test
+	void failedJobResumesFromItsCheckpoint() throws Exception {
+		StringBuilder ndjson = new StringBuilder();
+		for (String topic : List.of("employees", "orders", "customers", "products", "sales", "regions")) {
+			ndjson.append(JSON.writeValueAsString(Map.of("question", "List all " + topic, "sql", "SELECT * FROM " + topic)))
+				.append('\n');
+		}
+		ExampleIngestionService service = service(2, 1);
+		failAfterUpserts = 2;
+
+		IngestionReport failed = service.ingest(input(ndjson.toString()), ExampleIngestionService.Format.NDJSON, "job-1");
+		assertEquals("FAILED", failed.getStatus());
+		assertEquals(4, failed.getCheckpoint());
+		assertEquals(4, stored.size());
+
+		failAfterUpserts = Integer.MAX_VALUE;
+		IngestionReport resumed = service.ingest(input(ndjson.toString()), ExampleIngestionService.Format.NDJSON, "job-1");
+		assertEquals("COMPLETED", resumed.getStatus());
+		assertEquals(4, resumed.getResumedFrom());
+		assertEquals(2, resumed.getUpserted());
+		assertEquals(6, resumed.getCheckpoint());
+		assertEquals(6, stored.size());
+
+		assertThrows(IllegalArgumentException.class,
+			() -> service.ingest(input(""), ExampleIngestionService.Format.NDJSON, "../job"));
+	}
+
+	@Test
+	void trailingRejectedRecordsAdvanceTheCheckpointWithoutAnUpsert() throws Exception {
+		String csv = "question,sql\r\n"
+			+ "List all employees,SELECT * FROM employees\r\n"
+			+ "List all orders,SELECT * FROM orders\r\n"
+			+ "Missing the query,\r\n"
+			+ ",SELECT 1\r\n";
+
+		IngestionReport report = service(2, 1).ingest(input(csv), ExampleIngestionService.Format.CSV, "job-2");
+
+		assertEquals("COMPLETED", report.getStatus());
+		assertEquals(2, report.getRejected());
+		assertEquals(2, report.getUpserted());
+		assertEquals(1, report.getBatches());
+		assertEquals(4, report.getCheckpoint());
+		assertEquals(1, upserts.get());
+
+		IngestionReport onlyRejected = service(2, 1).ingest(input("question,sql\r\nMissing the query,\r\n"),
+			ExampleIngestionService.Format.CSV, "job-3");
+		assertEquals("COMPLETED", onlyRejected.getStatus());
+		assertEquals(0, onlyRejected.getBatches());
+		assertEquals(1, onlyRejected.getCheckpoint());
+		assertEquals(1, upserts.get());
+	}
+
+	@Test
+	void unreadableInputIsReportedApartFromQdrantFailures() throws Exception {
+		IngestionReport unterminated = service(2, 1).ingest(
+			input("question,sql\r\nList all employees,\"SELECT * FROM employees\r\n"), ExampleIngestionService.Format.CSV, null);
+		assertEquals("INVALID_INPUT", unterminated.getStatus());
+
+		IngestionReport noSqlColumn = service(2, 1).ingest(input("question,query\r\n"), ExampleIngestionService.Format.CSV, null);
+		assertEquals("INVALID_INPUT", noSqlColumn.getStatus());
+		assertEquals(0, upserts.get());
+	}
+
+	@Test
+	void upsertedExamplesAreAddedToTheHnswIndex() throws Exception {
+		HealthProber prober = new HealthProber(qdrant, "http://localhost:1", "qwen3:1.7b",
+			Duration.ofHours(1), Duration.ofHours(1), Duration.ofSeconds(5));
+		HnswExampleRetriever retriever = new HnswExampleRetriever(qdrant, prober, dir.resolve("hnsw.bin").toString(),
+			16, 100, 32, false, Duration.ofHours(1), 1);
+		retriever.addExample("List all employees", "SELECT * FROM employees", EmbeddingUtils.embed("List all employees"));
+		ExampleIngestionService service = new ExampleIngestionService(qdrant, Optional.of(retriever), JSON, 2, 1, 2, false,
+			dir.toString());
+		String ndjson = JSON.writeValueAsString(Map.of("question", "Total invoices per supplier",
+			"sql", "SELECT supplier_id, COUNT(*) FROM invoices GROUP BY supplier_id")) + "\n";
+
+		assertEquals("COMPLETED", service.ingest(input(ndjson), ExampleIngestionService.Format.NDJSON, null).getStatus());
+
+		assertEquals(2, retriever.size());
+		assertEquals("SELECT supplier_id, COUNT(*) FROM invoices GROUP BY supplier_id",
+			retriever.searchRelevantContextStructured(EmbeddingUtils.embed("invoices per supplier")).get("sql"));
+	}
+
+	private ExampleIngestionService service(int batchSize, int maxInFlight) {
+		return new ExampleIngestionService(qdrant, Optional.empty(), JSON, batchSize, maxInFlight, 2, false, dir.toString());
+	}
+
+	private static InputStream input(String text) {
+		return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+	}
+}
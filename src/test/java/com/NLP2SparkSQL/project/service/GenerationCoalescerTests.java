@@ -0,0 +1,65 @@
+package com.NLP2SparkSQL.project.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenerationCoalescerTests {
+
+	private static final SqlResultCache.Key KEY = new SqlResultCache.Key("schema", "list all employees");
+
+	@Test
+	void concurrentCallersShareOneGenerationWithTheirOwnTimeoutAndCancellation() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		GenerationCoalescer coalescer = new GenerationCoalescer(registry, true, Duration.ofMillis(200));
+		AtomicInteger calls = new AtomicInteger();
+		AtomicBoolean cancelled = new AtomicBoolean();
+		Sinks.One<String> llm = Sinks.one();
+
+		Mono<String> first = coalescer.generate(KEY, () -> {
+			calls.incrementAndGet();
+			return llm.asMono().doOnCancel(() -> cancelled.set(true));
+		}, "first");
+		CompletableFuture<String> firstResult = first.toFuture();
+		CompletableFuture<String> secondResult = coalescer.generate(KEY, () -> Mono.just("unused"), "second").toFuture();
+		Disposable third = coalescer.generate(KEY, () -> Mono.just("unused"), "third").subscribe();
+		third.dispose();
+
+		llm.tryEmitValue("SELECT * FROM employees");
+		assertEquals("SELECT * FROM employees", firstResult.get());
+		assertEquals("SELECT * FROM employees", secondResult.get());
+		assertEquals(1, calls.get());
+		assertFalse(cancelled.get());
+		assertEquals(2.0, registry.counter("sql.generation.coalesced").count());
+		assertEquals(0, coalescer.inFlight());
+
+		// A caller that times out does not end the generation for the others
+		Sinks.One<String> slow = Sinks.one();
+		CompletableFuture<String> waiting = coalescer.generate(KEY, slow::asMono, "waiting").toFuture();
+		Thread.sleep(120);
+		CompletableFuture<String> late = coalescer.generate(KEY, slow::asMono, "late").toFuture();
+		Thread.sleep(120);
+		ExecutionException timedOut = assertThrows(ExecutionException.class, waiting::get);
+		assertInstanceOf(TimeoutException.class, timedOut.getCause());
+		slow.tryEmitValue("SELECT 1");
+		assertEquals("SELECT 1", late.get());
+
+		// The generation is cancelled once nobody waits for it
+		cancelled.set(false);
+		Disposable only = coalescer.generate(KEY, () -> Mono.<String>never().doOnCancel(() -> cancelled.set(true)), "only").subscribe();
+		only.dispose();
+		assertTrue(cancelled.get());
+		assertEquals(0, coalescer.inFlight());
+	}
+}
@@ -0,0 +1,120 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Probes against one stand-in server answering both the Ollama and the Qdrant endpoints
+ */
+class HealthProberTests {
+
+	static final ObjectMapper JSON = new ObjectMapper();
+
+	final AtomicInteger requests = new AtomicInteger();
+	volatile List<Map<String, Object>> loadedModels = List.of();
+	HttpServer server;
+	QdrantService qdrant;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/api/tags", exchange -> respond(exchange,
+			Map.of("models", List.of(Map.of("name", "qwen3:1.7b"), Map.of("name", "llama3:latest")))));
+		server.createContext("/api/ps", exchange -> respond(exchange, Map.of("models", loadedModels)));
+		server.createContext("/collections/docs", exchange -> respond(exchange,
+			Map.of("result", Map.of("status", "green", "points_count", 12))));
+		server.start();
+
+		qdrant = new QdrantService();
+		ReflectionTestUtils.setField(qdrant, "qdrantUrl", url());
+		ReflectionTestUtils.setField(qdrant, "collectionName", "docs");
+		ReflectionTestUtils.setField(qdrant, "transport", "rest");
+		ReflectionTestUtils.setField(qdrant, "timeoutMillis", 30_000L);
+		ReflectionTestUtils.setField(qdrant, "searchBudget", Duration.ofSeconds(5));
+		qdrant.initTransport();
+	}
+
+	@AfterEach
+	void stopServer() {
+		qdrant.closeTransport();
+		server.stop(0);
+	}
+
+	@Test
+	void healthIsServedFromTheLastProbe() {
+		HealthProber prober = prober("qwen3:1.7b", Duration.ofMinutes(1));
+		assertEquals(Status.UNKNOWN, prober.ollamaHealth().getStatus());
+
+		prober.probe();
+		int probeRequests = requests.get();
+		Health ollama = prober.ollamaHealth();
+		assertEquals(Status.UP, ollama.getStatus());
+		assertEquals(false, ollama.getDetails().get("modelLoaded"));
+		Health qdrantHealth = prober.qdrantHealth();
+		assertEquals(Status.UP, qdrantHealth.getStatus());
+		assertEquals(12, qdrantHealth.getDetails().get("pointsCount"));
+		assertTrue(prober.isOllamaUp() && prober.isQdrantUp());
+		assertEquals(probeRequests, requests.get());
+
+		loadedModels = List.of(Map.of("name", "qwen3:1.7b", "size_vram", 1024, "expires_at", "2026-01-01T00:05:00Z"));
+		prober.probe();
+		assertEquals(true, prober.ollamaHealth().getDetails().get("modelLoaded"));
+		assertEquals(1024, prober.ollamaHealth().getDetails().get("sizeVram"));
+
+		HealthProber untagged = prober("llama3", Duration.ofMinutes(1));
+		untagged.probe();
+		assertEquals(Status.UP, untagged.ollamaHealth().getStatus());
+		HealthProber missing = prober("mistral", Duration.ofMinutes(1));
+		missing.probe();
+		assertEquals(Status.DOWN, missing.ollamaHealth().getStatus());
+	}
+
+	@Test
+	void staleAndFailedProbesAreNotUp() throws InterruptedException {
+		HealthProber prober = prober("qwen3:1.7b", Duration.ofMillis(50));
+		prober.probe();
+		Thread.sleep(100);
+		assertEquals(Status.UNKNOWN, prober.ollamaHealth().getStatus());
+		assertFalse(prober.isOllamaUp());
+
+		server.stop(0);
+		prober.probe();
+		assertEquals(Status.DOWN, prober.ollamaHealth().getStatus());
+		assertEquals(Status.DOWN, prober.qdrantHealth().getStatus());
+	}
+
+	private HealthProber prober(String model, Duration maxStaleness) {
+		return new HealthProber(qdrant, url(), model, Duration.ofHours(1), maxStaleness, Duration.ofSeconds(5));
+	}
+
+	private String url() {
+		return "http://localhost:" + server.getAddress().getPort();
+	}
+
+	private void respond(HttpExchange exchange, Object body) throws IOException {
+		requests.incrementAndGet();
+		byte[] bytes = JSON.writeValueAsBytes(body);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
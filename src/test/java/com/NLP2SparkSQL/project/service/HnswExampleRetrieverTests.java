@@ -0,0 +1,149 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.NLP2SparkSQL.project.utils.EmbeddingUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Resync and persistence of the in-process index against a stand-in Qdrant REST server
+ */
+class HnswExampleRetrieverTests {
+
+	static final ObjectMapper JSON = new ObjectMapper();
+
+	final Map<Integer, String> questions = new ConcurrentSkipListMap<>();
+	volatile CountDownLatch scrollGate = new CountDownLatch(0);
+	volatile CountDownLatch scrollStarted = new CountDownLatch(1);
+	HttpServer server;
+	QdrantService qdrant;
+	HealthProber prober;
+
+	@TempDir
+	Path dir;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		questions.put(1, "List all employees");
+		questions.put(2, "Total orders per customer");
+		questions.put(3, "Average salary per department");
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/collections/docs", exchange -> respond(exchange,
+			Map.of("result", Map.of("status", "green", "points_count", questions.size()))));
+		server.createContext("/collections/docs/points/scroll", exchange -> {
+			exchange.getRequestBody().readAllBytes();
+			List<Map<String, Object>> points = new ArrayList<>();
+			questions.forEach((id, question) -> points.add(Map.of("id", id, "vector", EmbeddingUtils.embed(question),
+				"payload", Map.of("question", question, "sql", "SELECT " + id))));
+			scrollStarted.countDown();
+			try {
+				scrollGate.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			respond(exchange, Map.of("result", Map.of("points", points)));
+		});
+		server.start();
+		qdrant = new QdrantService();
+		ReflectionTestUtils.setField(qdrant, "qdrantUrl", "http://localhost:" + server.getAddress().getPort());
+		ReflectionTestUtils.setField(qdrant, "collectionName", "docs");
+		ReflectionTestUtils.setField(qdrant, "topResults", 1);
+		ReflectionTestUtils.setField(qdrant, "transport", "rest");
+		ReflectionTestUtils.setField(qdrant, "timeoutMillis", 30_000L);
+		ReflectionTestUtils.setField(qdrant, "searchBudget", Duration.ofSeconds(5));
+		qdrant.initTransport();
+		prober = new HealthProber(qdrant, "http://localhost:" + server.getAddress().getPort(), "qwen3:1.7b",
+			Duration.ofHours(1), Duration.ofHours(1), Duration.ofSeconds(5));
+	}
+
+	@AfterEach
+	void stopServer() {
+		qdrant.closeTransport();
+		server.stop(0);
+	}
+
+	@Test
+	void resyncRebuildsOffToTheSideWhenTheCollectionChanged() throws Exception {
+		HnswExampleRetriever retriever = retriever();
+		retriever.resyncIfStale();
+		assertEquals(3, retriever.size());
+
+		questions.put(4, "Count invoices per supplier");
+		scrollGate = new CountDownLatch(1);
+		scrollStarted = new CountDownLatch(1);
+		CompletableFuture<Void> resync = CompletableFuture.runAsync(retriever::resyncIfStale);
+		assertTrue(scrollStarted.await(10, TimeUnit.SECONDS));
+		// The complete old index keeps answering while the new one is built
+		assertEquals(3, retriever.size());
+		assertEquals("List all employees",
+			retriever.searchRelevantContextStructured(EmbeddingUtils.embed("employees list")).get("question"));
+
+		scrollGate.countDown();
+		resync.get(10, TimeUnit.SECONDS);
+		assertEquals(4, retriever.size());
+		assertEquals("SELECT 4",
+			retriever.searchRelevantContextStructured(EmbeddingUtils.embed("invoices per supplier")).get("sql"));
+	}
+
+	@Test
+	void emptyIndexIsHealthyOnlyWhileQdrantWasLastSeenUp() {
+		HnswExampleRetriever retriever = retriever();
+		assertFalse(retriever.isHealthy());
+
+		prober.probe();
+		assertTrue(retriever.isHealthy());
+
+		server.stop(0);
+		prober.probe();
+		assertFalse(retriever.isHealthy());
+		retriever.addExample("List all employees", "SELECT 1", EmbeddingUtils.embed("List all employees"));
+		assertTrue(retriever.isHealthy());
+	}
+
+	@Test
+	void examplesOver64KilobytesSurviveSaveAndLoad() {
+		HnswExampleRetriever retriever = retriever();
+		String longSql = "SELECT " + "x, ".repeat(30_000) + "y FROM t";
+		retriever.addExample("Wide select over every column", longSql, EmbeddingUtils.embed("wide select every column"));
+		retriever.save();
+
+		HnswExampleRetriever reloaded = retriever();
+		reloaded.load();
+		assertEquals(1, reloaded.size());
+		assertEquals(longSql, reloaded.searchRelevantContextStructured(EmbeddingUtils.embed("wide select")).get("sql"));
+	}
+
+	private HnswExampleRetriever retriever() {
+		return new HnswExampleRetriever(qdrant, prober, dir.resolve("hnsw.bin").toString(), 16, 100, 32, true,
+			Duration.ofHours(1), 1);
+	}
+
+	private static void respond(HttpExchange exchange, Object body) throws IOException {
+		byte[] bytes = JSON.writeValueAsBytes(body);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
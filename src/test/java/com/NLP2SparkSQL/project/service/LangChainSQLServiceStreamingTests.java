@@ -0,0 +1,81 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Streaming against a stand-in Ollama that keeps explaining after the SQL until the client hangs up
+ */
+class LangChainSQLServiceStreamingTests {
+
+	static final ObjectMapper JSON = new ObjectMapper();
+	static final List<String> TOKENS = List.of("<think>", "Use t.", "</think>", "SELECT", " name", " FROM", " t", ";",
+		" This", " query", " lists", " names", ".");
+
+	final CountDownLatch disconnected = new CountDownLatch(1);
+	HttpServer server;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/api/generate", exchange -> {
+			exchange.getRequestBody().readAllBytes();
+			exchange.getResponseHeaders().add("Content-Type", "application/x-ndjson");
+			exchange.sendResponseHeaders(200, 0);
+			try (OutputStream out = exchange.getResponseBody()) {
+				// Far more explanation than the client reads, one token every 20ms
+				for (int i = 0; i < 500; i++) {
+					String token = i < TOKENS.size() ? TOKENS.get(i) : " more";
+					out.write((JSON.writeValueAsString(Map.of("response", token, "done", false)) + "\n")
+						.getBytes(StandardCharsets.UTF_8));
+					out.flush();
+					Thread.sleep(20);
+				}
+				out.write("{\"response\":\"\",\"done\":true}\n".getBytes(StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				disconnected.countDown();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		server.start();
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	void streamStopsAndHangsUpAtTheEndOfTheStatement() throws InterruptedException {
+		String url = "http://localhost:" + server.getAddress().getPort();
+		OllamaNativeClient client = new OllamaNativeClient(new SimpleMeterRegistry(), url, "qwen3:1.7b", "5m", 30);
+		LangChainSQLService service = new LangChainSQLService(url, "qwen3:1.7b", 30, "native", client);
+
+		List<String> tokens = service.streamSQL("TABLE t (name STRING)", "List the names", "test")
+			.collectList()
+			.block(Duration.ofSeconds(5));
+
+		assertEquals(TOKENS.subList(0, 8), tokens);
+		assertEquals("SELECT name FROM t;", service.finishSQL(String.join("", tokens), "test"));
+		assertTrue(disconnected.await(5, TimeUnit.SECONDS), "Ollama stream was not closed");
+	}
+}
@@ -0,0 +1,73 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Against a stand-in Ollama that evaluates only the prompt once the system prompt has been seen
+ */
+class OllamaNativeClientTests {
+
+	static final ObjectMapper JSON = new ObjectMapper();
+	static final String SYSTEM = "x".repeat(4000);
+
+	final List<Map<?, ?>> requests = new CopyOnWriteArrayList<>();
+	HttpServer server;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/api/generate", exchange -> {
+			Map<?, ?> request = JSON.readValue(exchange.getRequestBody(), Map.class);
+			boolean cached = !requests.isEmpty();
+			requests.add(request);
+			// 4 chars per token, 1ms per token
+			long tokens = (cached ? 0 : SYSTEM.length() / 4) + ((String) request.get("prompt")).length() / 4;
+			byte[] bytes = JSON.writeValueAsBytes(Map.of("response", "SELECT 1;", "done", true,
+				"prompt_eval_count", tokens, "prompt_eval_duration", tokens * 1_000_000));
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, bytes.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(bytes);
+			}
+		});
+		server.start();
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	void reusedSystemPromptIsReportedAsSavedPromptEval() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		OllamaNativeClient client = new OllamaNativeClient(registry,
+			"http://localhost:" + server.getAddress().getPort(), "qwen3:1.7b", "30m", 30);
+
+		assertEquals(1000, client.prime(SYSTEM).block().promptEvalCount());
+		OllamaNativeClient.Generation generation = client.generate(SYSTEM, "y".repeat(200), Map.of("temperature", 0.1)).block();
+
+		assertEquals("SELECT 1;", generation.response());
+		assertEquals(50, generation.promptEvalCount());
+		assertEquals(1000, registry.get("ollama.prompt.eval.saved").timer().totalTime(TimeUnit.MILLISECONDS), 1);
+		Map<?, ?> request = requests.get(1);
+		assertEquals(SYSTEM, request.get("system"));
+		assertEquals("30m", request.get("keep_alive"));
+		assertEquals(false, request.get("stream"));
+	}
+}
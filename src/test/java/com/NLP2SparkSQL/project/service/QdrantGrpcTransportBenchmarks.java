@@ -0,0 +1,75 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.NLP2SparkSQL.project.utils.EmbeddingUtils;
+import com.sun.net.httpserver.HttpServer;
+import io.grpc.Grpc;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.Server;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+
+import static com.NLP2SparkSQL.project.service.QdrantGrpcTransportTests.respond;
+import static com.NLP2SparkSQL.project.service.QdrantGrpcTransportTests.restResponse;
+import static com.NLP2SparkSQL.project.service.QdrantGrpcTransportTests.service;
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@Tag("benchmark")
+class QdrantGrpcTransportBenchmarks {
+
+	Server grpcServer;
+	HttpServer restServer;
+
+	@BeforeEach
+	void startServers() throws Exception {
+		grpcServer = Grpc.newServerBuilderForPort(0, InsecureServerCredentials.create())
+			.addService(new QdrantGrpcTransportTests.StandInPoints())
+			.build()
+			.start();
+		byte[] body = restResponse();
+		restServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		restServer.createContext("/collections/my_sql_docs/points/search", exchange -> respond(exchange, body));
+		restServer.start();
+	}
+
+	@AfterEach
+	void stopServers() {
+		grpcServer.shutdownNow();
+		restServer.stop(0);
+	}
+
+	@Test
+	void searchLatencyOverRestAndGrpc() {
+		QdrantService rest = service("rest", restServer, grpcServer);
+		QdrantService grpc = service("grpc", restServer, grpcServer);
+		try {
+			float[] embedding = EmbeddingUtils.embed("List employees by department");
+
+			long restMicros = averageMicros(rest, embedding);
+			long grpcMicros = averageMicros(grpc, embedding);
+
+			log.info("Search over loopback stand-ins: REST {} us, gRPC {} us ({}x)",
+				restMicros, grpcMicros, String.format("%.1f", (double) restMicros / grpcMicros));
+		} finally {
+			grpc.closeTransport();
+			rest.closeTransport();
+		}
+	}
+
+	private static long averageMicros(QdrantService service, float[] embedding) {
+		int iterations = 300;
+		for (int i = 0; i < iterations; i++) {
+			service.searchRelevantContextStructured(embedding);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			assertFalse(service.searchRelevantContextStructured(embedding).get("sql").isEmpty());
+		}
+		return (System.nanoTime() - start) / 1_000 / iterations;
+	}
+}
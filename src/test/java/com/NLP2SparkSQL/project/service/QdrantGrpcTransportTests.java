@@ -0,0 +1,228 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.NLP2SparkSQL.project.utils.EmbeddingUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.grpc.Grpc;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.Server;
+import io.grpc.stub.StreamObserver;
+import io.qdrant.client.grpc.JsonWithInt;
+import io.qdrant.client.grpc.Points;
+import io.qdrant.client.grpc.PointsGrpc;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * REST and gRPC searches against stand-in servers in this JVM that answer like Qdrant
+ */
+class QdrantGrpcTransportTests {
+
+	static final int HITS = 10;
+
+	Server grpcServer;
+	HttpServer restServer;
+	final AtomicInteger slowRequests = new AtomicInteger();
+	final AtomicInteger searches = new AtomicInteger();
+	final AtomicLong pointsCount = new AtomicLong(HITS);
+
+	@BeforeEach
+	void startServers() throws Exception {
+		grpcServer = Grpc.newServerBuilderForPort(0, InsecureServerCredentials.create())
+			.addService(new StandInPoints())
+			.build()
+			.start();
+
+		byte[] body = restResponse();
+		restServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		restServer.createContext("/collections/my_sql_docs/points/search", exchange -> {
+			searches.incrementAndGet();
+			respond(exchange, body);
+		});
+		restServer.createContext("/collections/my_sql_docs", exchange -> respond(exchange,
+			("{\"result\":{\"status\":\"green\",\"points_count\":" + pointsCount.get() + "},\"status\":\"ok\"}")
+				.getBytes(StandardCharsets.UTF_8)));
+		// The 21st search stalls, once enough latencies are known for it to be hedged, and then
+		// answers without hits, so the result shows which of the two requests won
+		restServer.createContext("/collections/slow_once/points/search", exchange -> {
+			if (slowRequests.incrementAndGet() == 21) {
+				stall();
+				respond(exchange, "{\"result\":[],\"status\":\"ok\"}".getBytes(StandardCharsets.UTF_8));
+				return;
+			}
+			respond(exchange, body);
+		});
+		restServer.createContext("/collections/stalled/points/search", exchange -> {
+			stall();
+			respond(exchange, body);
+		});
+		restServer.setExecutor(Executors.newCachedThreadPool());
+		restServer.start();
+	}
+
+	@AfterEach
+	void stopServers() {
+		grpcServer.shutdownNow();
+		restServer.stop(0);
+	}
+
+	@Test
+	void grpcAndRestReturnTheSameExample() {
+		QdrantService rest = service("rest");
+		QdrantService grpc = service("grpc");
+		try {
+			float[] embedding = EmbeddingUtils.embed("List employees by department");
+
+			Map<String, String> viaRest = rest.searchRelevantContextStructured(embedding);
+			Map<String, String> viaGrpc = grpc.searchRelevantContextStructured(embedding);
+
+			assertEquals("question 0", viaGrpc.get("question"));
+			assertEquals(viaRest.get("question"), viaGrpc.get("question"));
+			assertEquals(viaRest.get("sql"), viaGrpc.get("sql"));
+			assertEquals(Double.parseDouble(viaRest.get("confidence")), Double.parseDouble(viaGrpc.get("confidence")), 1e-6);
+		} finally {
+			grpc.closeTransport();
+		}
+	}
+
+	@Test
+	void slowSearchIsHedgedAndTheFirstAnswerWins() {
+		QdrantService rest = service("rest");
+		ReflectionTestUtils.setField(rest, "collectionName", "slow_once");
+		float[] embedding = EmbeddingUtils.embed("List employees by department");
+		for (int i = 0; i < 20; i++) {
+			assertEquals("question 0", rest.searchRelevantContextStructured(embedding).get("question"));
+		}
+
+		Map<String, String> result = rest.searchRelevantContextStructured(embedding);
+
+		assertEquals("question 0", result.get("question"));
+		assertEquals(22, slowRequests.get());
+	}
+
+	@Test
+	void searchPastTheBudgetReturnsNoExample() {
+		QdrantService rest = service("rest");
+		ReflectionTestUtils.setField(rest, "collectionName", "stalled");
+		ReflectionTestUtils.setField(rest, "searchBudget", Duration.ofMillis(200));
+
+		// The stalled search would still return the example after 3s if the budget were not enforced
+		Map<String, String> result = rest.searchRelevantContextStructured(EmbeddingUtils.embed("List employees by department"));
+
+		assertFalse(rest.hasValidResult(result));
+	}
+
+	@Test
+	void cachedResultsAreReusedUntilThePointsCountChanges() {
+		QdrantService rest = service("rest");
+		ReflectionTestUtils.setField(rest, "cacheEnabled", true);
+		ReflectionTestUtils.setField(rest, "cacheMaxSize", 100L);
+		ReflectionTestUtils.setField(rest, "cacheTtl", Duration.ofMinutes(1));
+		ReflectionTestUtils.setField(rest, "cacheLshBits", 32);
+		rest.initTransport();
+		float[] embedding = EmbeddingUtils.embed("List employees by department");
+
+		assertTrue(rest.isHealthy());
+		assertEquals("question 0", rest.searchRelevantContextStructured(embedding).get("question"));
+		assertEquals("question 0", rest.searchRelevantContextStructured(embedding).get("question"));
+		assertEquals("question 0", rest.searchRelevantContextStructured(EmbeddingUtils.embed("list the employees by department")).get("question"));
+		assertEquals(1, searches.get());
+
+		rest.searchRelevantContextStructured(EmbeddingUtils.embed("Average salary per year"));
+		assertEquals(2, searches.get());
+
+		assertTrue(rest.isHealthy());
+		rest.searchRelevantContextStructured(embedding);
+		assertEquals(2, searches.get());
+
+		pointsCount.incrementAndGet();
+		assertTrue(rest.isHealthy());
+		rest.searchRelevantContextStructured(embedding);
+		assertEquals(3, searches.get());
+	}
+
+	private QdrantService service(String transport) {
+		return service(transport, restServer, grpcServer);
+	}
+
+	static QdrantService service(String transport, HttpServer restServer, Server grpcServer) {
+		QdrantService service = new QdrantService();
+		ReflectionTestUtils.setField(service, "qdrantUrl", "http://localhost:" + restServer.getAddress().getPort());
+		ReflectionTestUtils.setField(service, "collectionName", "my_sql_docs");
+		ReflectionTestUtils.setField(service, "topResults", HITS);
+		ReflectionTestUtils.setField(service, "sparseVectorName", "text-sparse");
+		ReflectionTestUtils.setField(service, "transport", transport);
+		ReflectionTestUtils.setField(service, "grpcPort", grpcServer.getPort());
+		ReflectionTestUtils.setField(service, "timeoutMillis", 30_000L);
+		ReflectionTestUtils.setField(service, "searchBudget", Duration.ofSeconds(5));
+		ReflectionTestUtils.setField(service, "hedgeEnabled", true);
+		ReflectionTestUtils.setField(service, "hedgePercentile", 0.95);
+		ReflectionTestUtils.setField(service, "hedgeMinDelay", Duration.ofMillis(5));
+		service.initTransport();
+		return service;
+	}
+
+	static void respond(HttpExchange exchange, byte[] body) throws IOException {
+		exchange.getRequestBody().readAllBytes();
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static void stall() {
+		try {
+			Thread.sleep(3_000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	static byte[] restResponse() {
+		StringBuilder json = new StringBuilder("{\"result\":[");
+		for (int h = 0; h < HITS; h++) {
+			json.append(h > 0 ? "," : "")
+				.append("{\"id\":").append(h)
+				.append(",\"version\":0,\"score\":").append(score(h))
+				.append(",\"payload\":{\"question\":\"question ").append(h)
+				.append("\",\"sql\":\"SELECT * FROM t").append(h).append("\"}}");
+		}
+		return json.append("],\"status\":\"ok\",\"time\":0.0001}").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static float score(int hit) {
+		return 0.95f - hit * 0.01f;
+	}
+
+	static class StandInPoints extends PointsGrpc.PointsImplBase {
+		@Override
+		public void search(Points.SearchPoints request, StreamObserver<Points.SearchResponse> observer) {
+			Points.SearchResponse.Builder response = Points.SearchResponse.newBuilder().setTime(0.0001);
+			for (int h = 0; h < Math.min(HITS, request.getLimit()); h++) {
+				response.addResult(Points.ScoredPoint.newBuilder()
+					.setId(Points.PointId.newBuilder().setNum(h))
+					.setScore(score(h))
+					.putPayload("question", JsonWithInt.Value.newBuilder().setStringValue("question " + h).build())
+					.putPayload("sql", JsonWithInt.Value.newBuilder().setStringValue("SELECT * FROM t" + h).build()));
+			}
+			observer.onNext(response.build());
+			observer.onCompleted();
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.NLP2SparkSQL.project.utils.EmbeddingUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Mirror sync and fallback against a stand-in Qdrant REST server whose points can be changed
+ */
+class QdrantMirrorTests {
+
+	static final ObjectMapper JSON = new ObjectMapper();
+	static final List<String> TOPICS = List.of("employees", "orders", "customers", "products", "sales",
+		"regions", "invoices", "payments", "suppliers", "shipments");
+
+	final Map<Integer, String> questions = new ConcurrentSkipListMap<>();
+	// Vectors upserted under an unchanged question, by id
+	final Map<Integer, float[]> reembedded = new ConcurrentSkipListMap<>();
+	volatile boolean searchFails;
+	HttpServer server;
+
+	@TempDir
+	Path dir;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		for (int id = 0; id < 10; id++) {
+			questions.put(id, "List all " + TOPICS.get(id));
+		}
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/collections/docs", exchange -> respond(exchange,
+			Map.of("result", Map.of("status", "green", "points_count", questions.size()))));
+		server.createContext("/collections/docs/points/scroll", exchange -> {
+			exchange.getRequestBody().readAllBytes();
+			List<Map<String, Object>> points = new ArrayList<>();
+			questions.forEach((id, question) -> points.add(Map.of("id", id, "payload", payload(id, question, vector(id)))));
+			respond(exchange, Map.of("result", Map.of("points", points)));
+		});
+		server.createContext("/collections/docs/points", exchange -> {
+			Map<?, ?> request = JSON.readValue(exchange.getRequestBody(), Map.class);
+			List<Map<String, Object>> points = new ArrayList<>();
+			for (Object id : (List<?>) request.get("ids")) {
+				String question = questions.get(((Number) id).intValue());
+				if (question != null) {
+					points.add(Map.of("id", id, "vector", vector(((Number) id).intValue())));
+				}
+			}
+			respond(exchange, Map.of("result", points));
+		});
+		server.createContext("/collections/docs/points/search", exchange -> {
+			exchange.getRequestBody().readAllBytes();
+			if (searchFails) {
+				exchange.sendResponseHeaders(500, -1);
+				exchange.close();
+				return;
+			}
+			respond(exchange, Map.of("result", List.of()));
+		});
+		server.start();
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	void syncIsIncrementalAndSurvivesRestart() throws Exception {
+		QdrantService service = service(false);
+		QdrantMirror mirror = new QdrantMirror(service, dir.resolve("mirror"), EmbeddingUtils.getEmbeddingDimension());
+		mirror.load();
+
+		assertEquals(10, mirror.sync().added());
+		assertEquals("List all products", mirror.search(EmbeddingUtils.embed("products")).get("question"));
+
+		QdrantMirror.SyncReport unchanged = mirror.sync();
+		assertEquals(0, unchanged.added() + unchanged.updated() + unchanged.removed());
+
+		for (int id = 0; id < 6; id++) {
+			questions.remove(id);
+		}
+		questions.put(7, "Total payments per month");
+		questions.put(42, "List all warehouses");
+		QdrantMirror.SyncReport changed = mirror.sync();
+		assertEquals(1, changed.added());
+		assertEquals(1, changed.updated());
+		assertEquals(6, changed.removed());
+		assertEquals(5, changed.size());
+		assertEquals("List all warehouses", mirror.search(EmbeddingUtils.embed("warehouses")).get("question"));
+		assertEquals("SELECT * FROM t8", mirror.search(EmbeddingUtils.embed("suppliers")).get("sql"));
+		mirror.close();
+
+		QdrantMirror reopened = new QdrantMirror(service, dir.resolve("mirror"), EmbeddingUtils.getEmbeddingDimension());
+		reopened.load();
+		assertEquals(5, reopened.size());
+		assertEquals("Total payments per month", reopened.search(EmbeddingUtils.embed("payments per month")).get("question"));
+		reopened.close();
+	}
+
+	@Test
+	void reupsertedVectorsAreRefetchedAndLongTextsSurviveRestart() throws Exception {
+		QdrantService service = service(false);
+		QdrantMirror mirror = new QdrantMirror(service, dir.resolve("mirror"), EmbeddingUtils.getEmbeddingDimension());
+		mirror.load();
+		String longQuestion = "List all warehouses" + " with stock".repeat(7_000);
+		questions.put(11, longQuestion);
+		mirror.sync();
+
+		reembedded.put(3, EmbeddingUtils.embed("average salary by department"));
+		QdrantMirror.SyncReport changed = mirror.sync();
+		assertEquals(0, changed.added());
+		assertEquals(1, changed.updated());
+		assertEquals(11, changed.size());
+		assertEquals("List all products", mirror.search(EmbeddingUtils.embed("average salary by department")).get("question"));
+		mirror.close();
+
+		QdrantMirror reopened = new QdrantMirror(service, dir.resolve("mirror"), EmbeddingUtils.getEmbeddingDimension());
+		reopened.load();
+		assertEquals(11, reopened.size());
+		assertEquals(longQuestion, reopened.search(EmbeddingUtils.embed(longQuestion)).get("question"));
+		QdrantMirror.SyncReport unchanged = reopened.sync();
+		assertEquals(0, unchanged.added() + unchanged.updated() + unchanged.removed());
+		reopened.close();
+	}
+
+	@Test
+	void failedSearchesAreServedFromTheMirrorUntilQdrantIsHealthy() throws Exception {
+		QdrantService service = service(true);
+		try {
+			service.syncMirror();
+			searchFails = true;
+
+			Map<String, String> result = service.searchRelevantContextStructured(EmbeddingUtils.embed("regions"));
+			assertEquals("List all regions", result.get("question"));
+			assertFalse((Boolean) ReflectionTestUtils.getField(service, "qdrantAvailable"));
+
+			searchFails = false;
+			assertTrue(service.isHealthy());
+			assertTrue((Boolean) ReflectionTestUtils.getField(service, "qdrantAvailable"));
+		} finally {
+			service.closeTransport();
+		}
+	}
+
+	private QdrantService service(boolean mirrorEnabled) {
+		QdrantService service = new QdrantService();
+		ReflectionTestUtils.setField(service, "qdrantUrl", "http://localhost:" + server.getAddress().getPort());
+		ReflectionTestUtils.setField(service, "collectionName", "docs");
+		ReflectionTestUtils.setField(service, "topResults", 1);
+		ReflectionTestUtils.setField(service, "transport", "rest");
+		ReflectionTestUtils.setField(service, "timeoutMillis", 30_000L);
+		ReflectionTestUtils.setField(service, "searchBudget", Duration.ofSeconds(5));
+		ReflectionTestUtils.setField(service, "mirrorEnabled", mirrorEnabled);
+		ReflectionTestUtils.setField(service, "mirrorPath", dir.resolve("service-mirror").toString());
+		ReflectionTestUtils.setField(service, "mirrorMode", "fallback");
+		ReflectionTestUtils.setField(service, "mirrorSyncInterval", Duration.ofHours(1));
+		ReflectionTestUtils.setField(service, "mirrorProbeInterval", Duration.ofHours(1));
+		service.initTransport();
+		return service;
+	}
+
+	private float[] vector(int id) {
+		float[] vector = reembedded.get(id);
+		return vector != null ? vector : EmbeddingUtils.embed(questions.get(id));
+	}
+
+	private static Map<String, Object> payload(int id, String question, float[] vector) {
+		return Map.of("question", question, "sql", "SELECT * FROM t" + id,
+			QdrantMirror.VECTOR_CHECKSUM_FIELD, QdrantMirror.vectorChecksum(vector));
+	}
+
+	private static void respond(HttpExchange exchange, Object body) throws IOException {
+		byte[] bytes = JSON.writeValueAsBytes(body);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.NLP2SparkSQL.project.dto.QdrantSearchHit;
+import com.NLP2SparkSQL.project.utils.EmbeddingUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Multi-candidate example searches against a stand-in for the Qdrant batch search endpoint
+ */
+class QdrantServiceTests {
+
+	static final ObjectMapper JSON = new ObjectMapper();
+
+	final List<Map<String, Object>> batchRequests = new CopyOnWriteArrayList<>();
+	HttpServer server;
+	QdrantService qdrant;
+
+	@BeforeEach
+	void start() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/collections/docs/points/search/batch", this::searchBatch);
+		server.start();
+
+		qdrant = new QdrantService();
+		ReflectionTestUtils.setField(qdrant, "qdrantUrl", "http://localhost:" + server.getAddress().getPort());
+		ReflectionTestUtils.setField(qdrant, "collectionName", "docs");
+		ReflectionTestUtils.setField(qdrant, "transport", "rest");
+		ReflectionTestUtils.setField(qdrant, "topResults", 1);
+		ReflectionTestUtils.setField(qdrant, "timeoutMillis", 30_000L);
+		ReflectionTestUtils.setField(qdrant, "searchBudget", Duration.ofSeconds(5));
+		ReflectionTestUtils.setField(qdrant, "batchEnabled", true);
+		ReflectionTestUtils.setField(qdrant, "batchWindow", Duration.ofMillis(2));
+		ReflectionTestUtils.setField(qdrant, "batchMaxSize", 32);
+		ReflectionTestUtils.setField(qdrant, "batchCallerTimeout", Duration.ofSeconds(5));
+		ReflectionTestUtils.setField(qdrant, "cacheEnabled", true);
+		ReflectionTestUtils.setField(qdrant, "cacheMaxSize", 100L);
+		ReflectionTestUtils.setField(qdrant, "cacheTtl", Duration.ofMinutes(1));
+		ReflectionTestUtils.setField(qdrant, "cacheLshBits", 32);
+		qdrant.initTransport();
+	}
+
+	@AfterEach
+	void stop() {
+		qdrant.closeTransport();
+		server.stop(0);
+	}
+
+	@Test
+	void candidateSearchesAreBatchedWithVectorsAndCached() {
+		float[] embedding = EmbeddingUtils.embed("average salary by department");
+
+		List<QdrantSearchHit> first = qdrant.searchRelevantExamplesReactive(embedding, 4).block();
+		List<QdrantSearchHit> second = qdrant.searchRelevantExamplesReactive(embedding, 4).block();
+		Map<String, String> single = qdrant.searchRelevantContextReactive(embedding).block();
+
+		assertEquals(List.of("question 0", "question 1"), first.stream().map(QdrantSearchHit::getQuestion).toList());
+		assertEquals(3, first.get(0).getVector().length);
+		assertSame(first, second);
+		assertEquals("question 0", single.get("question"));
+
+		assertEquals(2, batchRequests.size());
+		Map<String, Object> candidates = searches(batchRequests.get(0)).get(0);
+		assertEquals(4, candidates.get("limit"));
+		assertEquals(true, candidates.get("with_vector"));
+		Map<String, Object> nearest = searches(batchRequests.get(1)).get(0);
+		assertEquals(1, nearest.get("limit"));
+		assertEquals(false, nearest.get("with_vector"));
+	}
+
+	@SuppressWarnings("unchecked")
+	static List<Map<String, Object>> searches(Map<String, Object> request) {
+		return (List<Map<String, Object>>) request.get("searches");
+	}
+
+	@SuppressWarnings("unchecked")
+	void searchBatch(HttpExchange exchange) throws IOException {
+		Map<String, Object> request = JSON.readValue(exchange.getRequestBody(), Map.class);
+		batchRequests.add(request);
+		List<List<Map<String, Object>>> results = new ArrayList<>();
+		for (Map<String, Object> search : searches(request)) {
+			boolean withVector = Boolean.TRUE.equals(search.get("with_vector"));
+			List<Map<String, Object>> hits = new ArrayList<>();
+			for (int h = 0; h < 2; h++) {
+				Map<String, Object> hit = new HashMap<>(Map.of("score", 0.9 - h / 10.0,
+					"payload", Map.of("question", "question " + h, "sql", "SELECT " + h)));
+				if (withVector) {
+					hit.put("vector", List.of(0.1, 0.2, 0.3));
+				}
+				hits.add(hit);
+			}
+			results.add(hits);
+		}
+		byte[] body = JSON.writeValueAsBytes(Map.of("result", results, "status", "ok"));
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.NLP2SparkSQL.project.utils.EmbeddingUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SemanticSqlCacheTests {
+
+	@Test
+	void similarQuestionsOnTheSameSchemaShareSqlUnlessLiteralsDiffer() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		SemanticSqlCache cache = new SemanticSqlCache(registry, true, 0.8, 100, 10, Duration.ofMinutes(5));
+
+		SqlResultCache.Key answered = key("schema-a", "list the top 5 employees by salary in the sales department");
+		cache.store(answered, embed(answered), "SELECT * FROM employees WHERE department = 'sales' ORDER BY salary DESC LIMIT 5");
+
+		SqlResultCache.Key rephrased = key("schema-a", "show the top 5 employees by salary in the sales department");
+		Optional<SemanticSqlCache.Match> match = cache.lookup(rephrased, embed(rephrased));
+		assertTrue(match.isPresent());
+		assertEquals(answered.question(), match.get().question());
+		assertTrue(match.get().similarity() >= 0.8f);
+
+		SqlResultCache.Key otherNumber = key("schema-a", "list the top 10 employees by salary in the sales department");
+		assertTrue(cache.lookup(otherNumber, embed(otherNumber)).isEmpty());
+
+		SqlResultCache.Key otherSchema = key("schema-b", rephrased.question());
+		assertTrue(cache.lookup(otherSchema, embed(otherSchema)).isEmpty());
+
+		assertEquals(1.0, registry.counter("sql.semantic.lookups", "result", "hit").count());
+		assertEquals(1.0, registry.counter("sql.semantic.lookups", "result", "token-mismatch").count());
+		assertEquals(1.0, registry.counter("sql.semantic.lookups", "result", "miss").count());
+		assertEquals(1, registry.find("sql.semantic.similarity").summary().count());
+
+		assertEquals(0, cache.evict("schema-b", null));
+		assertEquals(1, cache.evict("schema-a", "List the top 5 employees by salary in the sales department?"));
+		assertEquals(0, cache.size());
+		assertTrue(cache.lookup(rephrased, embed(rephrased)).isEmpty());
+	}
+
+	@Test
+	void questionsDifferingInDirectionOrComparisonMissAtTheDefaultThreshold() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		SemanticSqlCache cache = new SemanticSqlCache(registry, true, 0.95, 100, 10, Duration.ofMinutes(5));
+		List<List<String>> opposites = List.of(
+			List.of("show all employees in the sales department ordered by salary descending",
+				"show all employees in the sales department ordered by salary ascending"),
+			List.of("list the names and departments of all employees whose salary is greater than the average salary of the company",
+				"list the names and departments of all employees whose salary is less than the average salary of the company"),
+			List.of("find the employee with the highest salary in each department",
+				"find the employee with the lowest salary in each department"),
+			List.of("list the names and salaries of all employees in the sales department who have a manager assigned",
+				"list the names and salaries of all employees in the sales department who have no manager assigned"));
+
+		for (List<String> pair : opposites) {
+			SqlResultCache.Key stored = key("schema", pair.get(0));
+			cache.store(stored, embed(stored), "SELECT 1");
+			SqlResultCache.Key opposite = key("schema", pair.get(1));
+			assertTrue(EmbeddingUtils.cosineSimilarity(embed(stored), embed(opposite)) >= 0.95f, pair.get(1));
+			assertTrue(cache.lookup(opposite, embed(opposite)).isEmpty(), pair.get(1));
+		}
+		assertEquals(4.0, registry.counter("sql.semantic.lookups", "result", "token-mismatch").count());
+		assertEquals(0.0, registry.counter("sql.semantic.lookups", "result", "hit").count());
+		assertEquals(Set.of("5", "max", "by", "salary", "desc", "first"),
+			SemanticSqlCache.contentTokens("Top 5 by salary, DESCENDING, highest first"));
+	}
+
+	@Test
+	void similarityNeverAnswersAQuestionWithOtherContentWords() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		SemanticSqlCache cache = new SemanticSqlCache(registry, true, 0.5, 100, 10, Duration.ofMinutes(5));
+		List<List<String>> different = List.of(
+			List.of("average salary by department", "average salary by region"),
+			List.of("number of orders by region", "total of orders by region"),
+			List.of("count the employees in each department", "sum the employees in each department"));
+
+		for (List<String> pair : different) {
+			SqlResultCache.Key stored = key("schema", pair.get(0));
+			cache.store(stored, embed(stored), "SELECT 1");
+			SqlResultCache.Key other = key("schema", pair.get(1));
+			assertTrue(EmbeddingUtils.cosineSimilarity(embed(stored), embed(other)) >= 0.5f, pair.get(1));
+			assertTrue(cache.lookup(other, embed(other)).isEmpty(), pair.get(1));
+		}
+		assertEquals(3.0, registry.counter("sql.semantic.lookups", "result", "token-mismatch").count());
+
+		// With equal content tokens required, a threshold low enough for paraphrases is safe
+		SemanticSqlCache lenient = new SemanticSqlCache(registry, true, 0.0, 100, 10, Duration.ofMinutes(5));
+		SqlResultCache.Key answered = key("schema", "how many orders per region");
+		lenient.store(answered, embed(answered), "SELECT region, COUNT(*) FROM orders GROUP BY region");
+		SqlResultCache.Key paraphrase = key("schema", "show the order count by region");
+		assertEquals(answered.question(), lenient.lookup(paraphrase, embed(paraphrase)).map(SemanticSqlCache.Match::question).orElse(null));
+		SqlResultCache.Key otherKey = key("schema", "show the order count by department");
+		assertTrue(lenient.lookup(otherKey, embed(otherKey)).isEmpty());
+	}
+
+	private static SqlResultCache.Key key(String fingerprint, String question) {
+		return new SqlResultCache.Key(fingerprint, SqlResultCache.normalizeQuestion(question));
+	}
+
+	private static float[] embed(SqlResultCache.Key key) {
+		return EmbeddingUtils.embed(key.question());
+	}
+}
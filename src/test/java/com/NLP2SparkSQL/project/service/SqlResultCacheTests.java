@@ -0,0 +1,52 @@
+package com.NLP2SparkSQL.project.service;
+
+import com.NLP2SparkSQL.project.dto.SqlCacheEntry;
+import com.NLP2SparkSQL.project.utils.SparkSchemaParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlResultCacheTests {
+
+	@Test
+	void keysIgnoreFormattingAndNegativeEntriesExpireFirst() throws InterruptedException {
+		SqlResultCache cache = new SqlResultCache(new SimpleMeterRegistry(), true, 100,
+			Duration.ofMinutes(5), Duration.ofMillis(50));
+
+		Map<String, List<SparkSchemaParser.Column>> schema = new LinkedHashMap<>();
+		schema.put("employees", List.of(new SparkSchemaParser.Column("id", "INT"), new SparkSchemaParser.Column("name", "STRING")));
+		schema.put("departments", List.of(new SparkSchemaParser.Column("id", "INT")));
+		Map<String, List<SparkSchemaParser.Column>> reordered = new LinkedHashMap<>();
+		reordered.put("Departments", List.of(new SparkSchemaParser.Column("ID", "int")));
+		reordered.put("EMPLOYEES", List.of(new SparkSchemaParser.Column("id", "int"), new SparkSchemaParser.Column("name", "string")));
+		Map<String, List<SparkSchemaParser.Column>> other = Map.of("employees", List.of(new SparkSchemaParser.Column("id", "BIGINT")));
+
+		SqlResultCache.Key key = cache.key(schema, "List all employees?");
+		assertEquals(key, cache.key(reordered, "  list ALL   employees "));
+		assertNotEquals(key, cache.key(other, "List all employees"));
+
+		cache.put(key, "SELECT * FROM employees");
+		SqlResultCache.Key rejected = cache.key(schema, "Drop everything");
+		cache.putNegative(rejected, "ERROR: Invalid SQL structure");
+		assertEquals(Optional.of("SELECT * FROM employees"), cache.get(cache.key(reordered, "list all employees.")));
+		assertEquals(Optional.of("ERROR: Invalid SQL structure"), cache.get(rejected));
+
+		Thread.sleep(100);
+		assertTrue(cache.get(rejected).isEmpty());
+		List<SqlCacheEntry> entries = cache.entries(10);
+		assertEquals(1, entries.size());
+		assertEquals(1, entries.get(0).getHits());
+		assertEquals("list all employees", entries.get(0).getQuestion());
+
+		assertEquals(0, cache.evict(key.schemaFingerprint(), "other question"));
+		assertEquals(1, cache.evict(null, "LIST ALL EMPLOYEES"));
+		assertTrue(cache.get(key).isEmpty());
+	}
+}
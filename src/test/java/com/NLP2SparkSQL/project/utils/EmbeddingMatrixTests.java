@@ -0,0 +1,136 @@
+package com.NLP2SparkSQL.project.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddingMatrixTests {
+
+	static final int DIMENSION = 32;
+
+	@Test
+	void topKIsTheBestFirstPrefixOfAFullRanking() {
+		Random random = new Random(3);
+		EmbeddingMatrix matrix = matrix(random, 500);
+		float[] query = gaussian(random);
+
+		SimilarityHits hits = matrix.search(query, 10);
+
+		List<Integer> ranking = ranking(matrix, query);
+		assertEquals(10, hits.size());
+		for (int i = 0; i < hits.size(); i++) {
+			assertEquals(ranking.get(i), hits.row(i));
+			assertEquals(matrix.score(query, hits.row(i)), hits.score(i));
+		}
+		assertEquals(500, matrix.search(query, 1_000).size());
+		assertTrue(matrix.search(query, 0).isEmpty());
+		assertTrue(matrix.search(new float[DIMENSION], 10).isEmpty());
+	}
+
+	@Test
+	void rowsBelowTheThresholdAreCutOff() {
+		Random random = new Random(5);
+		EmbeddingMatrix matrix = matrix(random, 500);
+		float[] query = matrix.row(42);
+		float minScore = 0.2f;
+
+		SimilarityHits hits = matrix.search(query, 500, minScore, false);
+
+		List<Integer> expected = ranking(matrix, query).stream()
+			.filter(row -> matrix.score(query, row) >= minScore)
+			.toList();
+		assertTrue(expected.size() > 0 && expected.size() < 500);
+		assertEquals(expected.size(), hits.size());
+		for (int i = 0; i < hits.size(); i++) {
+			assertEquals(expected.get(i), hits.row(i));
+		}
+		assertEquals(42, hits.row(0));
+
+		SimilarityHits early = matrix.search(query, 3, minScore, true);
+		assertEquals(3, early.size());
+		for (int i = 0; i < early.size(); i++) {
+			assertTrue(early.score(i) >= minScore);
+			assertTrue(i == 0 || early.score(i - 1) >= early.score(i));
+		}
+	}
+
+	@Test
+	void parallelScanMergesToTheSequentialResult() {
+		Random random = new Random(9);
+		EmbeddingMatrix sequential = matrix(random, 20_000).parallelThreshold(Integer.MAX_VALUE);
+		// Copies of one row in different chunks, so ties have to be broken the same way
+		float[] duplicate = sequential.row(7);
+		for (int row : new int[] {1_000, 9_000, 17_000}) {
+			sequential.set(row, duplicate);
+		}
+		EmbeddingMatrix parallel = new EmbeddingMatrix(DIMENSION, sequential.rows())
+			.parallelThreshold(1)
+			.pool(new ForkJoinPool(4));
+		for (int row = 0; row < sequential.rows(); row++) {
+			parallel.add(sequential.row(row));
+		}
+
+		for (float[] query : List.of(duplicate, gaussian(random), gaussian(random))) {
+			SimilarityHits expected = sequential.search(query, 25);
+			SimilarityHits actual = parallel.search(query, 25);
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.row(i), actual.row(i));
+				assertEquals(expected.score(i), actual.score(i));
+			}
+		}
+		SimilarityHits ties = parallel.search(duplicate, 4);
+		assertArrayEquals(new int[] {7, 1_000, 9_000, 17_000}, IntStream.range(0, 4).map(ties::row).toArray());
+	}
+
+	@Test
+	void heapKeepsTheBestScoresAndTheLowerRowOnTies() {
+		TopKHeap heap = new TopKHeap(3);
+		float[] scores = {0.1f, 0.9f, 0.5f, 0.9f, 0.3f, 0.7f};
+		for (int row = scores.length - 1; row >= 0; row--) {
+			heap.offer(row, scores[row]);
+		}
+		TopKHeap other = new TopKHeap(3);
+		other.offer(10, 0.8f);
+		other.offer(11, 0.2f);
+		heap.addAll(other);
+
+		SimilarityHits hits = heap.toHits();
+
+		assertArrayEquals(new int[] {1, 3, 10}, IntStream.range(0, hits.size()).map(hits::row).toArray());
+		assertEquals(0.9f, hits.score(0));
+		assertEquals(0.8f, hits.score(2));
+	}
+
+	/**
+	 * Every row, best score first and lower row first on ties
+	 */
+	static List<Integer> ranking(EmbeddingMatrix matrix, float[] query) {
+		return IntStream.range(0, matrix.rows()).boxed()
+			.sorted(Comparator.comparingDouble((Integer row) -> -matrix.score(query, row))
+				.thenComparingInt(row -> row))
+			.toList();
+	}
+
+	static EmbeddingMatrix matrix(Random random, int rows) {
+		EmbeddingMatrix matrix = new EmbeddingMatrix(DIMENSION, rows);
+		for (int row = 0; row < rows; row++) {
+			matrix.add(gaussian(random));
+		}
+		return matrix;
+	}
+
+	static float[] gaussian(Random random) {
+		float[] vector = new float[DIMENSION];
+		for (int i = 0; i < DIMENSION; i++) {
+			vector[i] = (float) random.nextGaussian();
+		}
+		return vector;
+	}
+}
@@ -0,0 +1,70 @@
+package com.NLP2SparkSQL.project.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.Function;
+
+import static com.NLP2SparkSQL.project.utils.EmbeddingUtilsTests.GOLDEN_INPUTS;
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@Tag("benchmark")
+class EmbeddingUtilsBenchmarks {
+
+	@Test
+	void tokenizeThroughputAgainstRegexPipeline() {
+		int iterations = 20_000;
+		long regexNanos = time(iterations, EmbeddingUtilsTests::regexTokenize);
+		long scannerNanos = time(iterations, EmbeddingUtils::tokenize);
+
+		log.info("tokenize over {} golden inputs x {}: regex {} ns/text, scanner {} ns/text ({}x)",
+			GOLDEN_INPUTS.size(), iterations,
+			regexNanos / ((long) iterations * GOLDEN_INPUTS.size()),
+			scannerNanos / ((long) iterations * GOLDEN_INPUTS.size()),
+			String.format("%.1f", (double) regexNanos / scannerNanos));
+	}
+
+	@Test
+	void embedIntoDoesNotAllocateOnceWarm() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		float[] out = new float[EmbeddingUtils.getEmbeddingDimension()];
+		String text = GOLDEN_INPUTS.get(4);
+		for (EmbeddingVersion version : EmbeddingVersion.values()) {
+			// Long enough for the JIT to compile (and scalar-replace Vector API temporaries)
+			for (int i = 0; i < 50_000; i++) {
+				EmbeddingUtils.embedInto(text, out, version);
+			}
+
+			long before = threads.getCurrentThreadAllocatedBytes();
+			for (int i = 0; i < 1_000; i++) {
+				EmbeddingUtils.embedInto(text, out, version);
+			}
+			long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+			log.info("embedInto {}: {} bytes allocated over 1000 warm calls", version, allocated);
+			assertTrue(allocated < 1_000, version + " allocated " + allocated + " bytes over 1000 calls");
+		}
+	}
+
+	private static long time(int iterations, Function<String, List<String>> tokenizer) {
+		int sink = 0;
+		for (int i = 0; i < iterations / 4; i++) {
+			for (String text : GOLDEN_INPUTS) {
+				sink += tokenizer.apply(text).size();
+			}
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			for (String text : GOLDEN_INPUTS) {
+				sink += tokenizer.apply(text).size();
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		assertTrue(sink > 0);
+		return elapsed;
+	}
+}
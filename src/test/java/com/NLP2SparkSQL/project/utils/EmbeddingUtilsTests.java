@@ -0,0 +1,231 @@
+package com.NLP2SparkSQL.project.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddingUtilsTests {
+
+	static final List<String> GOLDEN_INPUTS = List.of(
+		"List employees by department",
+		"Which customers have had at least one order associated with a product?",
+		"What is the average salary per department in 2023?",
+		"Show sales distribution by region",
+		"Find jobs with performance review scores above 4.5, ordered by hire_date",
+		"WHICH   employees,   have  had   AT LEAST ONE review?",
+		"associated  with; at least  one; which_x; which1 İwhich",
+		"Combien de commandes par région ? ÉTÉ 2023 — naïve café",
+		"SELECT COUNT(*) FROM orders o JOIN customers c ON o.customer_id = c.id WHERE c.city = 'Paris';",
+		"a an the to is be",
+		"",
+		"   "
+	);
+
+	@Test
+	void tokenizeMatchesRegexPipeline() {
+		for (String text : GOLDEN_INPUTS) {
+			assertEquals(regexTokenize(text), EmbeddingUtils.tokenize(text), "Tokens differ for: " + text);
+		}
+	}
+
+	@Test
+	void v1EmbeddingsAreBitIdenticalToTheHashMapPipeline() {
+		float[] out = new float[EmbeddingUtils.getEmbeddingDimension()];
+		for (String text : GOLDEN_INPUTS) {
+			float[] expected = hashMapEmbed(text);
+			EmbeddingUtils.embedInto(text, out, EmbeddingVersion.V1);
+			assertArrayEquals(expected, out, "V1 embedding differs for: " + text);
+			assertArrayEquals(expected, EmbeddingUtils.embed(text), "embed differs for: " + text);
+		}
+	}
+
+	@Test
+	void parallelBatchEmbeddingIsBitIdenticalToEmbeddingEachText() {
+		List<String> texts = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			texts.add(GOLDEN_INPUTS.get(i % GOLDEN_INPUTS.size()) + " variant " + (i % 7 == 0 ? "" : "number " + i));
+		}
+		EmbeddingMatrix matrix = new EmbeddingMatrix(EmbeddingUtils.getEmbeddingDimension(), 1);
+		matrix.add(EmbeddingUtils.embed("already present"));
+
+		EmbeddingUtils.configureBatchParallelism(4);
+		int firstRow;
+		try {
+			firstRow = EmbeddingUtils.batchEmbedInto(texts, matrix);
+		} finally {
+			EmbeddingUtils.configureBatchParallelism(0);
+		}
+
+		assertEquals(1, firstRow);
+		assertEquals(texts.size() + 1, matrix.rows());
+		for (int i = 0; i < texts.size(); i++) {
+			assertArrayEquals(EmbeddingUtils.embed(texts.get(i)), matrix.row(firstRow + i), "Row differs for: " + texts.get(i));
+		}
+		float[] query = EmbeddingUtils.embed(texts.get(5));
+		assertEquals(firstRow + 5, matrix.search(query, 1).row(0));
+	}
+
+	@Test
+	void embedIntoV2IsDeterministicAndNormalized() {
+		float[] first = new float[EmbeddingUtils.getEmbeddingDimension()];
+		float[] second = new float[EmbeddingUtils.getEmbeddingDimension()];
+		String text = GOLDEN_INPUTS.get(1);
+
+		EmbeddingUtils.embedInto(text, first, EmbeddingVersion.V2);
+		EmbeddingUtils.embedInto(new StringBuilder(text), second, EmbeddingVersion.V2);
+
+		assertArrayEquals(first, second);
+		assertEquals(1.0f, EmbeddingUtils.cosineSimilarity(first, first), 1e-5f);
+	}
+
+	@Test
+	void embedSparseHasOneNormalizedEntryPerDistinctToken() {
+		String text = GOLDEN_INPUTS.get(4);
+		int distinct = Set.copyOf(EmbeddingUtils.tokenize(text)).size();
+
+		SparseVector sparse = EmbeddingUtils.embedSparse(text);
+		SparseVector projected = EmbeddingUtils.embedSparse(text, EmbeddingUtils.getEmbeddingDimension());
+		float[] dense = projected.toDense(EmbeddingUtils.getEmbeddingDimension());
+
+		assertEquals(distinct, sparse.size());
+		assertEquals(1.0f, sparse.norm(), 1e-5f);
+		assertEquals(1.0f, sparse.cosine(EmbeddingUtils.embedSparse(text.toUpperCase())), 1e-5f);
+		assertEquals(projected.dot(projected), projected.dot(dense), 1e-6f);
+		assertEquals(0, EmbeddingUtils.embedSparse("").size());
+	}
+
+	@Test
+	void sparseSimilarityRanksQuestionsSharingMoreTokensHigher() {
+		SparseVector query = EmbeddingUtils.embedSparse("average salary per department");
+		List<String> candidates = List.of(
+			"List all orders placed last month",
+			"Average salary per department",
+			"Highest salary in each region",
+			"Average salary per department and job title");
+
+		List<String> ranked = candidates.stream()
+			.sorted(Comparator.comparingDouble(candidate -> -query.cosine(EmbeddingUtils.embedSparse(candidate))))
+			.toList();
+
+		assertEquals(List.of(
+			"Average salary per department",
+			"Average salary per department and job title",
+			"Highest salary in each region",
+			"List all orders placed last month"), ranked);
+		assertEquals(0.0f, query.cosine(EmbeddingUtils.embedSparse("List all orders placed last month")));
+		assertEquals(query.dot(EmbeddingUtils.embedSparse("salary")),
+			EmbeddingUtils.embedSparse("salary").dot(query), 1e-7f);
+	}
+
+	/**
+	 * Reference copy of the embedding pipeline that produced the stored v1 vectors: regex tokens,
+	 * HashMap term weights summed in HashMap order, three seeded Random streams per token
+	 */
+	static float[] hashMapEmbed(String text) {
+		int dimension = EmbeddingUtils.getEmbeddingDimension();
+		if (text == null || text.trim().isEmpty()) {
+			return new float[dimension];
+		}
+		List<String> tokens = regexTokenize(text);
+		if (tokens.isEmpty()) {
+			return new float[dimension];
+		}
+
+		Set<String> sqlKeywords = Set.of(
+			"select", "from", "where", "join", "group", "order", "having", "count", "sum", "avg",
+			"max", "min", "distinct", "limit", "offset", "inner", "left", "right", "outer",
+			"union", "intersect", "except", "case", "when", "then", "else", "end", "as",
+			"and", "or", "not", "in", "exists", "between", "like", "is", "null");
+		Set<String> businessKeywords = Set.of(
+			"customer", "order", "product", "sale", "revenue", "profit", "quantity", "price",
+			"total", "amount", "date", "time", "month", "year", "category", "status", "name",
+			"email", "address", "phone", "city", "state", "country", "employee", "job", "performance",
+			"review", "department", "salary", "manager", "hire", "position", "work", "company");
+
+		Map<String, Integer> counts = new HashMap<>();
+		for (String token : tokens) {
+			counts.put(token, counts.getOrDefault(token, 0) + 1);
+		}
+		Map<String, Float> weights = new HashMap<>();
+		for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+			String token = entry.getKey();
+			float weight = (float) entry.getValue() / tokens.size();
+			if (sqlKeywords.contains(token)) {
+				weight *= 3.0f;
+			}
+			if (businessKeywords.contains(token)) {
+				weight *= 2.0f;
+			}
+			if (token.equals("jobs") || token.equals("employees") || token.equals("performance") || token.equals("review")) {
+				weight *= 2.5f;
+			}
+			weights.put(token, weight);
+		}
+
+		float[] embedding = new float[dimension];
+		for (Map.Entry<String, Float> entry : weights.entrySet()) {
+			String token = entry.getKey();
+			float weight = entry.getValue();
+			byte[] bytes = token.getBytes(StandardCharsets.UTF_8);
+			Random random1 = new Random(Arrays.hashCode(bytes));
+			Random random2 = new Random(token.hashCode() * 31 + token.length());
+			Random random3 = new Random(token.hashCode() * 37 + bytes.length);
+			for (int i = 0; i < dimension; i++) {
+				float val1 = (float) (random1.nextGaussian() * 0.4f);
+				float val2 = (float) (random2.nextGaussian() * 0.4f);
+				float val3 = (float) (random3.nextGaussian() * 0.4f);
+				embedding[i] += (val1 + val2 + val3) / 3.0f * weight;
+			}
+		}
+
+		float norm = 0.0f;
+		for (float value : embedding) {
+			norm += value * value;
+		}
+		norm = (float) Math.sqrt(norm);
+		if (norm > 1e-6f) {
+			for (int i = 0; i < dimension; i++) {
+				embedding[i] /= norm;
+			}
+		} else {
+			Arrays.fill(embedding, 0.0f);
+		}
+		return embedding;
+	}
+
+	/**
+	 * Reference copy of the replaceAll/split tokenizer the scanner replaced
+	 */
+	static List<String> regexTokenize(String text) {
+		String processed = text.toLowerCase()
+			.replaceAll("\\bwhich\\b", "what")
+			.replaceAll("\\bassociated with\\b", "related to")
+			.replaceAll("\\bhave had\\b", "have")
+			.replaceAll("\\bat least one\\b", "one or more")
+			.replaceAll("[^a-zA-Z0-9\\s]", " ")
+			.replaceAll("\\s+", " ")
+			.trim();
+
+		Set<String> stopWords = Set.of("the", "is", "are", "was", "were", "be", "been", "being",
+			"have", "has", "had", "do", "does", "did", "will", "would",
+			"could", "should", "may", "might", "must", "can", "a", "an", "to");
+
+		List<String> tokens = new ArrayList<>();
+		for (String word : processed.split("\\s+")) {
+			if (word.length() > 1 && !stopWords.contains(word)) {
+				tokens.add(word);
+			}
+		}
+		return tokens;
+	}
+}
@@ -0,0 +1,32 @@
+package com.NLP2SparkSQL.project.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static com.NLP2SparkSQL.project.utils.HnswIndexTests.*;
+
+@Slf4j
+@Tag("benchmark")
+class HnswIndexBenchmarks {
+
+	static final int ROWS = 5_000;
+	static final int QUERIES = 100;
+
+	@Test
+	void concurrentBuildAndSearchLatency() throws Exception {
+		float[][] vectors = corpus(new Random(3), ROWS);
+		HnswIndex index = new HnswIndex(DIMENSION, 16, 200, 64);
+
+		long start = System.nanoTime();
+		insertConcurrently(index, vectors);
+		long buildMillis = (System.nanoTime() - start) / 1_000_000;
+
+		long[] searchNanos = new long[1];
+		double recall = recall(index, new Random(11), QUERIES, searchNanos);
+		log.info("HNSW over {} x {}: built in {}ms on 4 threads, recall@{} {}, {} us/query",
+			ROWS, DIMENSION, buildMillis, K, recall, searchNanos[0] / 1_000 / QUERIES);
+	}
+}
@@ -0,0 +1,144 @@
+package com.NLP2SparkSQL.project.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HnswIndexTests {
+
+	static final int DIMENSION = 384;
+	static final int ROWS = 1_000;
+	static final int QUERIES = 50;
+	static final int K = 10;
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void concurrentInsertsReachHighRecall() throws Exception {
+		HnswIndex index = new HnswIndex(DIMENSION, 16, 200, 64);
+		insertConcurrently(index, corpus(new Random(3), ROWS));
+		assertEquals(ROWS, index.size());
+
+		double recall = recall(index, new Random(11), QUERIES, null);
+		assertTrue(recall >= 0.85, "recall " + recall);
+	}
+
+	static void insertConcurrently(HnswIndex index, float[][] vectors) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				int first = t;
+				futures.add(executor.submit(() -> {
+					for (int row = first; row < vectors.length; row += 4) {
+						index.add(vectors[row]);
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Recall@K of the index against an exact scan, for queries near indexed vectors
+	 *
+	 * @param searchNanos when given, receives the total time spent in index searches
+	 */
+	static double recall(HnswIndex index, Random random, int queries, long[] searchNanos) {
+		// Node ids follow insertion order, so map them back to the corpus rows
+		EmbeddingMatrix exact = new EmbeddingMatrix(DIMENSION, index.size());
+		for (int id = 0; id < index.size(); id++) {
+			exact.add(index.vector(id));
+		}
+
+		int found = 0;
+		for (int q = 0; q < queries; q++) {
+			float[] query = exact.row(random.nextInt(index.size()));
+			for (int i = 0; i < DIMENSION; i++) {
+				query[i] += (float) random.nextGaussian() * 0.02f;
+			}
+			Set<Integer> truth = new HashSet<>();
+			SimilarityHits expected = exact.search(query, K);
+			for (int i = 0; i < expected.size(); i++) {
+				truth.add(expected.row(i));
+			}
+			long start = System.nanoTime();
+			SimilarityHits hits = index.search(query, K);
+			if (searchNanos != null) {
+				searchNanos[0] += System.nanoTime() - start;
+			}
+			for (int i = 0; i < hits.size(); i++) {
+				if (truth.contains(hits.row(i))) {
+					found++;
+				}
+			}
+		}
+		return (double) found / (queries * K);
+	}
+
+	@Test
+	void savedIndexAnswersLikeTheOriginal() throws Exception {
+		Random random = new Random(5);
+		HnswIndex index = new HnswIndex(DIMENSION, 8, 100, 32);
+		for (float[] vector : corpus(random, ROWS)) {
+			index.add(vector);
+		}
+		Path file = tempDir.resolve("index.bin");
+		index.save(file);
+
+		HnswIndex loaded = HnswIndex.load(file);
+
+		assertEquals(index.size(), loaded.size());
+		assertEquals(8, loaded.m());
+		assertEquals(32, loaded.efSearch());
+		for (int q = 0; q < 20; q++) {
+			float[] query = gaussian(random);
+			SimilarityHits expected = index.search(query, K);
+			SimilarityHits actual = loaded.search(query, K);
+			for (int i = 0; i < K; i++) {
+				assertEquals(expected.row(i), actual.row(i));
+				assertEquals(expected.score(i), actual.score(i));
+			}
+		}
+	}
+
+	static float[][] corpus(Random random, int rows) {
+		float[][] centroids = new float[100][];
+		for (int c = 0; c < centroids.length; c++) {
+			centroids[c] = gaussian(random);
+		}
+		float[][] vectors = new float[rows][];
+		for (int row = 0; row < rows; row++) {
+			float[] centroid = centroids[random.nextInt(centroids.length)];
+			vectors[row] = gaussian(random);
+			for (int i = 0; i < DIMENSION; i++) {
+				vectors[row][i] = centroid[i] + vectors[row][i] * 0.6f;
+			}
+		}
+		return vectors;
+	}
+
+	private static float[] gaussian(Random random) {
+		float[] vector = new float[DIMENSION];
+		for (int i = 0; i < DIMENSION; i++) {
+			vector[i] = (float) random.nextGaussian();
+		}
+		return vector;
+	}
+}
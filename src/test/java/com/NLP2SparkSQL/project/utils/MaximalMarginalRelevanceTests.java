@@ -0,0 +1,23 @@
+package com.NLP2SparkSQL.project.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MaximalMarginalRelevanceTests {
+
+	@Test
+	void nearDuplicatesLoseToDifferentCandidates() {
+		float[] relevance = {0.90f, 0.89f, 0.80f};
+		float[][] vectors = {
+			EmbeddingUtils.embed("List employees by department"),
+			EmbeddingUtils.embed("List the employees per department"),
+			EmbeddingUtils.embed("Average order amount for each customer")
+		};
+
+		assertArrayEquals(new int[]{0, 2, 1}, MaximalMarginalRelevance.select(relevance, vectors, 3, 0.7));
+		assertArrayEquals(new int[]{0, 1, 2}, MaximalMarginalRelevance.select(relevance, vectors, 3, 1.0));
+		assertArrayEquals(new int[]{0, 2}, MaximalMarginalRelevance.select(relevance, vectors, 2, 0.7));
+		assertEquals(0, MaximalMarginalRelevance.select(new float[0], new float[0][], 3, 0.7).length);
+	}
+}
@@ -0,0 +1,73 @@
+package com.NLP2SparkSQL.project.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MicroBatcherTests {
+
+	@Test
+	void concurrentRequestsShareBatchesAndGetTheirOwnResults() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+		try (MicroBatcher<Integer, String> batcher = new MicroBatcher<>("test.batch", Duration.ofMillis(50), 8,
+				inputs -> {
+					batchSizes.add(inputs.size());
+					List<String> outputs = new ArrayList<>();
+					for (Integer input : inputs) {
+						outputs.add("result " + input);
+					}
+					return CompletableFuture.completedFuture(outputs);
+				}, registry)) {
+
+			ExecutorService callers = Executors.newFixedThreadPool(20);
+			try {
+				List<Future<String>> results = new ArrayList<>();
+				for (int i = 0; i < 20; i++) {
+					int input = i;
+					results.add(callers.submit(() -> batcher.submit(input, Duration.ofSeconds(5)).get()));
+				}
+				for (int i = 0; i < 20; i++) {
+					assertEquals("result " + i, results.get(i).get());
+				}
+			} finally {
+				callers.shutdown();
+			}
+		}
+
+		assertEquals(20, batchSizes.stream().mapToInt(Integer::intValue).sum());
+		assertTrue(batchSizes.size() < 20, "expected batching, got " + batchSizes);
+		assertTrue(batchSizes.stream().allMatch(size -> size <= 8));
+		assertEquals(20, registry.get("test.batch.wait").timer().count());
+		assertEquals(batchSizes.size(), registry.get("test.batch.size").summary().count());
+	}
+
+	@Test
+	void callersTimeOutIndependentlyOfTheBatch() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		try (MicroBatcher<Integer, String> batcher = new MicroBatcher<>("test.batch", Duration.ofMillis(1), 4,
+				inputs -> new CompletableFuture<>(), registry)) {
+
+			ExecutionException error = assertThrows(ExecutionException.class,
+				() -> batcher.submit(1, Duration.ofMillis(50)).get());
+			assertInstanceOf(TimeoutException.class, error.getCause());
+		}
+		// Counted by the timer thread right after it fails the future the caller was waiting on
+		for (int i = 0; i < 100 && registry.get("test.batch.timeouts").counter().count() == 0; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(1.0, registry.get("test.batch.timeouts").counter().count());
+	}
+}
@@ -0,0 +1,44 @@
+package com.NLP2SparkSQL.project.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static com.NLP2SparkSQL.project.utils.QdrantResponseDecoderTests.mapPath;
+import static com.NLP2SparkSQL.project.utils.QdrantResponseDecoderTests.response;
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@Tag("benchmark")
+class QdrantResponseDecoderBenchmarks {
+
+	@Test
+	void allocatesLessThanTheMapPath() throws Exception {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		byte[] json = response(10, 1);
+		int iterations = 2_000;
+
+		for (int i = 0; i < iterations; i++) {
+			mapPath(json);
+			QdrantResponseDecoder.firstValidHit(json);
+		}
+
+		long before = threads.getCurrentThreadAllocatedBytes();
+		for (int i = 0; i < iterations; i++) {
+			mapPath(json);
+		}
+		long mapBytes = (threads.getCurrentThreadAllocatedBytes() - before) / iterations;
+
+		before = threads.getCurrentThreadAllocatedBytes();
+		for (int i = 0; i < iterations; i++) {
+			QdrantResponseDecoder.firstValidHit(json);
+		}
+		long streamingBytes = (threads.getCurrentThreadAllocatedBytes() - before) / iterations;
+
+		log.info("Qdrant response of {} bytes: map path {} B/decode, streaming {} B/decode ({}x)",
+			json.length, mapBytes, streamingBytes, String.format("%.1f", (double) mapBytes / streamingBytes));
+		assertTrue(streamingBytes * 5 < mapBytes, "streaming " + streamingBytes + " vs map " + mapBytes);
+	}
+}
@@ -0,0 +1,104 @@
+package com.NLP2SparkSQL.project.utils;
+
+import com.NLP2SparkSQL.project.dto.QdrantSearchHit;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QdrantResponseDecoderTests {
+
+	static final ObjectMapper MAPPER = new ObjectMapper();
+
+	@Test
+	void decodesTheFirstHitWithQuestionAndSql() throws Exception {
+		byte[] json = response(5, 2);
+
+		QdrantSearchHit hit = QdrantResponseDecoder.firstValidHit(json).orElseThrow();
+
+		assertEquals(mapPath(json), hit.toResult());
+		assertEquals("question 2", hit.getQuestion());
+		assertEquals("SELECT * FROM t2", hit.getSql());
+		assertEquals(0.98, hit.getScore(), 1e-9);
+	}
+
+	@Test
+	void emptyOrInvalidResultsDecodeToNothing() throws Exception {
+		assertTrue(QdrantResponseDecoder.firstValidHit("{\"result\":[],\"status\":\"ok\"}".getBytes()).isEmpty());
+		assertTrue(QdrantResponseDecoder.firstValidHit("{\"status\":\"ok\"}".getBytes()).isEmpty());
+		assertTrue(QdrantResponseDecoder.firstValidHit(response(3, 3)).isEmpty());
+	}
+
+	@Test
+	void decodesTheValidHitsOfEverySearchOfABatch() throws Exception {
+		String single = new String(response(3, 1), StandardCharsets.UTF_8);
+		String hits = single.substring(single.indexOf('['), single.lastIndexOf(']') + 1);
+		byte[] batch = ("{\"result\":[" + hits + ",[]," + hits + "],\"status\":\"ok\"}").getBytes(StandardCharsets.UTF_8);
+
+		List<List<QdrantSearchHit>> decoded = QdrantResponseDecoder.validHitsPerSearch(batch);
+
+		assertEquals(3, decoded.size());
+		assertEquals(List.of("question 1", "question 2"), decoded.get(0).stream().map(QdrantSearchHit::getQuestion).toList());
+		assertTrue(decoded.get(1).isEmpty());
+		assertEquals(2, decoded.get(2).size());
+	}
+
+	@Test
+	void candidateHitsKeepTheirStoredVector() throws Exception {
+		byte[] json = "{\"result\":[{\"score\":0.5,\"payload\":{\"question\":\"q\",\"sql\":\"s\"},\"vector\":[0.25,-1,2.5]}]}"
+			.getBytes(StandardCharsets.UTF_8);
+
+		assertArrayEquals(new float[] {0.25f, -1f, 2.5f}, QdrantResponseDecoder.validHits(json).get(0).getVector());
+		assertNull(QdrantResponseDecoder.firstValidHit(json).orElseThrow().getVector());
+	}
+
+	/**
+	 * Response with vectors and extra payload fields; hits before firstValid have no SQL
+	 */
+	static byte[] response(int hits, int firstValid) {
+		Random random = new Random(1);
+		StringBuilder json = new StringBuilder("{\"time\":0.0012,\"status\":\"ok\",\"result\":[");
+		for (int h = 0; h < hits; h++) {
+			if (h > 0) {
+				json.append(',');
+			}
+			json.append("{\"id\":").append(1000 + h).append(",\"version\":3,\"score\":").append(1.0 - h / 100.0);
+			json.append(",\"payload\":{\"question\":\"question ").append(h).append('"');
+			json.append(",\"schema\":\"CREATE TABLE t").append(h).append(" (id INT, name STRING, created DATE)\"");
+			json.append(",\"tags\":[\"hr\",\"reporting\"],\"meta\":{\"source\":\"seed\",\"rank\":").append(h).append('}');
+			if (h >= firstValid) {
+				json.append(",\"sql\":\"SELECT * FROM t").append(h).append('"');
+			}
+			json.append("},\"vector\":[");
+			for (int i = 0; i < 384; i++) {
+				json.append(i > 0 ? "," : "").append(random.nextFloat() - 0.5f);
+			}
+			json.append("]}");
+		}
+		return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reference copy of the Map-based extraction the decoder replaced
+	 */
+	@SuppressWarnings("unchecked")
+	static Map<String, String> mapPath(byte[] json) throws Exception {
+		Map<String, Object> response = MAPPER.readValue(json, Map.class);
+		List<Map<String, Object>> results = (List<Map<String, Object>>) response.get("result");
+		for (Map<String, Object> match : results) {
+			double confidence = match.containsKey("score") ? ((Number) match.get("score")).doubleValue() : 0.0;
+			Map<String, Object> payload = (Map<String, Object>) match.get("payload");
+			String question = payload.getOrDefault("question", "").toString().trim();
+			String sql = payload.getOrDefault("sql", "").toString().trim();
+			if (!question.isEmpty() && !sql.isEmpty()) {
+				return Map.of("question", question, "sql", sql, "confidence", String.valueOf(confidence));
+			}
+		}
+		return Map.of("question", "", "sql", "", "confidence", "0");
+	}
+}
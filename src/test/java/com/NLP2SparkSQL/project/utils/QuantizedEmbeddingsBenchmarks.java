@@ -0,0 +1,62 @@
+package com.NLP2SparkSQL.project.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.function.Function;
+
+import static com.NLP2SparkSQL.project.utils.QuantizedEmbeddingsTests.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@Tag("benchmark")
+class QuantizedEmbeddingsBenchmarks {
+
+	static final int ROWS = 20_000;
+	static final int CLUSTERS = 200;
+	static final int QUERIES = 200;
+
+	@Test
+	void twoStageSearchRecallAndLatencyAgainstExactCosine() {
+		Random random = new Random(42);
+		EmbeddingMatrix exact = clustered(random, ROWS, CLUSTERS);
+		float[][] queries = queries(random, exact, QUERIES);
+
+		QuantizedEmbeddings rescored = QuantizedEmbeddings.of(exact, true);
+		QuantizedEmbeddings compressed = QuantizedEmbeddings.of(exact, false);
+
+		double binaryRecall = recall(exact, queries, q -> rescored.searchBinary(q, K));
+		double int8Recall = recall(exact, queries, q -> compressed.searchInt8(q, K));
+		double twoStageInt8Recall = recall(exact, queries, q -> compressed.search(q, K, 10));
+		double twoStageFloatRecall = recall(exact, queries, q -> rescored.search(q, K, 10));
+
+		double exactMicros = micros(queries, q -> exact.search(q, K));
+		double int8Micros = micros(queries, q -> compressed.searchInt8(q, K));
+		double twoStageMicros = micros(queries, q -> rescored.search(q, K, 10));
+
+		log.info("quantized search over {} x {}: {} bytes/row vs {} float",
+			ROWS, DIMENSION, rescored.bytesPerRow(), DIMENSION * Float.BYTES);
+		log.info("recall@{}: binary {}, int8 {}, two-stage int8 {}, two-stage float {}",
+			K, binaryRecall, int8Recall, twoStageInt8Recall, twoStageFloatRecall);
+		log.info("latency/query: exact {} us, int8 {} us, two-stage {} us",
+			Math.round(exactMicros), Math.round(int8Micros), Math.round(twoStageMicros));
+	}
+
+	private static double micros(float[][] queries, Function<float[], SimilarityHits> search) {
+		int sink = 0;
+		for (int round = 0; round < 3; round++) {
+			for (float[] query : queries) {
+				sink += search.apply(query).size();
+			}
+		}
+		long start = System.nanoTime();
+		for (float[] query : queries) {
+			sink += search.apply(query).size();
+		}
+		long elapsed = System.nanoTime() - start;
+		assertTrue(sink > 0);
+		return elapsed / 1_000.0 / queries.length;
+	}
+}
@@ -0,0 +1,119 @@
+package com.NLP2SparkSQL.project.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantizedEmbeddingsTests {
+
+	static final int DIMENSION = 384;
+	static final int K = 10;
+
+	@Test
+	void twoStageSearchRecallAgainstExactCosine() {
+		Random random = new Random(42);
+		EmbeddingMatrix exact = clustered(random, 2_000, 20);
+		float[][] queries = queries(random, exact, 50);
+
+		QuantizedEmbeddings rescored = QuantizedEmbeddings.of(exact, true);
+		QuantizedEmbeddings compressed = QuantizedEmbeddings.of(exact, false);
+
+		assertTrue(recall(exact, queries, q -> compressed.searchInt8(q, K)) >= 0.95);
+		assertTrue(recall(exact, queries, q -> rescored.search(q, K, 10)) >= 0.9);
+	}
+
+	@Test
+	void vectorsAddedAfterQuantizingAreRescoredWithTheirExactCopy() {
+		Random random = new Random(11);
+		EmbeddingMatrix exact = new EmbeddingMatrix(DIMENSION, 10);
+		for (int row = 0; row < 10; row++) {
+			exact.add(gaussian(random, 1.0f));
+		}
+		QuantizedEmbeddings quantized = QuantizedEmbeddings.of(exact, true);
+		float[] added = gaussian(random, 1.0f);
+
+		int row = quantized.add(added);
+		SimilarityHits hits = quantized.search(added, 3, 10);
+
+		assertEquals(10, row);
+		assertEquals(11, exact.rows());
+		assertEquals(row, hits.row(0));
+		assertEquals(exact.score(added, row), hits.score(0));
+	}
+
+	@Test
+	void twoStageSearchReturnsExactScoresWhenRescoringWithFloats() {
+		Random random = new Random(7);
+		EmbeddingMatrix exact = new EmbeddingMatrix(DIMENSION, 100);
+		for (int row = 0; row < 100; row++) {
+			exact.add(gaussian(random, 1.0f));
+		}
+		QuantizedEmbeddings quantized = QuantizedEmbeddings.of(exact, true);
+		float[] query = exact.row(17);
+
+		SimilarityHits hits = quantized.search(query, 3, 10);
+
+		assertEquals(17, hits.row(0));
+		assertEquals(exact.score(query, 17), hits.score(0));
+		assertEquals(0, quantized.hammingDistance(query, 17));
+	}
+
+	static double recall(EmbeddingMatrix exact, float[][] queries, Function<float[], SimilarityHits> search) {
+		int found = 0;
+		for (float[] query : queries) {
+			SimilarityHits expected = exact.search(query, K);
+			Set<Integer> truth = new HashSet<>();
+			for (int i = 0; i < expected.size(); i++) {
+				truth.add(expected.row(i));
+			}
+			SimilarityHits actual = search.apply(query);
+			for (int i = 0; i < actual.size(); i++) {
+				if (truth.contains(actual.row(i))) {
+					found++;
+				}
+			}
+		}
+		return (double) found / (queries.length * K);
+	}
+
+	static EmbeddingMatrix clustered(Random random, int rows, int clusters) {
+		float[][] centroids = new float[clusters][];
+		for (int c = 0; c < clusters; c++) {
+			centroids[c] = gaussian(random, 1.0f);
+		}
+		EmbeddingMatrix matrix = new EmbeddingMatrix(DIMENSION, rows).parallelThreshold(Integer.MAX_VALUE);
+		for (int row = 0; row < rows; row++) {
+			matrix.add(perturb(random, centroids[random.nextInt(clusters)], 0.6f));
+		}
+		return matrix;
+	}
+
+	static float[][] queries(Random random, EmbeddingMatrix matrix, int count) {
+		float[][] queries = new float[count][];
+		for (int q = 0; q < count; q++) {
+			queries[q] = perturb(random, matrix.row(random.nextInt(matrix.rows())), 0.3f);
+		}
+		return queries;
+	}
+
+	static float[] gaussian(Random random, float sigma) {
+		float[] vector = new float[DIMENSION];
+		for (int i = 0; i < DIMENSION; i++) {
+			vector[i] = (float) random.nextGaussian() * sigma;
+		}
+		return vector;
+	}
+
+	static float[] perturb(Random random, float[] base, float sigma) {
+		float[] vector = gaussian(random, sigma);
+		for (int i = 0; i < DIMENSION; i++) {
+			vector[i] += base[i];
+		}
+		return vector;
+	}
+}
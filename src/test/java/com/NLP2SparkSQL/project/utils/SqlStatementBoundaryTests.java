@@ -0,0 +1,35 @@
+package com.NLP2SparkSQL.project.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlStatementBoundaryTests {
+
+	@Test
+	void statementEndsAtTheFirstTopLevelSemicolon() {
+		SqlStatementBoundary boundary = new SqlStatementBoundary();
+		String[] pieces = {"<thi", "nk>Maybe; (SELECT</think>\nHere's the query:\n```sql\nSELECT name, ';' AS x",
+			" FROM t WHERE id IN (SELECT id FROM u;", ") -", "- note; here\n AND `a;b` = \"c\\\";\" /* ; */", ";\n```\nThis query"};
+		assertEquals(-1, boundary.append(pieces[0]));
+		assertEquals(-1, boundary.append(pieces[1]));
+		assertEquals(-1, boundary.append(pieces[2]));
+		assertEquals(-1, boundary.append(pieces[3]));
+		assertEquals(-1, boundary.append(pieces[4]));
+		assertFalse(boundary.isComplete());
+		assertEquals(1, boundary.append(pieces[5]));
+		assertTrue(boundary.isComplete());
+		assertEquals(0, boundary.append(" lists names;"));
+		assertTrue(boundary.text().endsWith("/* ; */;"));
+	}
+
+	@Test
+	void splitTokensOfOneStatement() {
+		SqlStatementBoundary boundary = new SqlStatementBoundary();
+		for (String token : new String[]{"WI", "TH c AS (SEL", "ECT 1) SELECT * FROM c"}) {
+			assertEquals(-1, boundary.append(token));
+		}
+		assertEquals(1, boundary.append("; Explanation"));
+		assertEquals("WITH c AS (SELECT 1) SELECT * FROM c;", boundary.text());
+	}
+}
@@ -0,0 +1,79 @@
+package com.NLP2SparkSQL.project.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenVectorCacheTests {
+
+	@Test
+	void embeddingCountsMissesOnceAndHitsAfterwards() {
+		EmbeddingUtils.configureTokenCache(64);
+		try {
+			long hits = EmbeddingUtils.getTokenCacheHits();
+			long misses = EmbeddingUtils.getTokenCacheMisses();
+
+			float[] first = EmbeddingUtils.embed("zebra quokka");
+			assertEquals(misses + 2, EmbeddingUtils.getTokenCacheMisses());
+			assertEquals(hits, EmbeddingUtils.getTokenCacheHits());
+			assertEquals(2, EmbeddingUtils.getTokenCacheSize());
+
+			float[] second = EmbeddingUtils.embed("quokka zebra");
+			assertEquals(misses + 2, EmbeddingUtils.getTokenCacheMisses());
+			assertEquals(hits + 2, EmbeddingUtils.getTokenCacheHits());
+			assertArrayEquals(first, second);
+
+			// Keywords come from the precomputed table and never reach the bounded cache
+			EmbeddingUtils.embed("select salary");
+			assertEquals(misses + 2, EmbeddingUtils.getTokenCacheMisses());
+			assertEquals(hits + 4, EmbeddingUtils.getTokenCacheHits());
+			assertEquals(2, EmbeddingUtils.getTokenCacheSize());
+		} finally {
+			EmbeddingUtils.configureTokenCache(16_384);
+		}
+	}
+
+	@Test
+	void fullProbeWindowEvictsTheEntryAtTheHomeSlot() {
+		TokenVectorCache cache = new TokenVectorCache(16);
+		List<String> colliding = colliding(cache.capacity(), 9);
+		for (int i = 0; i < 8; i++) {
+			cache.put(colliding.get(i), new float[] {i});
+		}
+		assertEquals(0, cache.evictions());
+		for (int i = 0; i < 8; i++) {
+			assertArrayEquals(new float[] {i}, cache.get(colliding.get(i)));
+		}
+
+		cache.put(colliding.get(0), new float[] {-1});
+		assertEquals(0, cache.evictions());
+		assertArrayEquals(new float[] {0}, cache.get(colliding.get(0)));
+
+		cache.put(colliding.get(8), new float[] {8});
+		assertEquals(1, cache.evictions());
+		assertEquals(8, cache.size());
+		assertNull(cache.get(colliding.get(0)));
+		assertArrayEquals(new float[] {8}, cache.get(colliding.get(8)));
+		String token = colliding.get(8);
+		assertArrayEquals(new float[] {8}, cache.get(("x" + token).toCharArray(), 1, token.length(), token.hashCode()));
+		assertArrayEquals(new float[] {7}, cache.get(colliding.get(7)));
+	}
+
+	/**
+	 * Tokens whose home slot in a table of the given capacity is the same
+	 */
+	static List<String> colliding(int capacity, int count) {
+		List<String> tokens = new ArrayList<>();
+		for (int i = 0; tokens.size() < count; i++) {
+			String token = "token" + i;
+			int hash = token.hashCode();
+			if (((hash ^ (hash >>> 16)) & (capacity - 1)) == 0) {
+				tokens.add(token);
+			}
+		}
+		return tokens;
+	}
+}
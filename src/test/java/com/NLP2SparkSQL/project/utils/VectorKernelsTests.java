@@ -0,0 +1,59 @@
+package com.NLP2SparkSQL.project.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorKernelsTests {
+
+	private final VectorOps scalar = new ScalarVectorOps();
+	private final VectorOps simd = new SimdVectorOps();
+
+	@Test
+	void simdKernelsMatchScalarKernels() {
+		Random random = new Random(7);
+		// 384 plus odd sizes to exercise the scalar tails
+		for (int dimension : new int[] {384, 385, 7, 1}) {
+			float[] a = randomVector(random, dimension);
+			float[] b = randomVector(random, dimension);
+
+			// Reductions are summed in a different order, so only agree up to rounding
+			float dot = scalar.dot(a, 0, b, 0, dimension);
+			float squaredNorm = scalar.squaredNorm(a, 0, dimension);
+			assertEquals(dot, simd.dot(a, 0, b, 0, dimension), 1e-5f * Math.max(1.0f, Math.abs(dot)));
+			assertEquals(squaredNorm, simd.squaredNorm(a, 0, dimension), 1e-5f * Math.max(1.0f, squaredNorm));
+
+			float[] scalarAcc = b.clone();
+			float[] simdAcc = b.clone();
+			scalar.addScaled(scalarAcc, a, 0.37f);
+			simd.addScaled(simdAcc, a, 0.37f);
+			assertArrayEquals(scalarAcc, simdAcc, "addScaled must be bit-identical");
+
+			float[] rows = new float[dimension * 5];
+			for (int i = 0; i < rows.length; i++) {
+				rows[i] = (float) random.nextGaussian();
+			}
+			float queryNorm = (float) Math.sqrt(scalar.squaredNorm(a, 0, dimension));
+			float[] scalarScores = new float[5];
+			float[] simdScores = new float[5];
+			scalar.cosineScores(a, queryNorm, rows, dimension, 0, 5, scalarScores);
+			simd.cosineScores(a, queryNorm, rows, dimension, 0, 5, simdScores);
+			assertArrayEquals(scalarScores, simdScores, 1e-5f);
+		}
+	}
+
+	@Test
+	void selectsSimdWhenModuleIsResolved() {
+		assertTrue(VectorKernels.implementation().startsWith("simd"), VectorKernels.implementation());
+	}
+
+	private static float[] randomVector(Random random, int dimension) {
+		float[] vector = new float[dimension];
+		for (int i = 0; i < dimension; i++) {
+			vector[i] = (float) random.nextGaussian();
+		}
+		return vector;
+	}
+}